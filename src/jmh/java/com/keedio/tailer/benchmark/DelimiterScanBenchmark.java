@@ -0,0 +1,145 @@
+package com.keedio.tailer.benchmark;
+
+import com.keedio.tailer.io.DelimiterScanner;
+import com.keedio.tailer.io.LineReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *     Compares the scalar and SWAR delimiter searches of {@link com.keedio.tailer.io.DelimiterScanner}, and reading
+ *     lines with a {@link com.keedio.tailer.io.LineReader} or with <code>BufferedReader.readLine()</code>, on 16MB
+ *     of lines of the given average length.
+ * </p>
+ * <p>
+ *     Usage: <code>mvn -Pbenchmarks test-compile exec:java -Dexec.args="DelimiterScanBenchmark"</code>.
+ *     Scores are passes over the 16MB per second: multiply by 16 for MB/s.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DelimiterScanBenchmark {
+    private static final int SIZE = 16 * 1024 * 1024;
+
+    @Param({"80", "1000"})
+    public int lineLength;
+
+    @Param({"\n", "<EOR>"})
+    public String delimiter;
+
+    private byte[] data;
+
+    private ByteBuffer buffer;
+
+    private DelimiterScanner scalar;
+
+    private DelimiterScanner swar;
+
+    @Setup
+    public void setup() {
+        byte[] delimiterBytes = delimiter.getBytes(StandardCharsets.UTF_8);
+        Random random = new Random(42);
+
+        data = new byte[SIZE];
+        int i = 0;
+        while (i < SIZE) {
+            int length = Math.min(SIZE - i, random.nextInt(2 * lineLength) + 1);
+
+            for (int j = 0; j < length; j++) {
+                data[i++] = (byte) (' ' + random.nextInt(95));
+            }
+            for (int j = 0; j < delimiterBytes.length && i < SIZE; j++) {
+                data[i++] = delimiterBytes[j];
+            }
+        }
+
+        buffer = ByteBuffer.allocateDirect(SIZE).order(ByteOrder.nativeOrder());
+        buffer.put(data);
+
+        if ("\n".equals(delimiter)) {
+            scalar = DelimiterScanner.newline(DelimiterScanner.Mode.SCALAR);
+            swar = DelimiterScanner.newline(DelimiterScanner.Mode.SWAR);
+        } else {
+            scalar = DelimiterScanner.of(delimiterBytes, DelimiterScanner.Mode.SCALAR);
+            swar = DelimiterScanner.of(delimiterBytes, DelimiterScanner.Mode.SWAR);
+        }
+    }
+
+    @Benchmark
+    public int scalarScan() {
+        return scan(scalar);
+    }
+
+    @Benchmark
+    public int swarScan() {
+        return scan(swar);
+    }
+
+    @Benchmark
+    public long lineReader() throws IOException {
+        long count = 0;
+        LineReader reader = new LineReader(new ByteArrayInputStream(data), swar, StandardCharsets.UTF_8);
+
+        while (reader.readLine() != null) {
+            count++;
+        }
+        reader.close();
+
+        return count;
+    }
+
+    @Benchmark
+    public long bufferedReader() throws IOException {
+        long count = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data),
+                StandardCharsets.UTF_8));
+
+        while (reader.readLine() != null) {
+            count++;
+        }
+        reader.close();
+
+        return count;
+    }
+
+    /* counts the delimiters */
+    private int scan(DelimiterScanner scanner) {
+        int count = 0;
+        int from = 0;
+        int length = scanner.getDelimiterLength();
+
+        while (true) {
+            int index = scanner.indexOf(buffer, from, SIZE);
+            if (index < 0) {
+                break;
+            }
+            count++;
+            from = index + length;
+        }
+
+        return count;
+    }
+}
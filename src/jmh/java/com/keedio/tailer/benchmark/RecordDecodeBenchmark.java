@@ -0,0 +1,103 @@
+package com.keedio.tailer.benchmark;
+
+import com.keedio.tailer.io.MalformedInputMode;
+import com.keedio.tailer.io.RecordDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *     Compares decoding UTF-8 records with a {@link com.keedio.tailer.io.RecordDecoder}, in the given
+ *     {@link com.keedio.tailer.io.MalformedInputMode}, and with <code>new String(bytes, UTF_8)</code>, on 1024 records
+ *     of the given average length, either ASCII only or with a non ASCII char in one record out of 10.
+ * </p>
+ * <p>
+ *     Usage: <code>mvn -Pbenchmarks test-compile exec:java -Dexec.args="RecordDecodeBenchmark"</code>.
+ *     Scores are passes over the 1024 records per second.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordDecodeBenchmark {
+    private static final int RECORDS = 1024;
+
+    @Param({"80", "1000"})
+    public int lineLength;
+
+    @Param({"true", "false"})
+    public boolean ascii;
+
+    @Param({"REPLACE", "RAW"})
+    public MalformedInputMode mode;
+
+    private ByteBuffer buffer;
+
+    /* the boundaries of the records in the buffer */
+    private int[] offsets;
+
+    private byte[] bytes;
+
+    private RecordDecoder decoder;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        StringBuilder content = new StringBuilder();
+        offsets = new int[RECORDS + 1];
+
+        for (int i = 0; i < RECORDS; i++) {
+            int length = random.nextInt(2 * lineLength) + 1;
+            StringBuilder record = new StringBuilder();
+
+            for (int j = 0; j < length; j++) {
+                record.append((char) (' ' + random.nextInt(95)));
+            }
+            if (!ascii && i % 10 == 0) {
+                record.setCharAt(random.nextInt(length), '\u00e9');
+            }
+
+            content.append(record);
+            offsets[i + 1] = offsets[i] + record.toString().getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+        buffer = ByteBuffer.allocateDirect(bytes.length).order(ByteOrder.nativeOrder());
+        buffer.put(bytes);
+
+        decoder = new RecordDecoder(StandardCharsets.UTF_8, mode);
+    }
+
+    @Benchmark
+    public void recordDecoder(Blackhole blackhole) {
+        for (int i = 0; i < RECORDS; i++) {
+            blackhole.consume(decoder.decode(buffer, offsets[i], offsets[i + 1]));
+        }
+    }
+
+    @Benchmark
+    public void stringConstructor(Blackhole blackhole) {
+        for (int i = 0; i < RECORDS; i++) {
+            blackhole.consume(new String(bytes, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8));
+        }
+    }
+}
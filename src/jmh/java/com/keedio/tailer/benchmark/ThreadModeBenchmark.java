@@ -0,0 +1,162 @@
+package com.keedio.tailer.benchmark;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.keedio.tailer.LRTailer;
+import com.keedio.tailer.TailerExecutors;
+import com.keedio.tailer.listener.FileEventListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *     Tails many files, one {@link com.keedio.tailer.LRTailer} per file, on platform threads and on virtual threads,
+ *     and measures how long it takes to deliver one line appended to every file. The tailers are started, and their
+ *     first lines delivered, once per trial.
+ * </p>
+ * <p>
+ *     Usage: <code>mvn -Pbenchmarks test-compile exec:java -Dexec.args="ThreadModeBenchmark -prof gc"</code>, the
+ *     <code>gc</code> profiler reporting the memory allocated. Run it with a Java 21 JVM, the virtual mode failing
+ *     otherwise, and with enough file descriptors and processes allowed (<code>ulimit -n</code>,
+ *     <code>ulimit -u</code>) for the platform mode.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ThreadModeBenchmark {
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public TailerExecutors.Mode mode;
+
+    @Param({"10000", "50000"})
+    public int files;
+
+    @Param({"100"})
+    public long sleepTime;
+
+    private File dir;
+
+    private File[] tailed;
+
+    private final List<LRTailer> tailers = new ArrayList<>();
+
+    private ExecutorService executor;
+
+    /* counted down by the tailers as the appended lines are delivered */
+    private volatile CountDownLatch delivered;
+
+    @Setup(Level.Trial)
+    public void startTailers() throws Exception {
+        if (mode == TailerExecutors.Mode.VIRTUAL && !TailerExecutors.isVirtualThreadSupported()) {
+            throw new IllegalStateException("virtual threads are not supported by this JVM");
+        }
+
+        dir = Files.createTempDir();
+        tailed = new File[files];
+        for (int i = 0; i < files; i++) {
+            tailed[i] = new File(dir, i + ".log");
+            Files.write("first line\n", tailed[i], Charsets.UTF_8);
+        }
+
+        delivered = new CountDownLatch(files);
+        executor = TailerExecutors.newExecutor(mode);
+        for (File file : tailed) {
+            LRTailer tailer = new LRTailer(new CountingListener(), sleepTime, file.getAbsolutePath());
+            tailers.add(tailer);
+            executor.submit(tailer);
+        }
+
+        if (!delivered.await(10, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("the tailers did not start in 10 minutes");
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void resetLatch() {
+        delivered = new CountDownLatch(files);
+    }
+
+    @Benchmark
+    public boolean appendAndDeliver() throws Exception {
+        for (File file : tailed) {
+            append(file, "appended line\n");
+        }
+        return delivered.await(10, TimeUnit.MINUTES);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopTailers() throws Exception {
+        for (LRTailer tailer : tailers) {
+            tailer.stop();
+        }
+        tailers.clear();
+
+        executor.shutdownNow();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    private static void append(File file, String line) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(line.getBytes(Charsets.UTF_8));
+        }
+    }
+
+    private class CountingListener implements FileEventListener {
+
+        @Override
+        public void handle(String filename, String line) {
+            delivered.countDown();
+        }
+
+        @Override
+        public void init(LRTailer lrTailer) {
+        }
+
+        @Override
+        public String rotated(long lastPosition, long currPosition) {
+            return null;
+        }
+
+        @Override
+        public void notExists() {
+        }
+
+        @Override
+        public void handleException(Exception e) {
+        }
+
+        @Override
+        public boolean isValid(String partialLine) {
+            return true;
+        }
+    }
+}
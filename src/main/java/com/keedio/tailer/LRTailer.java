@@ -1,15 +1,41 @@
 package com.keedio.tailer;
 
+import com.keedio.tailer.checkpoint.AckTracker;
+import com.keedio.tailer.checkpoint.Acknowledgement;
+import com.keedio.tailer.checkpoint.FileIdentity;
+import com.keedio.tailer.clock.Clock;
+import com.keedio.tailer.clock.SystemClock;
 import com.keedio.tailer.exception.TailerException;
+import com.keedio.tailer.io.AttributePoller;
+import com.keedio.tailer.io.DelimiterScanner;
+import com.keedio.tailer.io.FileAttributes;
+import com.keedio.tailer.io.FileSource;
+import com.keedio.tailer.io.LineReader;
+import com.keedio.tailer.io.LocalFileSource;
+import com.keedio.tailer.io.MalformedInputMode;
+import com.keedio.tailer.latency.LatencyTracker;
+import com.keedio.tailer.listener.AcknowledgingListener;
 import com.keedio.tailer.listener.FileEventListener;
+import com.keedio.tailer.listener.RecordListener;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.*;
-import java.nio.file.Files;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.file.NoSuchFileException;
-import java.nio.file.Paths;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
 
 /**
  * <p>
@@ -17,20 +43,75 @@ import java.nio.file.attribute.BasicFileAttributes;
  *     {@link com.keedio.tailer.listener.FileEventListener}.
  * </p>
  * <p>
- *     This component tries to read full lines using a {@link java.io.BufferedReader#readLine()}. The line read can either
+ *     This component tries to read full lines using a {@link com.keedio.tailer.io.LineReader#readLine()}. The line read can either
  *     be complete or partial (if the file generator is especially slow, for example).
  *
- *     This tailer maintains a buffer where the returning values of successive calls to {@link java.io.BufferedReader#readLine()}
+ *     This tailer maintains a buffer where the returning values of successive calls to {@link com.keedio.tailer.io.LineReader#readLine()}
  *     are accumulated. At each iteration we validate if the buffer contains valid line.
  *     Line validation logic is delegated to {@link com.keedio.tailer.listener.FileEventListener#isValid}.
+ *
+ *     Lines end with <code>\n</code> or <code>\r\n</code>, unless another delimiter is set with
+ *     {@link #setDelimiterScanner(com.keedio.tailer.io.DelimiterScanner)}. Positions are exact byte offsets.
+ *     Lines are decoded with the platform default charset, unless another one is set with
+ *     {@link #setCharset(java.nio.charset.Charset)}; malformed input is replaced, or passed through as set with
+ *     {@link #setMalformedInputMode(com.keedio.tailer.io.MalformedInputMode)}.
  * </p>
  * <p>
  *     This component supports file rotation. This tailer keeps track of the last character read from the originally tailed file.
  *     This way, when file rotation is detected, the listener is notified, and,
  *     if the listener provides the rotated filename, the rotated file is opened and read starting from the appropiate position.
+ *     If the rotated file has already been compressed (i.e. by logrotate <code>compress</code> option), its
+ *     <code>.gz</code> sibling is decompressed on the fly instead.
+ * </p>
+ * <p>
+ *     When the file system provides file keys (i.e. inodes), generations are told apart by file key, so the file may
+ *     rotate several times between two polls: the tailed generation is drained through its still open channel,
+ *     then the generations rotated since the last poll, found among the siblings of the rotated file and ordered by
+ *     modification time, are read in order before the new file. A file truncated in place (logrotate
+ *     <code>copytruncate</code>) is read again from its copy.
+ * </p>
+ * <p>
+ *     By default the whole file is read. A {@link com.keedio.tailer.StartPosition} can be provided in order to
+ *     start at the end of the file, at a given offset or at the beginning of the last lines of the file.
+ * </p>
+ * <p>
+ *     Listeners implementing {@link com.keedio.tailer.listener.AcknowledgingListener} acknowledge lines asynchronously.
+ *     The positions of acknowledged lines are tracked and committed by a {@link com.keedio.tailer.checkpoint.AckTracker},
+ *     which also bounds the number of lines waiting for acknowledgement. Positions are committed along with the
+ *     {@link com.keedio.tailer.checkpoint.FileIdentity} of the generation they were read from, computed when the
+ *     generation is opened and extended while the generation is shorter than the bytes it covers.
+ * </p>
+ * <p>
+ *     A tailer which failed with a {@link com.keedio.tailer.exception.TailerException} can be run again: it resumes
+ *     from the last fully read line (see {@link com.keedio.tailer.supervisor.TailerSupervisor}), unless the file has
+ *     been replaced meanwhile by a new file reusing its file key, which is then read from the beginning.
+ * </p>
+ * <p>
+ *     Waits <code>sleepTime</code> milliseconds between line reads. Alternatively, the tailer can be driven by
+ *     explicit {@link #poll(long, int)} calls limiting the amount of data read at each call, i.e. by a
+ *     {@link com.keedio.tailer.scheduler.FairShareScheduler} sharing one thread among many tailed files.
+ * </p>
+ * <p>
+ *     {@link #run()} only blocks in {@link Thread#sleep(long)}, in file reads and in interruptible waits for
+ *     acknowledgements, without holding any monitor, so tailers can run on virtual threads (see
+ *     {@link com.keedio.tailer.TailerExecutors}). Interrupting the thread while it sleeps, waits or reads stops the
+ *     tailer: a line whose delivery was interrupted is not delivered, and is read again if the tailer is run again.
+ *     Listeners interrupted while handling a line restore the interrupt status of the thread and return without
+ *     taking the line, which stops the tailer the same way.
  * </p>
  * <p>
- *     Waits <code>sleepTime</code> milliseconds between line reads.
+ *     The delay between the time lines are appended and the time they are delivered can be measured by a
+ *     {@link com.keedio.tailer.latency.LatencyTracker}.
+ * </p>
+ * <p>
+ *     Files are only checked, stated and opened through a {@link com.keedio.tailer.io.FileSource}, and time is only
+ *     read and waited for through a {@link com.keedio.tailer.clock.Clock}: both can be replaced, i.e. to run the
+ *     tailer against a simulated file system in virtual time.
+ * </p>
+ * <p>
+ *     By default the tailed file is stated at every poll. Many tailers can rather share an
+ *     {@link com.keedio.tailer.io.AttributePoller}, stating each file at most once per interval: the tailer then
+ *     checks the last snapshot of the poller, if any, and reports the polls which read data as activity.
  * </p>
  *
  * Created by luca on 13/2/16.
@@ -38,6 +119,20 @@ import java.nio.file.attribute.BasicFileAttributes;
 public class LRTailer implements Runnable {
     private final static Logger LOGGER = LogManager.getLogger(LRTailer.class);
 
+    /* suffix of rotated files compressed with gzip */
+    static final String GZIP_SUFFIX = ".gz";
+
+    /* size of the buffers used to inflate and skip compressed rotated files */
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    /* number of bytes kept from the beginning of the tailed generation, also covered by its identity */
+    private static final int HEAD_SIZE = FileIdentity.HEAD_SIZE;
+
+    /* defaults of the AckTracker used when the listener acknowledges lines and no tracker has been set */
+    private static final int DEFAULT_MAX_IN_FLIGHT = 10000;
+    private static final int DEFAULT_COMMIT_EVERY = 1000;
+    private static final long DEFAULT_COMMIT_INTERVAL = 1000;
+
     /* the listener that will be notified of events ocurring on the tailed file */
     private FileEventListener listener;
 
@@ -47,16 +142,73 @@ public class LRTailer implements Runnable {
     /* the name of the file to tail */
     private File file;
 
+    /* the absolute path of the file to tail */
+    private String path;
+
+    /* the file system the tailed file is read from */
+    private FileSource fileSource = new LocalFileSource();
+
+    /* publishes the attributes of the tailed file, null to stat the file at every poll */
+    private AttributePoller attributePoller;
+
+    /* the source of time, also used to wait between polls */
+    private Clock clock = SystemClock.getInstance();
+
     /* the current offset (next read char will be position + 1 */
     private long position = 0;
 
     /* the position in the file of last fully read line */
-    private long lastFullLinePosition = 0;
+    private volatile long lastFullLinePosition = 0;
 
     /* timestamp of the time of creation of the tailed file. Helps in detecting file rotation */
     private long creationTime;
 
-    private boolean run = true;
+    /* the file key of the tailed generation, null if the file system does not provide file keys */
+    private Object generationKey;
+
+    /* the modification time of the tailed generation at the last poll: generations rotated since are newer */
+    private long generationModified;
+
+    /* the size of the tailed generation at the last check of its attributes */
+    private long generationSize;
+
+    /* the first bytes of the tailed generation, to recognize it once rotated and compressed */
+    private byte[] generationHead = new byte[0];
+
+    /* the identity of the tailed generation, committed with the positions, changes only with the head */
+    private volatile FileIdentity generationIdentity;
+
+    /* where to start reading the tailed file the first time it is opened */
+    private StartPosition startPosition;
+
+    /* tracks the lines handed to an AcknowledgingListener */
+    private AckTracker ackTracker;
+
+    /* measures the delivery latency of the lines, may be null */
+    private LatencyTracker latencyTracker;
+
+    /* true once the start position has been resolved, later runs resume from the last fully read line */
+    private boolean started = false;
+
+    /* true when running again after a failure, until the file is reopened */
+    private boolean resuming = false;
+
+    private volatile boolean run = true;
+
+    /* finds the end of the lines */
+    private DelimiterScanner delimiterScanner = DelimiterScanner.newline();
+
+    /* the charset the lines are decoded with */
+    private Charset charset = Charset.defaultCharset();
+
+    /* what to do with bytes which are not valid in the charset */
+    private MalformedInputMode malformedInputMode = MalformedInputMode.REPLACE;
+
+    /* the reader of the tailed file, null until the file is opened and after a rotation */
+    private LineReader reader;
+
+    /* accumulates partially read lines until they are valid */
+    private StringBuilder buffer;
 
     /**
      * Builds a new tailer.
@@ -66,12 +218,113 @@ public class LRTailer implements Runnable {
      * @param filename the name of the file to tail.
      */
     public LRTailer(FileEventListener listener, long sleepTime, String filename) {
+        this(listener, sleepTime, filename, StartPosition.beginning());
+    }
+
+    /**
+     * Builds a new tailer starting at the given position.
+     *
+     * @param listener the component that will be notified when events on the tailed file occur.
+     * @param sleepTime the sleep time, in milliseconds, between line reads.
+     * @param filename the name of the file to tail.
+     * @param startPosition where to start reading the file the first time it is opened.
+     */
+    public LRTailer(FileEventListener listener, long sleepTime, String filename, StartPosition startPosition) {
         this.listener = listener;
         this.sleepTime = sleepTime;
         this.file = new File(filename);
+        this.path = file.getAbsolutePath();
+        this.startPosition = startPosition;
         this.listener.init(this);
     }
 
+    /**
+     * Sets the tracker of the lines handed to an {@link com.keedio.tailer.listener.AcknowledgingListener}.
+     * If none is set, a tracker with default limits and no checkpoint store is used.
+     *
+     * @param ackTracker the tracker of the lines waiting for acknowledgement.
+     */
+    public void setAckTracker(AckTracker ackTracker) {
+        this.ackTracker = ackTracker;
+    }
+
+    /**
+     * Sets the tracker measuring the delay between the time lines are appended to the tailed file and the time
+     * they are delivered to the listener. The tailed file is sampled at each poll.
+     *
+     * @param latencyTracker the tracker of the delivery latency.
+     */
+    public void setLatencyTracker(LatencyTracker latencyTracker) {
+        this.latencyTracker = latencyTracker;
+    }
+
+    /**
+     * Sets the scanner finding the end of the lines, i.e. to split records on a custom delimiter.
+     * Lines end with <code>\n</code> or <code>\r\n</code> by default.
+     *
+     * @param delimiterScanner the scanner of line delimiters.
+     */
+    public void setDelimiterScanner(DelimiterScanner delimiterScanner) {
+        this.delimiterScanner = delimiterScanner;
+    }
+
+    /**
+     * Sets the charset the lines are decoded with. The platform default charset is used by default.
+     * ASCII lines are decoded without a {@link java.nio.charset.CharsetDecoder} when the charset is a superset of
+     * ASCII, see {@link com.keedio.tailer.io.RecordDecoder}.
+     *
+     * @param charset the charset of the tailed file.
+     */
+    public void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * @return the charset the lines are decoded with.
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Sets what to do with bytes which are not valid in the charset of the tailed file. They are replaced by default.
+     *
+     * @param malformedInputMode what to do with malformed input.
+     */
+    public void setMalformedInputMode(MalformedInputMode malformedInputMode) {
+        this.malformedInputMode = malformedInputMode;
+    }
+
+    /**
+     * Sets the file system the tailed file and the rotated files are read from.
+     * The local file system is used by default.
+     *
+     * @param fileSource the file system to read from.
+     */
+    public void setFileSource(FileSource fileSource) {
+        this.fileSource = fileSource;
+    }
+
+    /**
+     * Sets the source of time, also used to wait between polls. The system clock is used by default.
+     *
+     * @param clock the source of time.
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Sets the poller sharing the stats of the tailed file with other tailers. The tailed file is registered to
+     * the poller when the tailer is opened, and unregistered when it is closed. The poller must read the file
+     * system set with {@link #setFileSource(com.keedio.tailer.io.FileSource)}.
+     *
+     * @param attributePoller the poller of the attributes of the tailed file.
+     */
+    public void setAttributePoller(AttributePoller attributePoller) {
+        this.attributePoller = attributePoller;
+    }
+
     /**
      * Stops tailing.
      */
@@ -84,18 +337,216 @@ public class LRTailer implements Runnable {
      */
     @Override
     public void run() {
+        open();
+
+        try {
+            while (run) {
+                PollResult result = poll(Long.MAX_VALUE, Integer.MAX_VALUE);
 
-        if (!file.exists()) {
+                if (!result.hasMore()) {
+                    try {
+                        clock.sleep(sleepTime);
+                    } catch (InterruptedException e) {
+                        /* i.e. the executor is shut down */
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * <p>
+     *     Prepares the tailer to be polled: checks that the tailed file exists and resolves the position to start
+     *     reading from. The file itself is opened by the first call to {@link #poll(long, int)}.
+     * </p>
+     * <p>
+     *     {@link #run()} calls this method, it is only needed when the tailer is driven by
+     *     {@link #poll(long, int)} calls, i.e. by a {@link com.keedio.tailer.scheduler.FairShareScheduler}.
+     * </p>
+     *
+     * @throws TailerException if the file does not exist or the start position could not be resolved.
+     */
+    public void open() {
+
+        if (!fileSource.exists(path)) {
             listener.notExists();
-            throw new TailerException(new FileNotFoundException(file.getAbsolutePath() + " does not exists"));
+            throw new TailerException(new FileNotFoundException(path + " does not exists"));
         }
 
-        boolean reopen = true;
+        if (started) {
+            /* running again after a failure: the partially read line, if any, is read again */
+            position = lastFullLinePosition;
+            resuming = true;
+            LOGGER.info("Resuming " + path + " at offset: " + position);
+        } else {
+            try {
+                position = lastFullLinePosition = startPosition.resolve(fileSource, path, delimiterScanner);
+                started = true;
+                LOGGER.debug("Starting " + path + " at " + startPosition + ", offset: " + position);
+            } catch (IOException e) {
+                listener.handleException(e);
+                throw new TailerException(e);
+            }
+        }
 
-        while (reopen && run){
-            reopen = handleFile(file);
+        if (listener instanceof AcknowledgingListener && ackTracker == null) {
+            ackTracker = new AckTracker(null, path, DEFAULT_MAX_IN_FLIGHT,
+                    DEFAULT_COMMIT_EVERY, DEFAULT_COMMIT_INTERVAL);
+        }
 
-            sleepSilently(sleepTime);
+        if (attributePoller != null) {
+            attributePoller.register(path);
+        }
+
+        buffer = new StringBuilder();
+    }
+
+    /**
+     * Closes the tailed file and commits the last acknowledged position, if any.
+     */
+    public void close() {
+        closeReader();
+
+        if (attributePoller != null) {
+            attributePoller.unregister(path);
+        }
+
+        if (ackTracker != null) {
+            try {
+                ackTracker.commit();
+            } catch (IOException e) {
+                LOGGER.error("Could not commit the last acknowledged position of " + path, e);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     *     Reads the lines available in the tailed file, until either the end of the file is reached or the given
+     *     quotas are exhausted. Partially read lines are kept in the buffer until the next call.
+     * </p>
+     * <p>
+     *     Each call also checks if the file has rotated: in this case the rotated file is handled, and the
+     *     new file is opened by the next call.
+     * </p>
+     *
+     * @param maxBytes the maximum number of bytes to read. The last line read may exceed this quota.
+     * @param maxRecords the maximum number of valid lines to deliver to the listener.
+     * @return the number of bytes and lines read, and whether there is more data available.
+     * @throws TailerException if an error occurred reading the file.
+     */
+    public PollResult poll(long maxBytes, int maxRecords) {
+        long initialPosition = position;
+        int records = 0;
+
+        try {
+            if (reader == null) {
+                openReader();
+            }
+
+            /* null when the poller has not stated the file since the last read: there is nothing to check */
+            FileAttributes attributes = attributePoller == null ? readAttributes(path)
+                    : attributePoller.getAttributes(path);
+
+            if (attributes != null) {
+                if (checkRotateCondition(buffer, attributes)) {
+                    buffer = new StringBuilder();
+
+                    /* the new file is opened right away, so that it is drained if it rotates before the next poll */
+                    if (reader == null) {
+                        openReader();
+                    }
+
+                    generationSize = attributes.getSize();
+                    return new PollResult(0, 0, false, Math.max(0, generationSize - position));
+                }
+
+                generationModified = attributes.getLastModifiedTime();
+                generationSize = attributes.getSize();
+
+                if (latencyTracker != null) {
+                    latencyTracker.sample(attributes.getSize(), attributes.getLastModifiedTime());
+                }
+            }
+
+            String currentLine = null;
+
+            while (position - initialPosition < maxBytes && records < maxRecords
+                    && (currentLine = reader.readLine()) != null) {
+                buffer.append(currentLine);
+
+                // update position taking into account the delimiter
+                position += reader.getLastLength();
+
+                String accumulated = buffer.toString();
+
+                if (listener.isValid(accumulated)) {
+                    if (!deliver(path, accumulated, position)) {
+                        /* stopped: no more I/O, the interrupt status being set */
+                        return new PollResult(position - initialPosition, records, false, 0);
+                    }
+
+                    if (latencyTracker != null) {
+                        latencyTracker.delivered(new Record(path, accumulated, position),
+                                clock.currentTimeMillis());
+                    }
+
+                    lastFullLinePosition = position;
+                    buffer = new StringBuilder();
+                    records++;
+                }
+            }
+
+            if (generationHead.length < HEAD_SIZE && position > generationHead.length) {
+                extendHead();
+            }
+
+            if (ackTracker != null) {
+                ackTracker.commitIfDue();
+            }
+
+            if (attributePoller != null && position != initialPosition) {
+                attributePoller.activity(path);
+            }
+
+            return new PollResult(position - initialPosition, records, currentLine != null,
+                    Math.max(0, generationSize - position));
+        } catch (NoSuchFileException e) {
+
+            /*
+            We were processing the file peacefully an suddenly it doesn't exist anymore.
+            Maybe a file rotation ocurred, let's sleep a bit a check if it's created again.
+            */
+            return new PollResult(position - initialPosition, records, false, 0);
+        } catch (InterruptedIOException | ClosedByInterruptException e) {
+            /* i.e. the executor is shut down */
+            Thread.currentThread().interrupt();
+            closeReader();
+            stop();
+            return new PollResult(position - initialPosition, records, false, 0);
+        } catch (Exception e) {
+            /* Something very bad happened, aborting */
+            closeReader();
+            listener.handleException(e);
+            throw new TailerException(e);
+        }
+    }
+
+    /**
+     * Returns the number of bytes of the tailed file which have not been read yet. The file is stated by each call:
+     * the lag as of the last poll, without any additional stat, is returned by {@link PollResult#getLag()}.
+     * @return the number of bytes of the tailed file which have not been read yet.
+     */
+    public long getLag() {
+        try {
+            return Math.max(0, fileSource.readAttributes(path).getSize() - position);
+        } catch (IOException e) {
+            /* i.e. the file is being rotated */
+            return 0;
         }
     }
 
@@ -110,18 +561,14 @@ public class LRTailer implements Runnable {
      * @param rotatedFileName the name of the rotate file.
      * @throws IOException when an error occurs.
      */
-    private void handleRotatedFile(StringBuffer prevBuffer, String rotatedFileName) throws IOException {
-        if (rotatedFileName == null){
-            return;
-        }
+    private void handleRotatedFile(StringBuilder prevBuffer, String rotatedFileName) throws IOException {
+        String rotatedFile = findRotatedFile(fileSource, rotatedFileName);
 
-        File rotatedFile = new File(rotatedFileName);
-
-        if (!rotatedFile.exists()){
+        if (rotatedFile == null){
             return;
         }
 
-        LOGGER.debug("Handling rotated file '"+rotatedFileName+"' starting at position: "+lastFullLinePosition);
+        LOGGER.debug("Handling rotated file '"+rotatedFile+"' starting at position: "+lastFullLinePosition);
 
         /* At the time of rotation, the last line of the tailed file could only have been read
          * partially. In this case position > lastFullLinePosition and prevBuffer is not empty.
@@ -130,116 +577,629 @@ public class LRTailer implements Runnable {
          */
         long rotatedPosition = Math.max(lastFullLinePosition, position);
 
-        try (BufferedReader reader =
-                     new BufferedReader(new FileReader(rotatedFile))) {
+        try (LineReader reader = openReader(fileSource, rotatedFile, rotatedPosition, delimiterScanner,
+                charset, malformedInputMode)) {
+            drain(reader, rotatedFileName, rotatedPosition, prevBuffer);
+        }
+    }
 
-            reader.skip(rotatedPosition);
+    /**
+     * Reads the generations of the tailed file rotated since the last poll, in order.
+     *
+     * If the tailed generation has been renamed, the rest of it is read through the open reader, which keeps
+     * reading it even if it has been renamed again or compressed and removed since. If it has been truncated, the
+     * rest of it is read from its copy, the oldest generation rotated since the last poll.
+     *
+     * @param prevBuffer buffer containing the last partially read line from the tailed generation.
+     * @param rotatedFileName the name of the rotated file, as returned by the listener.
+     * @param attributes the attributes of the new tailed file.
+     * @throws IOException when an error occurs.
+     */
+    private void handleRotatedGenerations(StringBuilder prevBuffer, String rotatedFileName, FileAttributes attributes)
+            throws IOException {
+        boolean truncated = generationKey.equals(attributes.getFileKey());
+        long drained = position;
 
-            String currentLine;
-            StringBuffer buffer = new StringBuffer(prevBuffer.toString());
+        if (!truncated) {
+            if (reader != null) {
+                drained = drain(reader, rotatedFileName, position, prevBuffer);
+            } else {
+                /* resumed after a failure: the tailed generation has to be found by its file key */
+                String renamed = findGeneration(rotatedFileName, generationKey);
 
-            /* keeps accumulating until a valid line is read completely */
-            while ((currentLine = reader.readLine()) != null) {
-                buffer.append(currentLine);
-                if (listener.isValid(buffer.toString())){
-                    listener.handle(rotatedFileName, currentLine);
+                if (renamed != null) {
+                    try (LineReader renamedReader = openReader(fileSource, renamed, position, delimiterScanner,
+                            charset, malformedInputMode)) {
+                        drained = drain(renamedReader, renamed, position, prevBuffer);
+                    }
+                } else {
+                    LOGGER.warn("Could not find the rest of " + path + " after offset " + position);
+                }
+            }
+        }
+
+        List<Generation> generations = findRotatedGenerations(rotatedFileName, attributes, truncated, drained);
+
+        /* all the generations are opened before reading any, so that they cannot be removed meanwhile */
+        List<LineReader> readers = new ArrayList<>();
+        try {
+            for (int i = 0; i < generations.size(); i++) {
+                readers.add(openGeneration(rotatedFileName, generations.get(i), truncated && i == 0 ? position : 0));
+            }
+
+            for (int i = 0; i < generations.size(); i++) {
+                Generation generation = generations.get(i);
+                boolean copy = truncated && i == 0;
+                long offset = copy ? position : 0;
 
-                    buffer = new StringBuffer();
+                if (readers.get(i) != null) {
+                    LOGGER.debug("Handling rotated generation '" + generation.path + "' starting at position: "
+                            + offset);
+
+                    drain(readers.get(i), generation.path, offset, copy ? prevBuffer : new StringBuilder());
+                }
+            }
+        } finally {
+            for (LineReader generationReader : readers) {
+                if (generationReader != null) {
+                    generationReader.close();
                 }
+            }
+        }
+    }
+
+    /**
+     * Opens a rotated generation. Names shift when the file rotates again, so the generation is looked up by its
+     * file key if the name it was found with now points to another file.
+     *
+     * @return a reader of the generation at the given offset, or null if the generation has been removed.
+     */
+    private LineReader openGeneration(String rotatedFileName, Generation generation, long offset)
+            throws IOException {
+        Object key = generation.attributes.getFileKey();
+        String candidate = generation.path;
 
-                rotatedPosition += currentLine.length();
+        for (int attempt = 0; attempt < 3 && candidate != null; attempt++) {
+            try {
+                LineReader generationReader = openReader(fileSource, candidate, offset, delimiterScanner,
+                        charset, malformedInputMode);
+
+                if (key.equals(fileSource.readAttributes(candidate).getFileKey())) {
+                    generation.path = candidate;
+                    return generationReader;
+                }
+                generationReader.close();
+            } catch (NoSuchFileException | FileNotFoundException e) {
+                // rotated meanwhile
             }
+            candidate = findGeneration(rotatedFileName, key);
         }
+
+        LOGGER.warn("Rotated generation '" + generation.path + "' of " + path + " removed before being read");
+        return null;
     }
 
     /**
-     * Opens the file and starts tailing it. It keeps accumulating partial lines to a buffer
-     * until the buffer contains a valid line.
+     * Reads lines until the end of the given reader, delivering the valid ones.
      *
-     * Line validation logic is delegated to {@link com.keedio.tailer.listener.FileEventListener#isValid}.
+     * @param reader the reader of a rotated generation.
+     * @param filename the name the lines are delivered with.
+     * @param offset the position of the reader.
+     * @param prevBuffer the partially read line preceding the position of the reader.
+     * @return the position of the reader once drained.
+     * @throws IOException if an error occurred reading.
+     */
+    private long drain(LineReader reader, String filename, long offset, StringBuilder prevBuffer) throws IOException {
+        String currentLine;
+        StringBuilder buffer = new StringBuilder(prevBuffer.toString());
+
+        /* keeps accumulating until a valid line is read completely */
+        while ((currentLine = reader.readLine()) != null) {
+            buffer.append(currentLine);
+            offset += reader.getLastLength();
+
+            String accumulated = buffer.toString();
+
+            if (listener.isValid(accumulated)){
+                if (!deliver(filename, accumulated, offset)) {
+                    /* stopped: the rotation is handled again if the tailer is run again */
+                    throw new InterruptedIOException("delivery of a line of " + filename + " interrupted");
+                }
+
+                buffer = new StringBuilder();
+            }
+        }
+        return offset + reader.getSkippedLength();
+    }
+
+    /**
+     * @return the sibling of the rotated file having the given file key, or null.
+     */
+    private String findGeneration(String rotatedFileName, Object key) throws IOException {
+        for (String candidate : listSiblings(rotatedFileName)) {
+            try {
+                if (key.equals(fileSource.readAttributes(candidate).getFileKey())) {
+                    return candidate;
+                }
+            } catch (NoSuchFileException e) {
+                // rotated meanwhile
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the generations rotated since the last poll, other than the tailed one: the siblings of the rotated
+     * file modified after the tailed generation was last polled, and not after the new file was opened.
      *
-     * @param file the file to tail.
-     * @return true if something strange has happened to the tailed file and it should be re-opened.
+     * @param rotatedFileName the name of the rotated file, as returned by the listener.
+     * @param attributes the attributes of the new tailed file, read once opened.
+     * @param truncated true if the tailed generation was truncated rather than renamed.
+     * @param drained the size of the tailed generation, once drained.
+     * @return the generations, oldest first.
+     * @throws IOException if an error occurred listing the generations.
      */
-    private boolean handleFile(File file) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            LOGGER.debug("Opened: " + file.getAbsolutePath());
+    private List<Generation> findRotatedGenerations(String rotatedFileName, FileAttributes attributes,
+                                                    boolean truncated, long drained) throws IOException {
+        List<Generation> candidates = new ArrayList<>();
+        Set<Object> seen = new HashSet<>();
+        boolean found = true;
 
-            creationTime = getCreationTime(file);
+        /* the modification time of the tailed generation may come from a stale snapshot of an attribute poller,
+         * older than a late write to a generation drained before: it is taken from the scan when listed */
+        long tailedModified = generationModified;
 
-            StringBuffer buffer = new StringBuffer();
-            while (run) {
+        /* names shift if the file rotates during a scan, and a generation can be missed: the siblings are
+         * scanned again until no new generation shows up */
+        while (found) {
+            found = false;
 
+            for (String candidate : listSiblings(rotatedFileName)) {
+                FileAttributes candidateAttributes;
                 try {
+                    candidateAttributes = fileSource.readAttributes(candidate);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
 
-                    if (checkRotateCondition(buffer, file)) {
-                        sleepSilently(sleepTime);
-                        return true;
-                    }
+                Object key = candidateAttributes.getFileKey();
 
-                    String currentLine;
+                if (!seen.add(key)) {
+                    continue;
+                }
 
-                    while ((currentLine = reader.readLine()) != null) {
-                        buffer.append(currentLine);
+                if (generationKey.equals(key)) {
+                    tailedModified = Math.max(tailedModified, candidateAttributes.getLastModifiedTime());
+                    continue;
+                }
 
-                        // update position taking into account carriage return
-                        position += currentLine.length() + 1;
+                candidates.add(new Generation(candidate, candidateAttributes));
+                found = true;
+            }
+        }
 
-                        String accumulated = buffer.toString();
+        List<Generation> generations = new ArrayList<>();
 
-                        if (listener.isValid(accumulated)) {
-                            listener.handle(file.getAbsolutePath(), accumulated);
+        for (Generation generation : candidates) {
+            long modified = generation.attributes.getLastModifiedTime();
 
-                            lastFullLinePosition = position;
-                            buffer = new StringBuffer();
-                        }
-                    }
+            /* generations modified after the new file was opened rotated since: they are newer than it */
+            if (modified <= tailedModified || modified > attributes.getLastModifiedTime()
+                    || attributes.getFileKey().equals(generation.attributes.getFileKey())) {
+                continue;
+            }
 
-                    sleepSilently(sleepTime);
-                } catch (NoSuchFileException e) {
+            /* the tailed generation, drained through the open reader, compressed since */
+            if (!truncated && generation.path.endsWith(GZIP_SUFFIX)
+                    && isCompressedGeneration(generation.path, drained)) {
+                continue;
+            }
+
+            generations.add(generation);
+        }
+
+        Collections.sort(generations, new Comparator<Generation>() {
+            @Override
+            public int compare(Generation o1, Generation o2) {
+                long m1 = o1.attributes.getLastModifiedTime();
+                long m2 = o2.attributes.getLastModifiedTime();
 
-                    /*
-                    We were processing the file peacefully an suddenly it doesn't exist anymore.
-                    Maybe a file rotation ocurred, let's sleep a bit a check if it's created again.
-                    */
-                    sleepSilently(sleepTime);
+                if (m1 != m2) {
+                    return m1 < m2 ? -1 : 1;
                 }
+                long c1 = o1.attributes.getCreationTime();
+                long c2 = o2.attributes.getCreationTime();
+
+                return c1 < c2 ? -1 : (c1 == c2 ? 0 : 1);
             }
+        });
 
-        }  catch (Exception e) {
-            /* Something very bad happened, aborting */
-            listener.handleException(e);
-            throw new TailerException(e);
+        return generations;
+    }
+
+    /**
+     * @return the files of the directory of the rotated file whose name starts with the name of the tailed file.
+     */
+    private List<String> listSiblings(String rotatedFileName) throws IOException {
+        String directory = new File(rotatedFileName).getAbsoluteFile().getParent();
+        List<String> siblings = new ArrayList<>();
+
+        for (String candidate : fileSource.list(directory)) {
+            if (new File(candidate).getName().startsWith(file.getName()) && !candidate.equals(path)) {
+                siblings.add(candidate);
+            }
         }
+        return siblings;
+    }
 
-        return false;
+    /**
+     * Checks if a compressed file is the tailed generation: gzip records the size of the uncompressed content
+     * in its last 4 bytes, and the first bytes of the content have been kept.
+     */
+    private boolean isCompressedGeneration(String compressedFile, long size) throws IOException {
+        try (SeekableByteChannel channel = fileSource.open(compressedFile)) {
+            ByteBuffer trailer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+
+            channel.position(Math.max(0, channel.size() - 4));
+            while (trailer.hasRemaining() && channel.read(trailer) >= 0) {
+                // reads the whole trailer
+            }
+
+            if (trailer.hasRemaining() || trailer.getInt(0) != (int) size) {
+                return false;
+            }
+
+            channel.position(0);
+            InputStream in = new GZIPInputStream(Channels.newInputStream(channel));
+            int length = (int) Math.min(generationHead.length, size);
+
+            return Arrays.equals(Arrays.copyOf(generationHead, length), readFully(in, length));
+        } catch (IOException e) {
+            /* i.e. not a gzip file, or a file being compressed */
+            LOGGER.debug("Could not read " + compressedFile, e);
+            return false;
+        }
+    }
+
+    /**
+     * Reads the first bytes of the tailed generation again. They are read by name, so they are only kept if the
+     * name still points to the tailed generation once they are read.
+     */
+    private void extendHead() throws IOException {
+        byte[] head = readHead(path);
+
+        if (generationKey == null || generationKey.equals(readAttributes(path).getFileKey())) {
+            setHead(head);
+        }
+    }
+
+    /* the identity is computed once per head, so that records only carry a reference to it */
+    private void setHead(byte[] head) {
+        generationHead = head;
+        generationIdentity = FileIdentity.of(generationKey, head);
+    }
+
+    /**
+     * @return the first bytes of the given file, at most {@link #HEAD_SIZE}.
+     */
+    private byte[] readHead(String path) throws IOException {
+        try (SeekableByteChannel channel = fileSource.open(path)) {
+            return readFully(Channels.newInputStream(channel), HEAD_SIZE);
+        }
+    }
+
+    /* reads up to count bytes, less if the end of the stream is reached */
+    private static byte[] readFully(InputStream in, int count) throws IOException {
+        byte[] bytes = new byte[count];
+        int length = 0;
+
+        while (length < count) {
+            int read = in.read(bytes, length, count - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length == count ? bytes : Arrays.copyOf(bytes, length);
+    }
+
+    /**
+     * Opens the tailed file at the current position.
+     *
+     * @throws IOException if an error occurred opening the file.
+     */
+    private void openReader() throws IOException {
+        reader = openReader(fileSource, path, position, delimiterScanner, charset, malformedInputMode);
+        LOGGER.debug("Opened: " + path + " at offset: " + position);
+
+        FileAttributes attributes = readAttributes(path);
+        generationSize = attributes.getSize();
+
+        /* when resuming, the creation time and the key of the file tailed before the failure are kept,
+         * so that a rotation occurred in the meantime is detected */
+        if (!resuming || creationTime == 0) {
+            creationTime = attributes.getCreationTime();
+            generationKey = attributes.getFileKey();
+            generationModified = attributes.getLastModifiedTime();
+            setHead(readHead(path));
+        } else if (generationKey != null && !generationKey.equals(attributes.getFileKey())) {
+            /* the file opened is a new generation, the tailed one is found by its key */
+            closeReader();
+        } else if (generationIdentity != null
+                && !generationIdentity.matches(attributes.getFileKey(), readHead(path))) {
+            /* the tailed generation has been removed and a new file reuses its key: the new file is read whole */
+            LOGGER.warn(path + " has been replaced by a new file with the same file key, reading it from the start");
+
+            closeReader();
+            position = lastFullLinePosition = 0;
+            reader = openReader(fileSource, path, position, delimiterScanner, charset, malformedInputMode);
+
+            creationTime = attributes.getCreationTime();
+            generationModified = attributes.getLastModifiedTime();
+            setHead(readHead(path));
+        }
+        resuming = false;
+
+        /* the last snapshot, if any, may describe the previous generation */
+        if (attributePoller != null) {
+            attributePoller.activity(path);
+        }
+    }
+
+    private void closeReader() {
+        if (reader == null) {
+            return;
+        }
+
+        try {
+            reader.close();
+        } catch (IOException e) {
+            LOGGER.warn("Could not close " + path, e);
+        }
+        reader = null;
+    }
+
+    /**
+     * Notifies the listener of a full valid line. If the thread is interrupted while waiting for lines to be
+     * acknowledged, or while the listener handles the line (the listener then returns with the interrupt status of
+     * the thread set), the tailer is stopped and the line is not taken as delivered: it is read again if the tailer
+     * is run again.
+     *
+     * @param filename the name of the file the line was read from.
+     * @param line the valid line.
+     * @param linePosition the position in the file right after the line.
+     * @return true if the line was delivered.
+     */
+    private boolean deliver(String filename, String line, long linePosition) {
+        Acknowledgement ack = null;
+
+        if (listener instanceof AcknowledgingListener) {
+            try {
+                ack = ackTracker.register(linePosition, generationIdentity);
+            } catch (InterruptedException e) {
+                /* i.e. the executor is shut down */
+                Thread.currentThread().interrupt();
+                stop();
+                return false;
+            }
+            ((AcknowledgingListener) listener).handle(new Record(filename, line, linePosition), ack);
+        } else if (listener instanceof RecordListener) {
+            ((RecordListener) listener).handle(new Record(filename, line, linePosition));
+        } else {
+            listener.handle(filename, line);
+        }
+
+        if (Thread.currentThread().isInterrupted()) {
+            if (ack != null) {
+                ackTracker.cancel(ack);
+            }
+            stop();
+            return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * Looks for the rotated file, or for its compressed version if the rotated file
+     * has already been compressed.
+     *
+     * @param rotatedFileName the name of the rotated file, as returned by the listener.
+     * @return the rotated file, or null if neither the file nor its compressed version exist.
+     */
+    static File findRotatedFile(String rotatedFileName) {
+        String rotatedFile = findRotatedFile(new LocalFileSource(), rotatedFileName);
+
+        return rotatedFile == null ? null : new File(rotatedFile);
+    }
+
+    /**
+     * Looks for the rotated file, or for its compressed version if the rotated file
+     * has already been compressed.
+     *
+     * @param fileSource the file system to look into.
+     * @param rotatedFileName the name of the rotated file, as returned by the listener.
+     * @return the name of the rotated file, or null if neither the file nor its compressed version exist.
+     */
+    static String findRotatedFile(FileSource fileSource, String rotatedFileName) {
+        if (fileSource.exists(rotatedFileName)){
+            return rotatedFileName;
+        }
+
+        String compressedFile = rotatedFileName + GZIP_SUFFIX;
+
+        if (fileSource.exists(compressedFile)){
+            return compressedFile;
+        }
+
+        return null;
+    }
+
+    /**
+     * Opens a reader of lines on the given file, positioned at the given byte offset.
+     *
+     * @param file the file to open.
+     * @param offset the byte offset (of the uncompressed content) the reader should start at.
+     * @return a reader positioned at <code>offset</code>.
+     * @throws IOException if an error occurred opening the file.
+     */
+    static LineReader openReader(File file, long offset) throws IOException {
+        return openReader(file, offset, DelimiterScanner.newline());
+    }
+
+    /**
+     * Opens a reader on the given file, positioned at the given byte offset.
+     *
+     * Seeking the underlying channel avoids reading and discarding all the bytes before <code>offset</code>.
+     *
+     * Gzip compressed files cannot be seeked: they are inflated and the first <code>offset</code>
+     * uncompressed bytes are discarded.
+     *
+     * @param file the file to open.
+     * @param offset the byte offset (of the uncompressed content) the reader should start at.
+     * @param delimiterScanner finds the end of the lines.
+     * @return a reader positioned at <code>offset</code>.
+     * @throws IOException if an error occurred opening the file.
+     */
+    static LineReader openReader(File file, long offset, DelimiterScanner delimiterScanner) throws IOException {
+        return openReader(new LocalFileSource(), file.getAbsolutePath(), offset, delimiterScanner,
+                Charset.defaultCharset(), MalformedInputMode.REPLACE);
+    }
+
+    /**
+     * Opens a reader on the given file of the given file system, positioned at the given byte offset.
+     *
+     * @param fileSource the file system to read from.
+     * @param path the path of the file to open.
+     * @param offset the byte offset (of the uncompressed content) the reader should start at.
+     * @param delimiterScanner finds the end of the lines.
+     * @param charset the charset the lines are decoded with.
+     * @param malformedInputMode what to do with bytes which are not valid in the charset.
+     * @return a reader positioned at <code>offset</code>.
+     * @throws IOException if an error occurred opening the file.
+     */
+    static LineReader openReader(FileSource fileSource, String path, long offset, DelimiterScanner delimiterScanner,
+                                 Charset charset, MalformedInputMode malformedInputMode) throws IOException {
+        SeekableByteChannel channel = fileSource.open(path);
+        try {
+            if (path.endsWith(GZIP_SUFFIX)) {
+                InputStream gzipIn = new GZIPInputStream(Channels.newInputStream(channel), GZIP_BUFFER_SIZE);
+                skipFully(gzipIn, offset);
+
+                return new LineReader(gzipIn, delimiterScanner, charset, malformedInputMode);
+            }
+
+            channel.position(offset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new LineReader(channel, delimiterScanner, charset, malformedInputMode);
+    }
+
+    /**
+     * Discards the first <code>count</code> bytes of the given stream, or all of them if the stream is shorter.
+     *
+     * {@link java.util.zip.InflaterInputStream#skip(long)} inflates through a 512 bytes buffer, this
+     * method uses a much larger one.
+     *
+     * @param in the stream to skip.
+     * @param count the number of bytes to skip.
+     * @throws IOException if an error occurred reading the stream.
+     */
+    private static void skipFully(InputStream in, long count) throws IOException {
+        byte[] skipBuffer = new byte[(int) Math.min(count, GZIP_BUFFER_SIZE)];
+        long remaining = count;
+
+        while (remaining > 0) {
+            int read = in.read(skipBuffer, 0, (int) Math.min(remaining, skipBuffer.length));
+
+            if (read < 0) {
+                LOGGER.warn("Reached end of stream after skipping " + (count - remaining) + " of " + count + " bytes");
+                return;
+            }
+            remaining -= read;
+        }
     }
 
     /**
      * Checks if the file has rotated.
      *
-     * <p></p>
-     * A file is considered rotated if its size is smaller than the accumulated position and if
-     * its creation time is newer than the last known creation time.
+     * <p>
+     * A file is considered rotated if its file key changed, or if its size is smaller than the accumulated
+     * position (it has been truncated). Without file keys, a file is considered rotated if its size is smaller
+     * than the accumulated position and if its creation time is newer than the last known creation time.
      *</p>
      * <p>
      * At the time of rotation, the last line of the tailed file could only have been read
      * partially. In this case position > lastFullLinePosition and prevBuffer is not empty.
      * </p>
      * @param prevBuffer the buffer with the partially read line before (potential) rotation occurred.
-     * @param file the tailed file.
+     * @param attributes the attributes of the tailed file.
      * @return true if the file rotated, false otherwise.
      * @throws IOException if an error occurred processing the file.
      */
-    private boolean checkRotateCondition(StringBuffer prevBuffer, File file) throws IOException {
-        long newCreationTime = getCreationTime(file);
+    private boolean checkRotateCondition(StringBuilder prevBuffer, FileAttributes attributes) throws IOException {
+        boolean identified = generationKey != null && attributes.getFileKey() != null;
 
-        if (file.length()+1 < position && newCreationTime > creationTime){
+        if (identified ? !generationKey.equals(attributes.getFileKey()) || attributes.getSize() < position
+                : attributes.getSize()+1 < position && attributes.getCreationTime() > creationTime){
             // file rotated
-            handleRotatedFile(prevBuffer,
-                    listener.rotated(lastFullLinePosition, position));
+            String rotatedFileName = listener.rotated(lastFullLinePosition, position);
+
+            /* the new generation is opened before the rotated ones are read, which can take long, so that it
+             * cannot rotate away meanwhile. The name must point to the same file before and after opening it, so
+             * that the attributes describe the opened file: they also replace the ones of a poller, maybe stale */
+            LineReader liveReader = null;
+            while (identified && liveReader == null) {
+                Object key = readAttributes(path).getFileKey();
+                liveReader = openReader(fileSource, path, 0, delimiterScanner, charset, malformedInputMode);
+                attributes = readAttributes(path);
+
+                if (!key.equals(attributes.getFileKey())) {
+                    liveReader.close();
+                    liveReader = null;
+                }
+            }
 
-            position = 0;
+            try {
+                if (rotatedFileName != null) {
+                    if (identified) {
+                        handleRotatedGenerations(prevBuffer, rotatedFileName, attributes);
+                    } else {
+                        handleRotatedFile(prevBuffer, rotatedFileName);
+                    }
+                }
+            } catch (IOException e) {
+                if (liveReader != null) {
+                    liveReader.close();
+                }
+                throw e;
+            }
+
+            closeReader();
+            position = lastFullLinePosition = 0;
+            generationKey = null;
+            generationHead = new byte[0];
+            generationIdentity = null;
+
+            if (liveReader != null) {
+                reader = liveReader;
+                creationTime = attributes.getCreationTime();
+                generationKey = attributes.getFileKey();
+                generationModified = attributes.getLastModifiedTime();
+                extendHead();
+
+                LOGGER.debug("Opened: " + path + " at offset: " + position);
+
+                if (attributePoller != null) {
+                    attributePoller.activity(path);
+                }
+            }
+
+            if (latencyTracker != null) {
+                latencyTracker.reset();
+            }
 
             return true;
         }
@@ -247,22 +1207,20 @@ public class LRTailer implements Runnable {
     }
 
     /**
-     * Returns the creation time of the given file.
+     * Returns the attributes of the given file, retrying for a while if it does not exist,
+     * i.e. while it is being rotated.
      *
-     * @param file the file whose creation time should be retrieved.
-     * @return the timestamp (in milliseconds) of the creation time of the file.
+     * @param path the file whose attributes should be retrieved.
+     * @return the attributes of the file.
      * @throws IOException if an error occurred processing the file.
      */
-    private long getCreationTime(File file) throws IOException {
+    private FileAttributes readAttributes(String path) throws IOException {
 
         int retries = 0;
 
-        while (retries < 3) {
+        while (true) {
             try {
-                BasicFileAttributes attr =
-                        Files.readAttributes(Paths.get(file.toURI()),
-                                BasicFileAttributes.class);
-                return attr.creationTime().toMillis();
+                return fileSource.readAttributes(path);
             } catch (NoSuchFileException e) {
                 retries++;
 
@@ -270,11 +1228,14 @@ public class LRTailer implements Runnable {
                     throw e;
                 }
 
-                sleepSilently(100);
+                try {
+                    clock.sleep(100);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
             }
         }
-
-        return 0L;
     }
 
     /**
@@ -290,6 +1251,25 @@ public class LRTailer implements Runnable {
         }
     }
 
+    /**
+     * Returns the position in the tailed file of the last fully read line.
+     * @return the position in the tailed file of the last fully read line.
+     */
+    public long getLastFullLinePosition() {
+        return lastFullLinePosition;
+    }
+
+    /**
+     * Returns the identity of the generation of the tailed file being read, which {@link #getLastFullLinePosition()}
+     * refers to. The identity is computed when the generation is opened, and replaced while the generation is
+     * shorter than {@link com.keedio.tailer.checkpoint.FileIdentity#HEAD_SIZE}: the position refers to the identity
+     * if the identity is the same before and after reading the position.
+     * @return the identity of the tailed generation, null if no generation has been opened yet.
+     */
+    public FileIdentity getFileIdentity() {
+        return generationIdentity;
+    }
+
     /**
      * Returns the name of file being tailed.
      * @return the name of file being tailed.
@@ -297,4 +1277,16 @@ public class LRTailer implements Runnable {
     public File getTailedFile(){
         return file;
     }
+
+    /* a rotated generation of the tailed file */
+    private static class Generation {
+        /* the name the generation was last seen with */
+        private String path;
+        private final FileAttributes attributes;
+
+        Generation(String path, FileAttributes attributes) {
+            this.path = path;
+            this.attributes = attributes;
+        }
+    }
 }
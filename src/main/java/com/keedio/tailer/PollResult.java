@@ -0,0 +1,69 @@
+package com.keedio.tailer;
+
+/**
+ * The outcome of a {@link com.keedio.tailer.LRTailer#poll(long, int)} call.
+ */
+public class PollResult {
+
+    /* number of bytes read */
+    private final long bytes;
+
+    /* number of valid lines delivered to the listener */
+    private final int records;
+
+    /* true if the quotas were exhausted before reaching the end of the file */
+    private final boolean more;
+
+    /* number of bytes of the file left to read, as of the last attributes of the file checked */
+    private final long lag;
+
+    public PollResult(long bytes, int records, boolean more) {
+        this(bytes, records, more, 0);
+    }
+
+    public PollResult(long bytes, int records, boolean more, long lag) {
+        this.bytes = bytes;
+        this.records = records;
+        this.more = more;
+        this.lag = lag;
+    }
+
+    /**
+     * @return the number of bytes read.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the number of valid lines delivered to the listener.
+     */
+    public int getRecords() {
+        return records;
+    }
+
+    /**
+     * @return true if the quotas were exhausted before reaching the end of the file, so more data is available.
+     */
+    public boolean hasMore() {
+        return more;
+    }
+
+    /**
+     * @return the number of bytes of the file left to read after this poll, according to the last size of the file
+     * checked by the tailer: the file may have grown since.
+     */
+    public long getLag() {
+        return lag;
+    }
+
+    @Override
+    public String toString() {
+        return "PollResult{" +
+                "bytes=" + bytes +
+                ", records=" + records +
+                ", more=" + more +
+                ", lag=" + lag +
+                '}';
+    }
+}
@@ -0,0 +1,58 @@
+package com.keedio.tailer;
+
+/**
+ * A full valid line read by {@link com.keedio.tailer.LRTailer}, together with the file it was read from
+ * and its position in that file.
+ */
+public class Record {
+
+    /* the name of the file the line was read from */
+    private final String filename;
+
+    /* the line read */
+    private final String line;
+
+    /* the position in the file right after the line, where the tailer should resume from once this record is processed */
+    private final long position;
+
+    /**
+     * @param filename the name of the file the line was read from.
+     * @param line the line read.
+     * @param position the position in the file right after the line.
+     */
+    public Record(String filename, String line, long position) {
+        this.filename = filename;
+        this.line = line;
+        this.position = position;
+    }
+
+    /**
+     * @return the name of the file the line was read from.
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * @return the line read.
+     */
+    public String getLine() {
+        return line;
+    }
+
+    /**
+     * @return the position in the file right after the line.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public String toString() {
+        return "Record{" +
+                "filename='" + filename + '\'' +
+                ", position=" + position +
+                ", line='" + line + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,292 @@
+package com.keedio.tailer;
+
+import com.keedio.tailer.checkpoint.CheckpointStore;
+import com.keedio.tailer.checkpoint.FileIdentity;
+import com.keedio.tailer.checkpoint.IdentityCheckpointStore;
+import com.keedio.tailer.io.DelimiterScanner;
+import com.keedio.tailer.io.FileSource;
+import com.keedio.tailer.io.LocalFileSource;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * <p>
+ *     Describes where {@link com.keedio.tailer.LRTailer} should start reading the tailed file the first time
+ *     it is opened.
+ * </p>
+ * <p>
+ *     Supported modes are:
+ *     <ul>
+ *         <li>{@link Mode#BEGINNING}: reads the whole file (default behaviour).</li>
+ *         <li>{@link Mode#END}: skips the existing content and only reads data appended after the tailer started.</li>
+ *         <li>{@link Mode#OFFSET}: starts at an exact byte offset, i.e. a previously saved position.</li>
+ *         <li>{@link Mode#LAST_LINES}: starts at the beginning of the last <code>n</code> lines of the file.</li>
+ *         <li>{@link Mode#CHECKPOINT}: starts at the position last committed to a
+ *         {@link com.keedio.tailer.checkpoint.CheckpointStore}, or at the beginning if none was committed.</li>
+ *     </ul>
+ * </p>
+ * <p>
+ *     A checkpoint committed with the {@link com.keedio.tailer.checkpoint.FileIdentity} of the tailed generation is
+ *     only resumed if the file still is that generation: a file created since under the same name, even with the
+ *     same file key, is read from the beginning.
+ * </p>
+ * <p>
+ *     The last lines mode does not read the whole file: it reads fixed-size blocks backwards from the end of
+ *     the file and counts line boundaries until enough lines have been found. Lines are found with the
+ *     {@link com.keedio.tailer.io.DelimiterScanner} of the tailer, so a custom delimiter, or the line feed of a
+ *     charset which is not a superset of ASCII (i.e. <code>DelimiterScanner.of("\n", charset)</code>), is
+ *     honoured the same way as it is when the lines are read.
+ * </p>
+ */
+public final class StartPosition {
+
+    /**
+     * Available start modes.
+     */
+    public enum Mode {
+        BEGINNING, END, OFFSET, LAST_LINES, CHECKPOINT
+    }
+
+    /* size of the blocks read backwards when looking for the last lines of a file */
+    static final int DEFAULT_BLOCK_SIZE = 8192;
+
+    private static final StartPosition BEGINNING = new StartPosition(Mode.BEGINNING, 0, null);
+    private static final StartPosition END = new StartPosition(Mode.END, 0, null);
+
+    private final Mode mode;
+
+    /* the offset for Mode.OFFSET, the number of lines for Mode.LAST_LINES */
+    private final long value;
+
+    /* the store positions are loaded from for Mode.CHECKPOINT */
+    private final CheckpointStore checkpointStore;
+
+    private StartPosition(Mode mode, long value, CheckpointStore checkpointStore) {
+        this.mode = mode;
+        this.value = value;
+        this.checkpointStore = checkpointStore;
+    }
+
+    /**
+     * @return a start position reading the whole file.
+     */
+    public static StartPosition beginning() {
+        return BEGINNING;
+    }
+
+    /**
+     * @return a start position skipping the current content of the file.
+     */
+    public static StartPosition end() {
+        return END;
+    }
+
+    /**
+     * @param offset the byte offset to start reading from.
+     * @return a start position at the given byte offset.
+     */
+    public static StartPosition offset(long offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset must be positive: " + offset);
+        }
+        return new StartPosition(Mode.OFFSET, offset, null);
+    }
+
+    /**
+     * @param lines the number of trailing lines to read, use {@link #end()} to skip the whole file.
+     * @return a start position pointing to the beginning of the last <code>lines</code> lines of the file.
+     */
+    public static StartPosition lastLines(int lines) {
+        if (lines <= 0) {
+            throw new IllegalArgumentException("lines must be positive: " + lines);
+        }
+        return new StartPosition(Mode.LAST_LINES, lines, null);
+    }
+
+    /**
+     * @param checkpointStore the store holding the last committed position of the tailed file.
+     * @return a start position at the last committed position of the tailed file.
+     */
+    public static StartPosition checkpoint(CheckpointStore checkpointStore) {
+        if (checkpointStore == null) {
+            throw new NullPointerException("checkpointStore must not be null");
+        }
+        return new StartPosition(Mode.CHECKPOINT, 0, checkpointStore);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    /**
+     * Computes the byte offset this start position refers to in the given file.
+     *
+     * @param file the tailed file.
+     * @return the offset the tailer should start reading from.
+     * @throws IOException if an error occurred processing the file.
+     */
+    public long resolve(File file) throws IOException {
+        return resolve(new LocalFileSource(), file.getAbsolutePath());
+    }
+
+    /**
+     * Computes the byte offset this start position refers to in the given file.
+     *
+     * @param fileSource the file system the file is read from.
+     * @param path the path of the tailed file.
+     * @return the offset the tailer should start reading from.
+     * @throws IOException if an error occurred processing the file.
+     */
+    public long resolve(FileSource fileSource, String path) throws IOException {
+        return resolve(fileSource, path, DelimiterScanner.newline());
+    }
+
+    /**
+     * Computes the byte offset this start position refers to in the given file.
+     *
+     * @param fileSource the file system the file is read from.
+     * @param path the path of the tailed file.
+     * @param delimiterScanner finds the end of the lines of the file.
+     * @return the offset the tailer should start reading from.
+     * @throws IOException if an error occurred processing the file.
+     */
+    public long resolve(FileSource fileSource, String path, DelimiterScanner delimiterScanner) throws IOException {
+        switch (mode) {
+            case END:
+                return fileSource.readAttributes(path).getSize();
+            case OFFSET:
+                return checkOffset(fileSource, path, value);
+            case CHECKPOINT:
+                return checkCheckpoint(fileSource, path);
+            case LAST_LINES:
+                try (SeekableByteChannel channel = fileSource.open(path)) {
+                    return findLastLinesOffset(channel, (int) value, DEFAULT_BLOCK_SIZE, delimiterScanner);
+                }
+            default:
+                return 0L;
+        }
+    }
+
+    /* a checkpoint committed for another generation, i.e. a removed file whose inode was reused, does not apply */
+    private long checkCheckpoint(FileSource fileSource, String path) throws IOException {
+        if (checkpointStore instanceof IdentityCheckpointStore) {
+            FileIdentity identity = ((IdentityCheckpointStore) checkpointStore).loadIdentity(path);
+
+            if (identity != null && !identity.matches(fileSource, path)) {
+                return 0L;
+            }
+        }
+        return checkOffset(fileSource, path, checkpointStore.load(path));
+    }
+
+    /* an offset past the end of the file cannot refer to this file, read it from the start */
+    private static long checkOffset(FileSource fileSource, String path, long offset) throws IOException {
+        return offset >= 0 && offset <= fileSource.readAttributes(path).getSize() ? offset : 0L;
+    }
+
+    /**
+     * Reads the file backwards, <code>blockSize</code> bytes at a time, until <code>lines</code>
+     * line boundaries have been found.
+     *
+     * A delimiter ending the file terminates the last line, so it is not counted as the beginning of a new one.
+     * Each block is read with the byte preceding it, telling whether a line feed ends a <code>\r\n</code>, and
+     * with the bytes following it, completing a delimiter which starts in the block.
+     *
+     * @param file the file to scan.
+     * @param lines the number of lines to look for.
+     * @param blockSize the size of the blocks read backwards.
+     * @param delimiterScanner finds the end of the lines.
+     * @return the offset of the first byte of the last <code>lines</code> lines, 0 if the file has fewer lines.
+     * @throws IOException if an error occurred processing the file.
+     */
+    static long findLastLinesOffset(File file, int lines, int blockSize, DelimiterScanner delimiterScanner)
+            throws IOException {
+        try (SeekableByteChannel channel = new LocalFileSource().open(file.getAbsolutePath())) {
+            return findLastLinesOffset(channel, lines, blockSize, delimiterScanner);
+        }
+    }
+
+    private static long findLastLinesOffset(SeekableByteChannel channel, int lines, int blockSize,
+                                            DelimiterScanner delimiterScanner) throws IOException {
+        long length = channel.size();
+        int delimiterLength = delimiterScanner.getDelimiterLength();
+        int following = Math.max(delimiterLength - 1, 1);
+
+        ByteBuffer block = ByteBuffer.allocate(1 + blockSize + following);
+        /* the end offsets, relative to the block, of the delimiters starting in the block */
+        int[] ends = new int[blockSize];
+        long end = length;
+        int found = 0;
+
+        while (end > 0) {
+            long start = Math.max(0, end - blockSize);
+            long readStart = Math.max(0, start - 1);
+            int size = (int) (Math.min(length, end + following) - readStart);
+
+            block.clear().limit(size);
+            channel.position(readStart);
+            while (block.hasRemaining()) {
+                if (channel.read(block) < 0) {
+                    throw new EOFException("Unexpected end of file at offset " + (readStart + block.position()));
+                }
+            }
+
+            int from = (int) (start - readStart);
+            int to = (int) (end - readStart);
+            int count = 0;
+
+            for (int i = from; i < to; ) {
+                int index = delimiterScanner.indexOf(block, i, size);
+
+                if (index < 0 || index >= to) {
+                    break;
+                }
+
+                int delimiterEnd = index + delimiterLength;
+
+                if (delimiterScanner.isNewline()) {
+                    if (block.get(index) == '\n' && index > 0 && block.get(index - 1) == '\r') {
+                        /* the end of a \r\n, counted with its \r */
+                        i = delimiterEnd;
+                        continue;
+                    }
+                    if (block.get(index) == '\r' && delimiterEnd < size && block.get(delimiterEnd) == '\n') {
+                        delimiterEnd++;
+                    }
+                }
+
+                ends[count++] = delimiterEnd;
+                i = delimiterEnd;
+            }
+
+            for (int k = count - 1; k >= 0; k--) {
+                long offset = readStart + ends[k];
+
+                if (offset != length) {
+                    found++;
+
+                    if (found == lines) {
+                        return offset;
+                    }
+                }
+            }
+
+            end = start;
+        }
+
+        return 0L;
+    }
+
+    @Override
+    public String toString() {
+        return mode + (mode == Mode.OFFSET || mode == Mode.LAST_LINES ? "(" + value + ")" : "");
+    }
+}
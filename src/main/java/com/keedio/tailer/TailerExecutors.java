@@ -0,0 +1,70 @@
+package com.keedio.tailer;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>
+ *     Executors running one {@link com.keedio.tailer.LRTailer} per thread.
+ * </p>
+ * <p>
+ *     In {@link Mode#VIRTUAL} mode each tailer runs on its own virtual thread, available since Java 21: a sleeping
+ *     tailer does not hold a platform thread, so tens of thousands of files can be tailed with the simple
+ *     one tailer per file design. The library is compiled for older Java versions, so the virtual thread
+ *     executor is looked up at runtime.
+ * </p>
+ * <p>
+ *     <code>shutdownNow()</code> interrupts the threads, which stops the tailers sleeping between polls or waiting
+ *     for their lines to be acknowledged (see {@link com.keedio.tailer.LRTailer}).
+ * </p>
+ */
+public final class TailerExecutors {
+
+    /**
+     * Kinds of threads tailers run on.
+     */
+    public enum Mode {
+        /* one platform thread per tailer */
+        PLATFORM,
+        /* one virtual thread per tailer, requires Java 21 */
+        VIRTUAL
+    }
+
+    private TailerExecutors() {
+    }
+
+    /**
+     * @param mode the kind of threads.
+     * @return an executor starting a new thread of the given kind for each submitted tailer.
+     * @throws UnsupportedOperationException if virtual threads are not supported by the running JVM.
+     */
+    public static ExecutorService newExecutor(Mode mode) {
+        return mode == Mode.VIRTUAL ? newVirtualThreadPerTaskExecutor() : Executors.newCachedThreadPool();
+    }
+
+    /**
+     * @return an executor starting a new virtual thread for each submitted tailer.
+     * @throws UnsupportedOperationException if virtual threads are not supported by the running JVM.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this JVM", e);
+        }
+    }
+
+    /**
+     * @return true if the running JVM supports virtual threads.
+     */
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
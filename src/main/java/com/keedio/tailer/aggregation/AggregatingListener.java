@@ -0,0 +1,269 @@
+package com.keedio.tailer.aggregation;
+
+import com.keedio.tailer.LRTailer;
+import com.keedio.tailer.Record;
+import com.keedio.tailer.listener.RecordListener;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ *     Aggregates the records read by a {@link com.keedio.tailer.LRTailer} into time windows and emits a
+ *     {@link com.keedio.tailer.aggregation.WindowSummary} per window to a
+ *     {@link com.keedio.tailer.aggregation.SummaryListener}, instead of delivering every record.
+ * </p>
+ * <p>
+ *     Records are counted under the key returned by a {@link com.keedio.tailer.aggregation.KeyExtractor}. Each window
+ *     keeps at most <code>maxKeys</code> keys in a Space-Saving sketch: counts are exact up to <code>maxKeys</code>
+ *     distinct keys, beyond that the most frequent keys are kept with a bounded overestimation.
+ * </p>
+ * <p>
+ *     Windows are tumbling when <code>slideMillis</code> equals <code>windowMillis</code>, sliding otherwise: a summary
+ *     is then emitted every <code>slideMillis</code> for the last <code>windowMillis</code>, merging the sketches of
+ *     the slides. Windows are aligned on the epoch and based on the time records are handled at. Windows without
+ *     records are not emitted.
+ * </p>
+ * <p>
+ *     A window is closed when a record of a later window is handled or when {@link #run()} is called, so idle files
+ *     still get their last window emitted if {@link #run()} is scheduled periodically.
+ * </p>
+ * <p>
+ *     Like {@link com.keedio.tailer.reactive.TailerPublisher}, this class accepts every line and does not provide the
+ *     name of rotated files: subclasses can override {@link #isValid(String)} and {@link #rotated(long, long)}.
+ * </p>
+ */
+public class AggregatingListener implements RecordListener, Runnable {
+    private final static Logger LOGGER = LogManager.getLogger(AggregatingListener.class);
+
+    private final KeyExtractor extractor;
+
+    private final SummaryListener summaryListener;
+
+    private final long windowMillis;
+
+    private final long slideMillis;
+
+    private final int panesPerWindow;
+
+    private final int maxKeys;
+
+    private final Lock lock = new ReentrantLock();
+
+    /* the counts of the slides of the current window, oldest first */
+    private final Deque<Pane> panes = new ArrayDeque<>();
+
+    /* the index, since the epoch, of the current slide, or -1 before the first record */
+    private long currentPane = -1;
+
+    private volatile String filename;
+
+    /**
+     * Builds a listener aggregating over tumbling windows.
+     *
+     * @param extractor extracts the keys of the records.
+     * @param summaryListener the listener summaries are emitted to.
+     * @param windowMillis the length of the windows, in milliseconds.
+     * @param maxKeys the maximum number of keys counted per window.
+     */
+    public AggregatingListener(KeyExtractor extractor, SummaryListener summaryListener, long windowMillis, int maxKeys) {
+        this(extractor, summaryListener, windowMillis, windowMillis, maxKeys);
+    }
+
+    /**
+     * @param extractor extracts the keys of the records.
+     * @param summaryListener the listener summaries are emitted to.
+     * @param windowMillis the length of the windows, in milliseconds.
+     * @param slideMillis the time between two windows, in milliseconds, a divisor of <code>windowMillis</code>.
+     * @param maxKeys the maximum number of keys counted per window.
+     */
+    public AggregatingListener(KeyExtractor extractor, SummaryListener summaryListener, long windowMillis,
+                               long slideMillis, int maxKeys) {
+        if (slideMillis <= 0 || windowMillis % slideMillis != 0) {
+            throw new IllegalArgumentException("slideMillis must be a positive divisor of windowMillis");
+        }
+        if (maxKeys <= 0) {
+            throw new IllegalArgumentException("maxKeys must be positive");
+        }
+        this.extractor = extractor;
+        this.summaryListener = summaryListener;
+        this.windowMillis = windowMillis;
+        this.slideMillis = slideMillis;
+        this.panesPerWindow = (int) (windowMillis / slideMillis);
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Emits the windows ended by now. To be scheduled periodically, i.e. every <code>slideMillis</code>.
+     */
+    @Override
+    public void run() {
+        tick(System.currentTimeMillis());
+    }
+
+    @Override
+    public void handle(Record record) {
+        handle(record, System.currentTimeMillis());
+    }
+
+    @Override
+    public void handle(String filename, String line) {
+        handle(new Record(filename, line, -1));
+    }
+
+    /* counts the record in the slide of <code>now</code> */
+    void handle(Record record, long now) {
+        String key = extractor.extract(record);
+        List<WindowSummary> closed;
+
+        filename = record.getFilename();
+
+        lock.lock();
+        try {
+            closed = advance(now);
+
+            Pane pane = panes.peekLast();
+            pane.records++;
+            if (key != null) {
+                pane.keys.offer(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        emit(closed);
+    }
+
+    /* emits the windows ended before <code>now</code> */
+    void tick(long now) {
+        List<WindowSummary> closed;
+
+        lock.lock();
+        try {
+            closed = advance(now);
+        } finally {
+            lock.unlock();
+        }
+
+        emit(closed);
+    }
+
+    /* closes the windows ended before <code>now</code> */
+    private List<WindowSummary> advance(long now) {
+        long index = now / slideMillis;
+
+        if (currentPane < 0) {
+            currentPane = index;
+            panes.addLast(new Pane(maxKeys));
+            return Collections.emptyList();
+        }
+
+        List<WindowSummary> closed = new ArrayList<>();
+
+        while (currentPane < index) {
+            WindowSummary summary = summarize();
+            if (summary != null) {
+                closed.add(summary);
+            }
+
+            currentPane++;
+            panes.addLast(new Pane(maxKeys));
+            if (panes.size() > panesPerWindow) {
+                panes.removeFirst();
+            }
+
+            if (isIdle()) {
+                /* nothing left to emit, skips the idle slides */
+                currentPane = index;
+            }
+        }
+
+        return closed;
+    }
+
+    @Override
+    public void init(LRTailer lrTailer) {
+        filename = lrTailer.getTailedFile().getAbsolutePath();
+    }
+
+    @Override
+    public String rotated(long lastPosition, long currPosition) {
+        return null;
+    }
+
+    @Override
+    public void notExists() {
+        LOGGER.warn("File does not exists");
+    }
+
+    @Override
+    public void handleException(Exception e) {
+        LOGGER.error("Received exception", e);
+    }
+
+    @Override
+    public boolean isValid(String partialLine) {
+        return true;
+    }
+
+    /* the summary of the window ending with the current slide, or null if the window has no records */
+    private WindowSummary summarize() {
+        long records = 0;
+        for (Pane pane : panes) {
+            records += pane.records;
+        }
+
+        if (records == 0) {
+            return null;
+        }
+
+        List<KeyCount> keys;
+        if (panes.size() == 1) {
+            keys = panes.peekLast().keys.top();
+        } else {
+            SpaceSaving merged = new SpaceSaving(maxKeys);
+            for (Pane pane : panes) {
+                for (KeyCount count : pane.keys.top()) {
+                    merged.offer(count.getKey(), count.getCount(), count.getError());
+                }
+            }
+            keys = merged.top();
+        }
+
+        long end = (currentPane + 1) * slideMillis;
+
+        return new WindowSummary(filename, end - windowMillis, end, records, keys);
+    }
+
+    private boolean isIdle() {
+        for (Pane pane : panes) {
+            if (pane.records > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void emit(List<WindowSummary> closed) {
+        for (WindowSummary summary : closed) {
+            summaryListener.windowClosed(summary);
+        }
+    }
+
+    /* the counts of a slide */
+    private static class Pane {
+        private final SpaceSaving keys;
+        private long records = 0;
+
+        Pane(int maxKeys) {
+            this.keys = new SpaceSaving(maxKeys);
+        }
+    }
+}
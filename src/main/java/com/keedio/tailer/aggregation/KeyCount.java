@@ -0,0 +1,41 @@
+package com.keedio.tailer.aggregation;
+
+/**
+ * The estimated count of a key in a window.
+ */
+public class KeyCount {
+    private final String key;
+
+    private final long count;
+
+    private final long error;
+
+    public KeyCount(String key, long count, long error) {
+        this.key = key;
+        this.count = count;
+        this.error = error;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return the estimated count, never lower than the real count.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the maximum overestimation of the count, 0 if the count is exact.
+     */
+    public long getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return key + "=" + count + (error > 0 ? "(+-" + error + ")" : "");
+    }
+}
@@ -0,0 +1,16 @@
+package com.keedio.tailer.aggregation;
+
+import com.keedio.tailer.Record;
+
+/**
+ * Extracts the key a record is counted under by an {@link com.keedio.tailer.aggregation.AggregatingListener}:
+ * a field of the line, i.e. a level or a logger, or the result of a classification, i.e. an error signature.
+ */
+public interface KeyExtractor {
+
+    /**
+     * @param record the record read by the tailer.
+     * @return the key of the record, or null if the record is only counted in the window total.
+     */
+    String extract(Record record);
+}
@@ -0,0 +1,31 @@
+package com.keedio.tailer.aggregation;
+
+import com.keedio.tailer.Record;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Uses a group of the first match of a regular expression in the line as the key.
+ */
+public class RegexKeyExtractor implements KeyExtractor {
+    private final Pattern pattern;
+
+    private final int group;
+
+    /**
+     * @param regex the regular expression.
+     * @param group the group of the match used as key.
+     */
+    public RegexKeyExtractor(String regex, int group) {
+        this.pattern = Pattern.compile(regex);
+        this.group = group;
+    }
+
+    @Override
+    public String extract(Record record) {
+        Matcher matcher = pattern.matcher(record.getLine());
+
+        return matcher.find() ? matcher.group(group) : null;
+    }
+}
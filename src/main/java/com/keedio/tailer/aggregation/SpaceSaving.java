@@ -0,0 +1,108 @@
+package com.keedio.tailer.aggregation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * <p>
+ *     The Space-Saving heavy hitters sketch: counts at most <code>capacity</code> keys. When a new key comes and the
+ *     sketch is full, it takes the place of the least counted key and inherits its count as error, so the memory is
+ *     bounded while the frequent keys are still counted with a bounded overestimation.
+ * </p>
+ * <p>
+ *     Counts are exact as long as no more than <code>capacity</code> distinct keys have been offered.
+ *     This class is not thread safe.
+ * </p>
+ */
+class SpaceSaving {
+    private final int capacity;
+
+    private final Map<String, Counter> counters = new HashMap<>();
+
+    /* counters ordered by count, the least counted first */
+    private final TreeSet<Counter> ordered = new TreeSet<>(new Comparator<Counter>() {
+        @Override
+        public int compare(Counter c1, Counter c2) {
+            if (c1.count != c2.count) {
+                return c1.count < c2.count ? -1 : 1;
+            }
+            return Long.compare(c1.id, c2.id);
+        }
+    });
+
+    private long nextId = 0;
+
+    SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    void offer(String key) {
+        offer(key, 1, 0);
+    }
+
+    /**
+     * Adds <code>count</code> occurrences of a key, counted with <code>error</code> overestimation.
+     * Used to merge sketches.
+     */
+    void offer(String key, long count, long error) {
+        Counter counter = counters.get(key);
+
+        if (counter == null) {
+            if (counters.size() < capacity) {
+                counter = new Counter(key, nextId++);
+            } else {
+                Counter min = ordered.pollFirst();
+                counters.remove(min.key);
+
+                counter = new Counter(key, nextId++);
+                counter.count = min.count;
+                counter.error = min.count;
+            }
+            counters.put(key, counter);
+        } else {
+            ordered.remove(counter);
+        }
+
+        counter.count += count;
+        counter.error += error;
+        ordered.add(counter);
+    }
+
+    boolean isEmpty() {
+        return counters.isEmpty();
+    }
+
+    /**
+     * @return the counts of all the counted keys, most counted first.
+     */
+    List<KeyCount> top() {
+        List<KeyCount> top = new ArrayList<>(counters.size());
+
+        for (Iterator<Counter> it = ordered.descendingIterator(); it.hasNext(); ) {
+            Counter counter = it.next();
+            top.add(new KeyCount(counter.key, counter.count, counter.error));
+        }
+
+        return top;
+    }
+
+    private static class Counter {
+        private final String key;
+        private final long id;
+        private long count;
+        private long error;
+
+        Counter(String key, long id) {
+            this.key = key;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.keedio.tailer.aggregation;
+
+/**
+ * Receives the summaries of the windows closed by an {@link com.keedio.tailer.aggregation.AggregatingListener}.
+ */
+public interface SummaryListener {
+
+    /**
+     * @param summary the summary of a closed window.
+     */
+    void windowClosed(WindowSummary summary);
+}
@@ -0,0 +1,73 @@
+package com.keedio.tailer.aggregation;
+
+import java.util.List;
+
+/**
+ * The compact summary of the records of a window, emitted by {@link com.keedio.tailer.aggregation.AggregatingListener}
+ * instead of the records themselves.
+ */
+public class WindowSummary {
+    private final String filename;
+
+    private final long start;
+
+    private final long end;
+
+    private final long records;
+
+    private final List<KeyCount> keys;
+
+    public WindowSummary(String filename, long start, long end, long records, List<KeyCount> keys) {
+        this.filename = filename;
+        this.start = start;
+        this.end = end;
+        this.records = records;
+        this.keys = keys;
+    }
+
+    /**
+     * @return the name of the tailed file.
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * @return the start of the window, inclusive, in milliseconds since the epoch.
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return the end of the window, exclusive, in milliseconds since the epoch.
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * @return the number of records of the window, keyed or not.
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return the counts of the most frequent keys, most frequent first.
+     */
+    public List<KeyCount> getKeys() {
+        return keys;
+    }
+
+    @Override
+    public String toString() {
+        return "WindowSummary{" +
+                "filename='" + filename + '\'' +
+                ", start=" + start +
+                ", end=" + end +
+                ", records=" + records +
+                ", keys=" + keys +
+                '}';
+    }
+}
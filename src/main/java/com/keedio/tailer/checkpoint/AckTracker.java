@@ -0,0 +1,310 @@
+package com.keedio.tailer.checkpoint;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ *     Tracks the records handed to a {@link com.keedio.tailer.listener.AcknowledgingListener} and not acknowledged yet,
+ *     providing at-least-once delivery without making every record synchronous.
+ * </p>
+ * <p>
+ *     Records can be acknowledged in any order: the tracker keeps the <i>watermark</i>, the position of the last record
+ *     such that it and every record before it have been acknowledged. Only the watermark is committed to the
+ *     {@link com.keedio.tailer.checkpoint.CheckpointStore}, so a restart never skips a record which was still in flight.
+ * </p>
+ * <p>
+ *     Records registered with the {@link com.keedio.tailer.checkpoint.FileIdentity} of the generation they were read
+ *     from have the identity of the watermark committed along with it when the store is an
+ *     {@link com.keedio.tailer.checkpoint.IdentityCheckpointStore}.
+ * </p>
+ * <p>
+ *     Commits are grouped: the watermark is committed every <code>commitEvery</code> acknowledgements or when
+ *     <code>commitIntervalMillis</code> have elapsed since the last commit, whichever comes first.
+ * </p>
+ * <p>
+ *     At most <code>maxInFlight</code> records can be waiting for acknowledgement: when the limit is reached,
+ *     {@link #register(long)} blocks the tailer until some of them are acknowledged, or until it is interrupted.
+ * </p>
+ */
+public class AckTracker {
+    private final static Logger LOGGER = LogManager.getLogger(AckTracker.class);
+
+    private final CheckpointStore checkpointStore;
+
+    /* the name of the tailed file positions are committed for */
+    private final String filename;
+
+    private final int maxInFlight;
+
+    private final int commitEvery;
+
+    private final long commitIntervalNanos;
+
+    private final Lock lock = new ReentrantLock();
+
+    /* signalled when in-flight records are acknowledged */
+    private final Condition inFlightReleased = lock.newCondition();
+
+    /* serializes commits to the store, which happen outside the main lock */
+    private final Lock commitLock = new ReentrantLock();
+
+    /* records waiting for acknowledgement, in delivery order */
+    private final Deque<Entry> inFlight = new ArrayDeque<>();
+
+    private long watermark = -1;
+
+    /* the identity of the generation of the watermark, may be null */
+    private FileIdentity watermarkIdentity;
+
+    private long committedWatermark = -1;
+
+    private FileIdentity committedIdentity;
+
+    private int acksSinceCommit = 0;
+
+    private long lastCommitNanos = System.nanoTime();
+
+    /**
+     * @param checkpointStore the store the watermark is committed to, may be null.
+     * @param filename the name of the tailed file.
+     * @param maxInFlight the maximum number of records waiting for acknowledgement.
+     * @param commitEvery the number of acknowledgements after which the watermark is committed.
+     * @param commitIntervalMillis the maximum time, in milliseconds, between two commits of a changed watermark.
+     */
+    public AckTracker(CheckpointStore checkpointStore, String filename, int maxInFlight,
+                      int commitEvery, long commitIntervalMillis) {
+        if (maxInFlight <= 0 || commitEvery <= 0) {
+            throw new IllegalArgumentException("maxInFlight and commitEvery must be positive");
+        }
+        this.checkpointStore = checkpointStore;
+        this.filename = filename;
+        this.maxInFlight = maxInFlight;
+        this.commitEvery = commitEvery;
+        this.commitIntervalNanos = TimeUnit.MILLISECONDS.toNanos(commitIntervalMillis);
+    }
+
+    /**
+     * Registers a record about to be handed to the listener, waiting for in-flight records to be acknowledged
+     * if the in-flight limit has been reached.
+     *
+     * @param position the position in the file right after the record.
+     * @return the token the listener acknowledges the record with.
+     * @throws InterruptedException if the thread was interrupted while waiting, the record is not registered.
+     */
+    public Acknowledgement register(long position) throws InterruptedException {
+        return register(position, null);
+    }
+
+    /**
+     * Registers a record about to be handed to the listener, waiting for in-flight records to be acknowledged
+     * if the in-flight limit has been reached.
+     *
+     * @param position the position in the file right after the record.
+     * @param identity the identity of the generation the record was read from, may be null.
+     * @return the token the listener acknowledges the record with.
+     * @throws InterruptedException if the thread was interrupted while waiting, the record is not registered.
+     */
+    public Acknowledgement register(long position, FileIdentity identity) throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight.size() >= maxInFlight) {
+                inFlightReleased.await();
+            }
+
+            Entry entry = new Entry(position, identity);
+            inFlight.addLast(entry);
+
+            return entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Withdraws a registered record which has not been acknowledged, i.e. because the listener was interrupted
+     * before taking it: the watermark does not wait for it.
+     *
+     * @param ack the token of the record.
+     */
+    public void cancel(Acknowledgement ack) {
+        lock.lock();
+        try {
+            if (inFlight.remove(ack)) {
+                inFlightReleased.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Commits the watermark if it changed and the commit interval has elapsed since the last commit.
+     * Called periodically by the tailer so that the watermark is committed even when acknowledgements stop.
+     *
+     * @throws IOException if an error occurred committing the watermark.
+     */
+    public void commitIfDue() throws IOException {
+        boolean due;
+
+        lock.lock();
+        try {
+            due = changed() && System.nanoTime() - lastCommitNanos >= commitIntervalNanos;
+        } finally {
+            lock.unlock();
+        }
+
+        if (due) {
+            commit();
+        }
+    }
+
+    /**
+     * Commits the current watermark, if it changed since the last commit.
+     *
+     * @throws IOException if an error occurred committing the watermark.
+     */
+    public void commit() throws IOException {
+        commitLock.lock();
+        try {
+            long toCommit;
+            FileIdentity identity;
+
+            lock.lock();
+            try {
+                if (!changed()) {
+                    return;
+                }
+                toCommit = watermark;
+                identity = watermarkIdentity;
+                acksSinceCommit = 0;
+                lastCommitNanos = System.nanoTime();
+            } finally {
+                lock.unlock();
+            }
+
+            if (identity != null && checkpointStore instanceof IdentityCheckpointStore) {
+                ((IdentityCheckpointStore) checkpointStore).commit(filename, toCommit, identity);
+            } else if (checkpointStore != null) {
+                checkpointStore.commit(filename, toCommit);
+            }
+
+            lock.lock();
+            try {
+                committedWatermark = toCommit;
+                committedIdentity = identity;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * @return the position of the last record such that it and all the records before it have been acknowledged,
+     * -1 if no such record exists.
+     */
+    public long getWatermark() {
+        lock.lock();
+        try {
+            return watermark;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the last watermark committed to the store, -1 if none has been committed yet.
+     */
+    public long getCommittedWatermark() {
+        lock.lock();
+        try {
+            return committedWatermark;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of records waiting for acknowledgement.
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void acknowledge(Entry entry) {
+        boolean commitNeeded = false;
+
+        lock.lock();
+        try {
+            if (entry.acked) {
+                return;
+            }
+            entry.acked = true;
+            acksSinceCommit++;
+
+            /* advances the watermark over the contiguous acknowledged prefix */
+            boolean released = false;
+            while (!inFlight.isEmpty() && inFlight.peekFirst().acked) {
+                Entry first = inFlight.removeFirst();
+                watermark = first.position;
+                watermarkIdentity = first.identity;
+                released = true;
+            }
+
+            if (released) {
+                inFlightReleased.signalAll();
+                commitNeeded = changed() && (acksSinceCommit >= commitEvery
+                        || System.nanoTime() - lastCommitNanos >= commitIntervalNanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (commitNeeded) {
+            try {
+                commit();
+            } catch (IOException e) {
+                LOGGER.error("Could not commit position " + watermark + " of " + filename, e);
+            }
+        }
+    }
+
+    /* true if the watermark or its identity changed since the last commit, called holding the lock */
+    private boolean changed() {
+        return watermark != committedWatermark || watermarkIdentity != committedIdentity;
+    }
+
+    private class Entry implements Acknowledgement {
+        private final long position;
+
+        private final FileIdentity identity;
+
+        /* guarded by lock */
+        private boolean acked = false;
+
+        private Entry(long position, FileIdentity identity) {
+            this.position = position;
+            this.identity = identity;
+        }
+
+        @Override
+        public void ack() {
+            acknowledge(this);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.keedio.tailer.checkpoint;
+
+/**
+ * Completion token handed to a {@link com.keedio.tailer.listener.AcknowledgingListener} together with each record.
+ * The listener calls {@link #ack()}, from any thread, once the record has been durably processed.
+ */
+public interface Acknowledgement {
+
+    /**
+     * Acknowledges the record this token was handed with. Calling this method more than once has no effect.
+     */
+    void ack();
+}
@@ -0,0 +1,28 @@
+package com.keedio.tailer.checkpoint;
+
+import java.io.IOException;
+
+/**
+ * Persists the position up to which a tailed file has been processed, so that tailing can
+ * be resumed from there (see {@link com.keedio.tailer.StartPosition#offset(long)}).
+ */
+public interface CheckpointStore {
+
+    /**
+     * Returns the last committed position of the given file.
+     *
+     * @param filename the name of the tailed file.
+     * @return the last committed position, or -1 if no position has ever been committed.
+     * @throws IOException if an error occurred reading the store.
+     */
+    long load(String filename) throws IOException;
+
+    /**
+     * Commits the position up to which the given file has been processed.
+     *
+     * @param filename the name of the tailed file.
+     * @param position the position in the file of the last processed line.
+     * @throws IOException if an error occurred writing the store.
+     */
+    void commit(String filename, long position) throws IOException;
+}
@@ -0,0 +1,122 @@
+package com.keedio.tailer.checkpoint;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ *     A {@link com.keedio.tailer.checkpoint.CheckpointStore} keeping positions in a properties file,
+ *     one entry per tailed file.
+ * </p>
+ * <p>
+ *     The identity of the generation a position was committed for, if any, follows the position in the entry,
+ *     separated by a space. Stores written without identities are read as such.
+ * </p>
+ * <p>
+ *     Every commit rewrites a temporary file which is then atomically renamed over the store file, so
+ *     a crash never leaves a partially written store behind.
+ * </p>
+ * <p>
+ *     A single store can be shared by several tailers.
+ * </p>
+ */
+public class FileCheckpointStore implements IdentityCheckpointStore {
+    private final static Logger LOGGER = LogManager.getLogger(FileCheckpointStore.class);
+
+    private final File storeFile;
+
+    private final File tmpFile;
+
+    private final Properties positions = new Properties();
+
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Builds a new store, loading the positions previously committed to <code>storeFile</code>, if any.
+     *
+     * @param storeFile the file positions are persisted to.
+     * @throws IOException if an error occurred reading the store file.
+     */
+    public FileCheckpointStore(File storeFile) throws IOException {
+        this.storeFile = storeFile;
+        this.tmpFile = new File(storeFile.getAbsolutePath() + ".tmp");
+
+        if (storeFile.exists()) {
+            try (InputStream in = new FileInputStream(storeFile)) {
+                positions.load(in);
+            }
+            LOGGER.debug("Loaded " + positions.size() + " checkpoints from " + storeFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long load(String filename) {
+        lock.lock();
+        try {
+            String entry = positions.getProperty(filename);
+
+            if (entry == null) {
+                return -1L;
+            }
+
+            int separator = entry.indexOf(' ');
+            return Long.parseLong(separator < 0 ? entry : entry.substring(0, separator));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FileIdentity loadIdentity(String filename) {
+        lock.lock();
+        try {
+            String entry = positions.getProperty(filename);
+            int separator = entry == null ? -1 : entry.indexOf(' ');
+
+            return separator < 0 ? null : FileIdentity.parse(entry.substring(separator + 1));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void commit(String filename, long position) throws IOException {
+        commit(filename, position, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void commit(String filename, long position, FileIdentity identity) throws IOException {
+        lock.lock();
+        try {
+            positions.setProperty(filename, identity == null ? Long.toString(position) : position + " " + identity);
+
+            try (OutputStream out = new FileOutputStream(tmpFile)) {
+                positions.store(out, null);
+            }
+
+            Files.move(tmpFile.toPath(), storeFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.keedio.tailer.checkpoint;
+
+import com.keedio.tailer.io.FileSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+
+/**
+ * <p>
+ *     Identifies a generation of a tailed file by its file key and by a hash of its first bytes, so that a committed
+ *     position is not applied to another file.
+ * </p>
+ * <p>
+ *     File keys (inodes) alone are not enough: on a busy file system, the inode of a rotated and removed file is
+ *     quickly reused by a new file, which would then be resumed at the position of the old one, skipping its
+ *     beginning. Two files sharing a key and their first bytes are taken to be the same file.
+ * </p>
+ * <p>
+ *     The hash covers the first {@link #HEAD_SIZE} bytes of the file, or all of them while the file is shorter: the
+ *     tailer computes the identity of a generation once when opening it, and extends it while the generation grows
+ *     up to {@link #HEAD_SIZE} bytes. A file matches an identity if it has the same key and if its first
+ *     {@link #getHeadLength()} bytes have the same hash.
+ * </p>
+ * <p>
+ *     Identities are immutable. They are persisted as text by {@link #toString()} and {@link #parse(String)}.
+ * </p>
+ */
+public final class FileIdentity {
+
+    /**
+     * The number of bytes from the beginning of a file covered by the hash.
+     */
+    public static final int HEAD_SIZE = 1024;
+
+    /* FNV-1a 64 bit parameters */
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /* the file key as a string, so that it can be persisted, null if the file system does not provide file keys */
+    private final String fileKey;
+
+    private final int headLength;
+
+    private final long headHash;
+
+    private FileIdentity(String fileKey, int headLength, long headHash) {
+        this.fileKey = fileKey;
+        this.headLength = headLength;
+        this.headHash = headHash;
+    }
+
+    /**
+     * @param fileKey the file key of the file, may be null.
+     * @param head the first bytes of the file, at most {@link #HEAD_SIZE} are hashed.
+     * @return the identity of the file.
+     */
+    public static FileIdentity of(Object fileKey, byte[] head) {
+        int length = Math.min(head.length, HEAD_SIZE);
+
+        return new FileIdentity(fileKey == null ? null : fileKey.toString(), length, hash(head, length));
+    }
+
+    /**
+     * @param text an identity formatted by {@link #toString()}.
+     * @return the identity.
+     * @throws IllegalArgumentException if the text is not a formatted identity.
+     */
+    public static FileIdentity parse(String text) {
+        int first = text.indexOf(':');
+        int second = first < 0 ? -1 : text.indexOf(':', first + 1);
+
+        if (second < 0) {
+            throw new IllegalArgumentException("Not a file identity: " + text);
+        }
+
+        try {
+            int headLength = Integer.parseInt(text.substring(0, first));
+            long headHash = Long.parseLong(text.substring(first + 1, second), 16);
+            String fileKey = second + 1 < text.length() ? text.substring(second + 1) : null;
+
+            return new FileIdentity(fileKey, headLength, headHash);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a file identity: " + text, e);
+        }
+    }
+
+    /**
+     * Checks if the given file is the file this identity was computed from. Its first {@link #getHeadLength()}
+     * bytes are read, so this is meant to be called when resuming, not while tailing.
+     *
+     * @param fileSource the file system the file is read from.
+     * @param path the path of the file.
+     * @return true if the file has the same key, when both are known, and starts with the same bytes.
+     * @throws IOException if an error occurred reading the file.
+     */
+    public boolean matches(FileSource fileSource, String path) throws IOException {
+        Object key = fileSource.readAttributes(path).getFileKey();
+
+        return matches(key, readHead(fileSource, path, headLength));
+    }
+
+    /**
+     * @param fileKey the file key of a file, may be null.
+     * @param head the first bytes of the file, at least {@link #getHeadLength()} if it is the same file.
+     * @return true if the file has the same key, when both are known, and starts with the same bytes.
+     */
+    public boolean matches(Object fileKey, byte[] head) {
+        if (this.fileKey != null && fileKey != null && !this.fileKey.equals(fileKey.toString())) {
+            return false;
+        }
+
+        /* files are appended to: the file tailed had at least these bytes */
+        return head.length >= headLength && hash(head, headLength) == headHash;
+    }
+
+    /**
+     * @return the number of bytes covered by the hash.
+     */
+    public int getHeadLength() {
+        return headLength;
+    }
+
+    /**
+     * @return true if the hash covers {@link #HEAD_SIZE} bytes, i.e. it will not be extended anymore.
+     */
+    public boolean isComplete() {
+        return headLength >= HEAD_SIZE;
+    }
+
+    /* FNV-1a: cheap, and spreads the short heads of log files well enough */
+    private static long hash(byte[] bytes, int length) {
+        long hash = FNV_OFFSET_BASIS;
+
+        for (int i = 0; i < length; i++) {
+            hash ^= bytes[i] & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /* reads up to count bytes from the beginning of the file, less if the file is shorter */
+    private static byte[] readHead(FileSource fileSource, String path, int count) throws IOException {
+        try (SeekableByteChannel channel = fileSource.open(path)) {
+            InputStream in = Channels.newInputStream(channel);
+            byte[] bytes = new byte[count];
+            int length = 0;
+
+            while (length < count) {
+                int read = in.read(bytes, length, count - length);
+                if (read < 0) {
+                    break;
+                }
+                length += read;
+            }
+            return length == count ? bytes : Arrays.copyOf(bytes, length);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FileIdentity)) {
+            return false;
+        }
+
+        FileIdentity other = (FileIdentity) o;
+        return headLength == other.headLength && headHash == other.headHash
+                && (fileKey == null ? other.fileKey == null : fileKey.equals(other.fileKey));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 31 * headLength + (int) (headHash ^ (headHash >>> 32));
+        return 31 * result + (fileKey == null ? 0 : fileKey.hashCode());
+    }
+
+    /**
+     * @return <code>headLength:headHash:fileKey</code>, the file key being empty if unknown.
+     */
+    @Override
+    public String toString() {
+        return headLength + ":" + Long.toString(headHash, 16) + ":" + (fileKey == null ? "" : fileKey);
+    }
+}
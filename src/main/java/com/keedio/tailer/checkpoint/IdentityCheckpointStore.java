@@ -0,0 +1,30 @@
+package com.keedio.tailer.checkpoint;
+
+import java.io.IOException;
+
+/**
+ * A {@link com.keedio.tailer.checkpoint.CheckpointStore} which also persists the identity of the generation each
+ * position was committed for, so that a position is only resumed in the file it refers to (see
+ * {@link com.keedio.tailer.checkpoint.FileIdentity}).
+ */
+public interface IdentityCheckpointStore extends CheckpointStore {
+
+    /**
+     * Returns the identity of the generation the last position of the given file was committed for.
+     *
+     * @param filename the name of the tailed file.
+     * @return the identity of the generation, or null if the last position was committed without identity.
+     * @throws IOException if an error occurred reading the store.
+     */
+    FileIdentity loadIdentity(String filename) throws IOException;
+
+    /**
+     * Commits the position up to which the given generation of the file has been processed.
+     *
+     * @param filename the name of the tailed file.
+     * @param position the position in the file of the last processed line.
+     * @param identity the identity of the generation the position refers to.
+     * @throws IOException if an error occurred writing the store.
+     */
+    void commit(String filename, long position, FileIdentity identity) throws IOException;
+}
@@ -0,0 +1,27 @@
+package com.keedio.tailer.clock;
+
+/**
+ * <p>
+ *     The source of time of a {@link com.keedio.tailer.LRTailer}: the tailer reads the time and waits between polls
+ *     through this interface.
+ * </p>
+ * <p>
+ *     {@link com.keedio.tailer.clock.SystemClock} uses the system time. A virtual clock can run scripted events
+ *     while the tailer sleeps, i.e. to simulate rotations deterministically in tests.
+ * </p>
+ */
+public interface Clock {
+
+    /**
+     * @return the current time in milliseconds.
+     */
+    long currentTimeMillis();
+
+    /**
+     * Waits for the given amount of time.
+     *
+     * @param millis the time to wait, in milliseconds.
+     * @throws InterruptedException if the thread was interrupted while waiting.
+     */
+    void sleep(long millis) throws InterruptedException;
+}
@@ -0,0 +1,29 @@
+package com.keedio.tailer.clock;
+
+/**
+ * Uses {@link System#currentTimeMillis()} and {@link Thread#sleep(long)}.
+ */
+public final class SystemClock implements Clock {
+
+    private static final SystemClock INSTANCE = new SystemClock();
+
+    private SystemClock() {
+    }
+
+    /**
+     * @return the system clock.
+     */
+    public static SystemClock getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+}
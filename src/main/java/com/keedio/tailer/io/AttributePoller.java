@@ -0,0 +1,257 @@
+package com.keedio.tailer.io;
+
+import com.keedio.tailer.clock.Clock;
+import com.keedio.tailer.clock.SystemClock;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ *     Stats the files of many tailers from a single thread, at most once per interval each, and publishes the
+ *     attributes read as snapshots the tailers check instead of stating their file at every poll.
+ * </p>
+ * <p>
+ *     A file with activity during the last interval (reported by {@link #activity(String)}, i.e. by its tailer
+ *     reading new data or by a watch service noticing a modification) is not stated: while data keeps coming, the
+ *     tailer has no use for the attributes. It is stated anyway once per active interval, 4 intervals by default:
+ *     a file keeps growing from the point of view of its tailer after it has been rotated, as long as the writer
+ *     appends to the renamed file, and the tailer takes the modification time of its generation, and the lag, from
+ *     the snapshots.
+ * </p>
+ * <p>
+ *     Activity discards the snapshot of the file: a snapshot, when present, was read after the last
+ *     activity, so it is never older than the last read of the tailer. When no snapshot is present
+ *     {@link #getAttributes(String)} returns null and the tailer just reads. The tailer checks the snapshot before
+ *     reading, so it sees every snapshot of a file written continuously.
+ * </p>
+ * <p>
+ *     Set to a {@link com.keedio.tailer.LRTailer} with
+ *     {@link com.keedio.tailer.LRTailer#setAttributePoller(AttributePoller)}, which registers the tailed file when
+ *     the tailer is opened. The poller must read the same {@link com.keedio.tailer.io.FileSource} as its tailers.
+ * </p>
+ * <p>
+ *     Each file has its own lock, never held while stating: a slow stat only delays the round, not the activity or
+ *     the snapshot checks of the tailers.
+ * </p>
+ */
+public class AttributePoller implements Runnable {
+    private final static Logger LOGGER = LogManager.getLogger(AttributePoller.class);
+
+    private final FileSource fileSource;
+
+    /* number of intervals between two stats of an active file, by default */
+    private static final int ACTIVE_INTERVALS = 4;
+
+    /* time, in milliseconds, between two stats of a file */
+    private final long interval;
+
+    /* time, in milliseconds, between two stats of a file with activity */
+    private long activeInterval;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong statCount = new AtomicLong();
+
+    private Clock clock = SystemClock.getInstance();
+
+    private volatile boolean run = true;
+
+    /**
+     * @param fileSource the file system the files are stated through.
+     * @param interval the time, in milliseconds, between two stats of a file.
+     */
+    public AttributePoller(FileSource fileSource, long interval) {
+        this.fileSource = fileSource;
+        this.interval = interval;
+        this.activeInterval = ACTIVE_INTERVALS * interval;
+    }
+
+    /**
+     * Sets the time between two stats of a file with activity during each interval, 4 intervals by default.
+     * Set it to the interval for the lag of an active file to be sampled at every interval.
+     *
+     * @param activeInterval the time, in milliseconds, between two stats of an active file.
+     */
+    public void setActiveInterval(long activeInterval) {
+        this.activeInterval = activeInterval;
+    }
+
+    /**
+     * Sets the source of time, also used to wait between rounds. The system clock is used by default.
+     *
+     * @param clock the source of time.
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Starts polling the attributes of a file. The file is stated at the next round.
+     *
+     * @param path the path of the file.
+     */
+    public void register(String path) {
+        entries.putIfAbsent(path, new Entry());
+    }
+
+    /**
+     * Stops polling the attributes of a file.
+     *
+     * @param path the path of the file.
+     */
+    public void unregister(String path) {
+        entries.remove(path);
+    }
+
+    /**
+     * Notes activity on a file: its snapshot is discarded until the next stat, and it is not stated for an interval
+     * unless it has not been for an active interval.
+     *
+     * @param path the path of the file.
+     */
+    public void activity(String path) {
+        Entry entry = entries.get(path);
+
+        if (entry == null) {
+            return;
+        }
+
+        entry.lastActivity = clock.currentTimeMillis();
+
+        entry.lock.lock();
+        try {
+            entry.version++;
+            entry.snapshot = null;
+            entry.missing = false;
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    /**
+     * @param path the path of a registered file.
+     * @return the attributes of the file stated after its last activity, or null if it has not been stated since.
+     * @throws NoSuchFileException if the file did not exist when last stated.
+     */
+    public FileAttributes getAttributes(String path) throws NoSuchFileException {
+        Entry entry = entries.get(path);
+
+        if (entry == null) {
+            return null;
+        }
+
+        entry.lock.lock();
+        try {
+            if (entry.missing) {
+                throw new NoSuchFileException(path);
+            }
+            return entry.snapshot;
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of stats since this poller was built.
+     */
+    public long getStatCount() {
+        return statCount.get();
+    }
+
+    /**
+     * Stops polling.
+     */
+    public void stop() {
+        run = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        while (run) {
+            poll();
+
+            try {
+                clock.sleep(interval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stats the registered files not stated for an interval, and without activity during the last interval
+     * unless not stated for an active interval.
+     *
+     * {@link #run()} calls this method once per interval, it is only needed when rounds are driven by the caller.
+     */
+    public void poll() {
+        long now = clock.currentTimeMillis();
+
+        for (Map.Entry<String, Entry> mapEntry : new ArrayList<>(entries.entrySet())) {
+            String path = mapEntry.getKey();
+            Entry entry = mapEntry.getValue();
+            long version;
+
+            entry.lock.lock();
+            try {
+                long sinceStat = now - entry.lastStat;
+
+                if (sinceStat < interval || now - entry.lastActivity < interval && sinceStat < activeInterval) {
+                    continue;
+                }
+                version = entry.version;
+            } finally {
+                entry.lock.unlock();
+            }
+
+            FileAttributes attributes = null;
+            boolean missing = false;
+
+            try {
+                attributes = fileSource.readAttributes(path);
+            } catch (NoSuchFileException e) {
+                missing = true;
+            } catch (IOException e) {
+                LOGGER.warn("Could not read the attributes of " + path, e);
+            }
+            statCount.incrementAndGet();
+
+            entry.lock.lock();
+            try {
+                entry.lastStat = now;
+
+                /* activity while stating: the attributes may be older than the last read */
+                if (entry.version == version) {
+                    entry.snapshot = attributes;
+                    entry.missing = missing;
+                }
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+    }
+
+    /* the polling state of a file, guarded by its lock but for the time of the last activity */
+    private static class Entry {
+        private final Lock lock = new ReentrantLock();
+        private volatile long lastActivity = Long.MIN_VALUE / 2;
+        private FileAttributes snapshot;
+        private boolean missing = false;
+        private long version = 0;
+        private long lastStat = Long.MIN_VALUE / 2;
+    }
+}
@@ -0,0 +1,223 @@
+package com.keedio.tailer.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**
+ * <p>
+ *     Finds record delimiters in bytes read from a tailed file: line terminators, or a custom single or multi-byte
+ *     delimiter. Lines end, as with {@link java.io.BufferedReader#readLine()}, with <code>\n</code>, <code>\r</code>
+ *     or <code>\r\n</code>: the scanner finds the first <code>\n</code> or <code>\r</code>, and the
+ *     {@link com.keedio.tailer.io.LineReader} skips the <code>\n</code> following a <code>\r</code>.
+ * </p>
+ * <p>
+ *     In {@link Mode#SWAR} mode (SIMD within a register) the bytes are compared 8 at a time, loaded as longs:
+ *     a byte equal to the first byte of the delimiter (or to a line terminator) is found with a few arithmetic operations per 8 bytes,
+ *     without a branch per byte. {@link Mode#SCALAR} compares one byte at a time.
+ * </p>
+ * <p>
+ *     Instances are immutable and thread safe.
+ * </p>
+ */
+public final class DelimiterScanner {
+
+    /**
+     * Search strategies.
+     */
+    public enum Mode {
+        /* one byte at a time */
+        SCALAR,
+        /* 8 bytes at a time */
+        SWAR
+    }
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private static final byte[] NEWLINE = {'\n'};
+
+    private static final long CARRIAGE_RETURN_PATTERN = ONES * '\r';
+
+    private final byte[] delimiter;
+
+    /* the first byte of the delimiter repeated in the 8 bytes of a long */
+    private final long pattern;
+
+    private final boolean newline;
+
+    private final Mode mode;
+
+    private DelimiterScanner(byte[] delimiter, boolean newline, Mode mode) {
+        if (delimiter.length == 0) {
+            throw new IllegalArgumentException("delimiter must not be empty");
+        }
+        this.delimiter = delimiter.clone();
+        this.pattern = ONES * (delimiter[0] & 0xFF);
+        this.newline = newline;
+        this.mode = mode;
+    }
+
+    /**
+     * @return a scanner of lines ended by <code>\n</code>, <code>\r</code> or <code>\r\n</code>.
+     */
+    public static DelimiterScanner newline() {
+        return newline(Mode.SWAR);
+    }
+
+    /**
+     * @param mode the search strategy.
+     * @return a scanner of lines ended by <code>\n</code>, <code>\r</code> or <code>\r\n</code>.
+     */
+    public static DelimiterScanner newline(Mode mode) {
+        return new DelimiterScanner(NEWLINE, true, mode);
+    }
+
+    /**
+     * @param delimiter the bytes ending each record.
+     * @return a scanner of records ended by the given delimiter.
+     */
+    public static DelimiterScanner of(byte[] delimiter) {
+        return of(delimiter, Mode.SWAR);
+    }
+
+    /**
+     * @param delimiter the bytes ending each record.
+     * @param mode the search strategy.
+     * @return a scanner of records ended by the given delimiter.
+     */
+    public static DelimiterScanner of(byte[] delimiter, Mode mode) {
+        return new DelimiterScanner(delimiter, false, mode);
+    }
+
+    /**
+     * @param delimiter the string ending each record.
+     * @param charset the charset of the tailed file.
+     * @return a scanner of records ended by the given delimiter.
+     */
+    public static DelimiterScanner of(String delimiter, Charset charset) {
+        return of(delimiter.getBytes(charset));
+    }
+
+    /**
+     * @return the length of the delimiter, in bytes.
+     */
+    public int getDelimiterLength() {
+        return delimiter.length;
+    }
+
+    /**
+     * @return true if this scanner finds line terminators: <code>\n</code> and <code>\r</code>.
+     */
+    public boolean isNewline() {
+        return newline;
+    }
+
+    /**
+     * Looks for the first delimiter lying entirely between <code>from</code> and <code>to</code>.
+     *
+     * @param buffer the bytes to scan, addressed with absolute indexes.
+     * @param from the index of the first byte to scan.
+     * @param to the index after the last byte to scan.
+     * @return the index of the first byte of the delimiter (<code>\n</code> or <code>\r</code> for lines),
+     *         or -1 if not found.
+     */
+    public int indexOf(ByteBuffer buffer, int from, int to) {
+        int last = to - delimiter.length;
+        int i = from;
+
+        while (i <= last) {
+            int candidate = mode == Mode.SWAR ? swarIndexOf(buffer, i, last + 1) : scalarIndexOf(buffer, i, last + 1);
+
+            if (candidate < 0) {
+                return -1;
+            }
+            if (matchesRest(buffer, candidate)) {
+                return candidate;
+            }
+            i = candidate + 1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the number of bytes at the end of the given range which could be the beginning of a multi-byte delimiter.
+     */
+    public int partialDelimiterLength(ByteBuffer buffer, int from, int to) {
+        for (int length = Math.min(delimiter.length - 1, to - from); length > 0; length--) {
+            boolean matches = true;
+
+            for (int j = 0; j < length && matches; j++) {
+                matches = buffer.get(to - length + j) == delimiter[j];
+            }
+            if (matches) {
+                return length;
+            }
+        }
+
+        return 0;
+    }
+
+    private boolean matchesRest(ByteBuffer buffer, int index) {
+        for (int j = 1; j < delimiter.length; j++) {
+            if (buffer.get(index + j) != delimiter[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int scalarIndexOf(ByteBuffer buffer, int from, int to) {
+        byte first = delimiter[0];
+        byte second = newline ? (byte) '\r' : first;
+
+        if (buffer.hasArray()) {
+            byte[] array = buffer.array();
+            int offset = buffer.arrayOffset();
+
+            for (int i = from; i < to; i++) {
+                byte b = array[offset + i];
+                if (b == first || b == second) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b == first || b == second) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int swarIndexOf(ByteBuffer buffer, int from, int to) {
+        boolean littleEndian = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+        int i = from;
+
+        for (; i + 8 <= to; i += 8) {
+            long word = buffer.getLong(i);
+            long found = zeroBytes(word ^ pattern);
+
+            if (newline) {
+                found |= zeroBytes(word ^ CARRIAGE_RETURN_PATTERN);
+            }
+
+            if (found != 0) {
+                int bits = littleEndian ? Long.numberOfTrailingZeros(found) : Long.numberOfLeadingZeros(found);
+                return i + (bits >>> 3);
+            }
+        }
+
+        return scalarIndexOf(buffer, i, to);
+    }
+
+    /* sets the high bit of each byte which is 0, and only of those: unlike the shorter (x - 0x01..) & ~x & 0x80..,
+     * there is no false positive, whatever the byte order */
+    private static long zeroBytes(long x) {
+        return ~(((x & LOW_SEVEN_BITS) + LOW_SEVEN_BITS) | x | LOW_SEVEN_BITS);
+    }
+}
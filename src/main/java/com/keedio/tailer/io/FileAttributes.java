@@ -0,0 +1,63 @@
+package com.keedio.tailer.io;
+
+/**
+ * A snapshot of the attributes of a file read through a {@link com.keedio.tailer.io.FileSource}.
+ */
+public final class FileAttributes {
+
+    private final long size;
+
+    /* creation time in milliseconds */
+    private final long creationTime;
+
+    /* last modification time in milliseconds */
+    private final long lastModifiedTime;
+
+    /* identifies the file independently of its name (i.e. device and inode), may be null */
+    private final Object fileKey;
+
+    public FileAttributes(long size, long creationTime, long lastModifiedTime, Object fileKey) {
+        this.size = size;
+        this.creationTime = creationTime;
+        this.lastModifiedTime = lastModifiedTime;
+        this.fileKey = fileKey;
+    }
+
+    /**
+     * @return the size of the file in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the creation time of the file, in milliseconds.
+     */
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    /**
+     * @return the last modification time of the file, in milliseconds.
+     */
+    public long getLastModifiedTime() {
+        return lastModifiedTime;
+    }
+
+    /**
+     * @return an object identifying the file independently of its name, or null if not available.
+     */
+    public Object getFileKey() {
+        return fileKey;
+    }
+
+    @Override
+    public String toString() {
+        return "FileAttributes{" +
+                "size=" + size +
+                ", creationTime=" + creationTime +
+                ", lastModifiedTime=" + lastModifiedTime +
+                ", fileKey=" + fileKey +
+                '}';
+    }
+}
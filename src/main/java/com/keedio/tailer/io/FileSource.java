@@ -0,0 +1,50 @@
+package com.keedio.tailer.io;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.List;
+
+/**
+ * <p>
+ *     The file system as seen by a {@link com.keedio.tailer.LRTailer}: the tailer only checks, stats and opens
+ *     files through this interface.
+ * </p>
+ * <p>
+ *     {@link com.keedio.tailer.io.LocalFileSource} reads the local file system. Other implementations can serve
+ *     files from memory, i.e. to simulate appends and rotations deterministically in tests.
+ * </p>
+ * <p>
+ *     Implementations must behave like a POSIX file system: a channel keeps reading the same file after the file
+ *     has been renamed or deleted, and sees the data appended after it was opened.
+ * </p>
+ */
+public interface FileSource {
+
+    /**
+     * @param path the path of the file.
+     * @return true if the file exists.
+     */
+    boolean exists(String path);
+
+    /**
+     * @param path the path of the file.
+     * @return a snapshot of the attributes of the file.
+     * @throws java.nio.file.NoSuchFileException if the file does not exist.
+     * @throws IOException if an error occurred reading the attributes.
+     */
+    FileAttributes readAttributes(String path) throws IOException;
+
+    /**
+     * @param path the path of the file.
+     * @return a channel reading the file from its beginning.
+     * @throws IOException if the file does not exist or an error occurred opening it.
+     */
+    SeekableByteChannel open(String path) throws IOException;
+
+    /**
+     * @param directory the path of a directory.
+     * @return the paths of the files in the directory.
+     * @throws IOException if an error occurred listing the directory.
+     */
+    List<String> list(String directory) throws IOException;
+}
@@ -0,0 +1,217 @@
+package com.keedio.tailer.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * <p>
+ *     Reads records from a growing file, splitting the bytes read on the delimiter found by a
+ *     {@link com.keedio.tailer.io.DelimiterScanner}, and keeps track of the exact number of bytes of each record.
+ * </p>
+ * <p>
+ *     Like {@link java.io.BufferedReader#readLine()}, when the end of the file is reached in the middle of a record
+ *     the bytes read so far are returned, and the rest of the record is returned by a later call once it has been
+ *     appended. The bytes which could be the beginning of a multi-byte delimiter, or which are the beginning of a
+ *     multi-byte character, are kept until the next call.
+ *     A <code>\r</code> ends a line, and a <code>\n</code> following it is skipped, even if read by a later call.
+ * </p>
+ * <p>
+ *     Bytes are read into a direct buffer, which grows to hold records longer than the buffer. Records are decoded by a
+ *     {@link com.keedio.tailer.io.RecordDecoder}, malformed input being replaced unless set otherwise.
+ * </p>
+ */
+public class LineReader implements Closeable {
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+
+    private final DelimiterScanner scanner;
+
+    private final RecordDecoder decoder;
+
+    /* the bytes read and not returned yet lie between start and end */
+    private ByteBuffer buffer;
+    private int start = 0;
+    private int end = 0;
+
+    /* where to resume scanning, bytes before it do not start a delimiter */
+    private int scanFrom = 0;
+
+    /* the number of bytes of the last record returned, delimiter included */
+    private int lastLength = 0;
+
+    /* true if the last line ended with \r, so that a following \n is part of its terminator */
+    private boolean skipLF = false;
+
+    /* the number of skipped bytes not accounted in a returned record yet */
+    private int skipped = 0;
+
+    /**
+     * @param in the stream to read.
+     * @param scanner finds the delimiters.
+     * @param charset the charset records are decoded with.
+     */
+    public LineReader(InputStream in, DelimiterScanner scanner, Charset charset) {
+        this(Channels.newChannel(in), scanner, charset, MalformedInputMode.REPLACE);
+    }
+
+    /**
+     * @param in the stream to read.
+     * @param scanner finds the delimiters.
+     * @param charset the charset records are decoded with.
+     * @param malformedInputMode what to do with bytes which are not valid in the charset.
+     */
+    public LineReader(InputStream in, DelimiterScanner scanner, Charset charset,
+                      MalformedInputMode malformedInputMode) {
+        this(Channels.newChannel(in), scanner, charset, malformedInputMode);
+    }
+
+    /**
+     * @param channel the channel to read, i.e. a {@link java.nio.channels.FileChannel}.
+     * @param scanner finds the delimiters.
+     * @param charset the charset records are decoded with.
+     */
+    public LineReader(ReadableByteChannel channel, DelimiterScanner scanner, Charset charset) {
+        this(channel, scanner, charset, MalformedInputMode.REPLACE);
+    }
+
+    /**
+     * @param channel the channel to read, i.e. a {@link java.nio.channels.FileChannel}.
+     * @param scanner finds the delimiters.
+     * @param charset the charset records are decoded with.
+     * @param malformedInputMode what to do with bytes which are not valid in the charset.
+     */
+    public LineReader(ReadableByteChannel channel, DelimiterScanner scanner, Charset charset,
+                      MalformedInputMode malformedInputMode) {
+        this(channel, scanner, new RecordDecoder(charset, malformedInputMode), DEFAULT_BUFFER_SIZE);
+    }
+
+    LineReader(ReadableByteChannel channel, DelimiterScanner scanner, Charset charset, int bufferSize) {
+        this(channel, scanner, new RecordDecoder(charset, MalformedInputMode.REPLACE), bufferSize);
+    }
+
+    LineReader(ReadableByteChannel channel, DelimiterScanner scanner, RecordDecoder decoder, int bufferSize) {
+        this.channel = channel;
+        this.scanner = scanner;
+        this.decoder = decoder;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 2 * scanner.getDelimiterLength()))
+                .order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Reads the next record, or the beginning of it if the end of the file is reached.
+     *
+     * @return the record without its delimiter, or null if no byte is available.
+     * @throws IOException if an error occurred reading the file.
+     */
+    public String readLine() throws IOException {
+        while (true) {
+            if (skipLF && start < end) {
+                if (buffer.get(start) == '\n') {
+                    start++;
+                    skipped++;
+                    scanFrom = Math.max(scanFrom, start);
+                }
+                skipLF = false;
+            }
+
+            int index = scanner.indexOf(buffer, scanFrom, end);
+
+            if (index >= 0) {
+                int delimiterLength = scanner.getDelimiterLength();
+
+                if (scanner.isNewline() && buffer.get(index) == '\r') {
+                    if (index + 1 < end) {
+                        delimiterLength = buffer.get(index + 1) == '\n' ? 2 : 1;
+                    } else {
+                        skipLF = true;
+                    }
+                }
+
+                String record = decoder.decode(buffer, start, index);
+
+                lastLength = skipped + index + delimiterLength - start;
+                skipped = 0;
+                start = scanFrom = index + delimiterLength;
+
+                return record;
+            }
+
+            scanFrom = Math.max(start, end - scanner.getDelimiterLength() + 1);
+
+            if (fill() <= 0) {
+                /* end of file, returns the partial record */
+                int partialEnd = end - scanner.partialDelimiterLength(buffer, start, end);
+                partialEnd -= decoder.incompleteLength(buffer, start, partialEnd);
+
+                if (partialEnd == start) {
+                    lastLength = 0;
+                    return null;
+                }
+
+                String record = decoder.decode(buffer, start, partialEnd);
+
+                lastLength = skipped + partialEnd - start;
+                skipped = 0;
+                start = scanFrom = partialEnd;
+
+                return record;
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes of the last record returned by {@link #readLine()}, delimiter included.
+     */
+    public int getLastLength() {
+        return lastLength;
+    }
+
+    /**
+     * @return the number of bytes read after the last record returned, and skipped: the <code>\n</code> ending
+     * a <code>\r\n</code> terminator split across reads.
+     */
+    public int getSkippedLength() {
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /* reads more bytes after end, making room if needed */
+    private int fill() throws IOException {
+        if (start == end) {
+            start = end = scanFrom = 0;
+        } else if (end == buffer.capacity()) {
+            if (start > 0) {
+                buffer.limit(end).position(start);
+                buffer.compact();
+            } else {
+                ByteBuffer larger = ByteBuffer.allocateDirect(2 * buffer.capacity()).order(buffer.order());
+                buffer.limit(end).position(start);
+                larger.put(buffer);
+                buffer = larger;
+            }
+
+            end -= start;
+            scanFrom -= start;
+            start = 0;
+        }
+
+        buffer.limit(buffer.capacity()).position(end);
+        int read = channel.read(buffer);
+
+        if (read > 0) {
+            end += read;
+        }
+        return read;
+    }
+}
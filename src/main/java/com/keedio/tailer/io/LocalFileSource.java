@@ -0,0 +1,53 @@
+package com.keedio.tailer.io;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the local file system: attributes with {@link java.nio.file.Files}, content with file channels.
+ */
+public class LocalFileSource implements FileSource {
+
+    @Override
+    public boolean exists(String path) {
+        return Files.exists(Paths.get(path));
+    }
+
+    @Override
+    public FileAttributes readAttributes(String path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(Paths.get(path), BasicFileAttributes.class);
+
+        return new FileAttributes(attributes.size(), attributes.creationTime().toMillis(),
+                attributes.lastModifiedTime().toMillis(), attributes.fileKey());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws java.io.FileNotFoundException if the file does not exist or is a directory.
+     */
+    @Override
+    public SeekableByteChannel open(String path) throws IOException {
+        return new FileInputStream(path).getChannel();
+    }
+
+    @Override
+    public List<String> list(String directory) throws IOException {
+        List<String> paths = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(directory))) {
+            for (Path child : stream) {
+                paths.add(child.toString());
+            }
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,11 @@
+package com.keedio.tailer.io;
+
+/**
+ * What a {@link com.keedio.tailer.io.RecordDecoder} does with the bytes which are not valid in its charset.
+ */
+public enum MalformedInputMode {
+    /* replaces each malformed sequence with the replacement of the charset, U+FFFD for UTF-8 */
+    REPLACE,
+    /* passes each malformed byte as the char of the same value, i.e. recovered by encoding the char in ISO-8859-1 */
+    RAW
+}
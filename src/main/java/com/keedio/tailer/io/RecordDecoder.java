@@ -0,0 +1,170 @@
+package com.keedio.tailer.io;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * <p>
+ *     Decodes the bytes of records into strings, in a given charset, handling malformed input as set by a
+ *     {@link com.keedio.tailer.io.MalformedInputMode} without ever raising an exception.
+ * </p>
+ * <p>
+ *     Records are first decoded by the <code>String</code> constructor: since Java 9, it checks the bytes for
+ *     non-ASCII ones with an intrinsic and copies ASCII records into compact Latin-1 strings, for UTF-8 and for the
+ *     single-byte charsets supersets of ASCII, without going through a {@link java.nio.charset.CharsetDecoder}.
+ *     Checking the bytes beforehand in Java code, even 8 at a time, only adds a second pass. Malformed input is
+ *     replaced by the constructor.
+ * </p>
+ * <p>
+ *     In {@link com.keedio.tailer.io.MalformedInputMode#RAW} mode, a record whose decoded string holds the
+ *     replacement of the charset is decoded again by a {@link java.nio.charset.CharsetDecoder} and a char buffer
+ *     reused from record to record, passing the malformed bytes through. Valid records, and ASCII ones first, are
+ *     only checked for the replacement, which is immediate for compact strings.
+ * </p>
+ * <p>
+ *     Not thread safe: each {@link com.keedio.tailer.io.LineReader} has its own decoder.
+ * </p>
+ */
+public class RecordDecoder {
+
+    private final Charset charset;
+
+    private final MalformedInputMode malformedInputMode;
+
+    private final CharsetDecoder decoder;
+
+    /* what malformed input is replaced with by the String constructor */
+    private final String replacement;
+
+    /* copy of the bytes of the record being decoded */
+    private byte[] bytes = new byte[256];
+
+    private CharBuffer chars = CharBuffer.allocate(256);
+
+    /**
+     * @param charset the charset records are encoded with.
+     * @param malformedInputMode what to do with bytes which are not valid in the charset.
+     */
+    public RecordDecoder(Charset charset, MalformedInputMode malformedInputMode) {
+        this.charset = charset;
+        this.malformedInputMode = malformedInputMode;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        this.replacement = decoder.replacement();
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public MalformedInputMode getMalformedInputMode() {
+        return malformedInputMode;
+    }
+
+    /**
+     * Decodes the bytes between two indexes of a buffer. The position and the limit of the buffer are left unchanged.
+     *
+     * @param buffer the buffer holding the record.
+     * @param from the index of the first byte of the record.
+     * @param to the index following the last byte of the record.
+     * @return the decoded record.
+     */
+    public String decode(ByteBuffer buffer, int from, int to) {
+        int length = to - from;
+
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, 2 * bytes.length)];
+        }
+
+        int position = buffer.position();
+        int limit = buffer.limit();
+
+        buffer.limit(to).position(from);
+        buffer.get(bytes, 0, length);
+        buffer.limit(limit).position(position);
+
+        String record = new String(bytes, 0, length, charset);
+
+        if (malformedInputMode == MalformedInputMode.RAW && record.contains(replacement)) {
+            /* malformed input, or a valid encoding of the replacement itself */
+            return decodeRaw(length);
+        }
+        return record;
+    }
+
+    /**
+     * Counts the bytes ending the given range which are the beginning of a character, i.e. of a multi-byte
+     * character split across two writes, so that they are decoded along with the rest of the character once it is
+     * appended. The position and the limit of the buffer are left unchanged.
+     *
+     * @param buffer the buffer holding the beginning of a record.
+     * @param from the index of the first byte of the record.
+     * @param to the index following the last byte read.
+     * @return the number of bytes at the end of the range starting an incomplete character.
+     */
+    public int incompleteLength(ByteBuffer buffer, int from, int to) {
+        ByteBuffer in = buffer.duplicate();
+        in.limit(to).position(from);
+        decoder.reset();
+
+        CoderResult result;
+        do {
+            chars.clear();
+            result = decoder.decode(in, chars, false);
+
+            if (result.isError()) {
+                /* not an incomplete character, decoded as malformed input */
+                in.position(in.position() + result.length());
+            }
+        } while (!result.isUnderflow());
+
+        return in.remaining();
+    }
+
+    /* decodes the first length bytes through the charset decoder, passing malformed bytes through */
+    private String decodeRaw(int length) {
+        ByteBuffer in = ByteBuffer.wrap(bytes, 0, length);
+        int capacity = (int) Math.ceil(length * (double) decoder.maxCharsPerByte());
+
+        if (chars.capacity() < capacity) {
+            chars = CharBuffer.allocate(capacity);
+        }
+        chars.clear();
+        decoder.reset();
+
+        CoderResult result;
+        do {
+            result = decoder.decode(in, chars, true);
+
+            if (result.isError()) {
+                while (chars.remaining() < result.length()) {
+                    grow();
+                }
+                for (int i = 0; i < result.length(); i++) {
+                    chars.put((char) (in.get() & 0xFF));
+                }
+            } else if (result.isOverflow()) {
+                grow();
+            }
+        } while (!result.isUnderflow());
+
+        while (decoder.flush(chars).isOverflow()) {
+            grow();
+        }
+
+        chars.flip();
+        return chars.toString();
+    }
+
+    private void grow() {
+        CharBuffer larger = CharBuffer.allocate(2 * chars.capacity() + 16);
+        chars.flip();
+        larger.put(chars);
+        chars = larger;
+    }
+}
@@ -0,0 +1,123 @@
+package com.keedio.tailer.latency;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ *     A histogram of latencies in milliseconds, with buckets growing exponentially: each power of two is split in
+ *     16 buckets, so percentiles are reported with less than 7% error, from 1 millisecond to years.
+ * </p>
+ * <p>
+ *     Values can be recorded and read concurrently.
+ * </p>
+ */
+public class LatencyHistogram {
+    /* 2^SUB_BUCKET_BITS buckets per power of two */
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong sum = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param latency the latency, in milliseconds. Negative values are recorded as 0.
+     */
+    public void record(long latency) {
+        long value = Math.max(0, latency);
+
+        counts.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long currentMax;
+        while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+            // retries
+        }
+    }
+
+    /**
+     * @return the number of recorded latencies.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return the highest recorded latency, in milliseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the mean of the recorded latencies, in milliseconds, or 0 if none was recorded.
+     */
+    public double getMean() {
+        long n = count.get();
+
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100, i.e. 99 for the p99.
+     * @return the latency, in milliseconds, under which <code>percentile</code>% of the recorded latencies are,
+     *         or 0 if none was recorded.
+     */
+    public long getPercentile(double percentile) {
+        long n = count.get();
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+
+            if (seen >= rank) {
+                return Math.min(highestValue(i), max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{" +
+                "count=" + getCount() +
+                ", mean=" + getMean() +
+                ", p50=" + getPercentile(50) +
+                ", p99=" + getPercentile(99) +
+                ", max=" + getMax() +
+                '}';
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /* the highest value falling in the given bucket */
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,128 @@
+package com.keedio.tailer.latency;
+
+import com.keedio.tailer.Record;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * <p>
+ *     Measures, for a tailed file, the delay between the time lines are appended to the file and the time they are
+ *     delivered to the listener, into a {@link com.keedio.tailer.latency.LatencyHistogram}.
+ * </p>
+ * <p>
+ *     At each poll, the tailer samples the size and the last modified time of the file. A delivered line is attributed
+ *     to the first sample whose size covers the line: the line was appended at the latest at that last modified time.
+ *     The latency measured this way is a lower bound, as precise as the polling is frequent.
+ * </p>
+ * <p>
+ *     When a {@link com.keedio.tailer.latency.TimestampExtractor} is provided and finds a timestamp in the line, the
+ *     timestamp is used instead.
+ * </p>
+ * <p>
+ *     Set to a {@link com.keedio.tailer.LRTailer} with {@link com.keedio.tailer.LRTailer#setLatencyTracker(LatencyTracker)}.
+ *     Samples and deliveries are only reported by the tailer thread, while the histogram can be read from any thread.
+ * </p>
+ */
+public class LatencyTracker {
+    private final TimestampExtractor timestampExtractor;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    /* samples of growing sizes, the oldest first */
+    private final Deque<Sample> samples = new ArrayDeque<>();
+
+    private volatile long unattributed = 0;
+
+    /**
+     * Builds a tracker relying on the file samples only.
+     */
+    public LatencyTracker() {
+        this(null);
+    }
+
+    /**
+     * @param timestampExtractor parses the timestamps of the lines, may be null.
+     */
+    public LatencyTracker(TimestampExtractor timestampExtractor) {
+        this.timestampExtractor = timestampExtractor;
+    }
+
+    /**
+     * Records a sample of the tailed file.
+     *
+     * @param size the size of the file.
+     * @param lastModified the last modified time of the file, in milliseconds since the epoch.
+     */
+    public void sample(long size, long lastModified) {
+        Sample last = samples.peekLast();
+
+        if (last != null && size < last.size) {
+            /* truncated */
+            samples.clear();
+        } else if (last != null && size == last.size) {
+            return;
+        }
+
+        samples.addLast(new Sample(size, lastModified));
+    }
+
+    /**
+     * Records the latency of a line delivered to the listener.
+     *
+     * @param record the delivered line, with the position right after it.
+     * @param now the time the line was delivered at, in milliseconds since the epoch.
+     */
+    public void delivered(Record record, long now) {
+        long appended = timestampExtractor != null ? timestampExtractor.extract(record) : -1;
+
+        /* the line was complete, terminator included, once the file reached its position */
+        while (!samples.isEmpty() && samples.peekFirst().size < record.getPosition()) {
+            samples.removeFirst();
+        }
+
+        if (appended < 0) {
+            Sample sample = samples.peekFirst();
+
+            if (sample == null) {
+                /* appended after the last sample */
+                unattributed++;
+                return;
+            }
+            appended = sample.lastModified;
+        }
+
+        histogram.record(now - appended);
+    }
+
+    /**
+     * Forgets the samples of the file, i.e. when it rotates.
+     */
+    public void reset() {
+        samples.clear();
+    }
+
+    /**
+     * @return the histogram of the latencies, in milliseconds.
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * @return the number of delivered lines whose append time could not be estimated.
+     */
+    public long getUnattributed() {
+        return unattributed;
+    }
+
+    private static class Sample {
+        private final long size;
+        private final long lastModified;
+
+        Sample(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.keedio.tailer.latency;
+
+import com.keedio.tailer.Record;
+
+/**
+ * Parses the time a record was written at from the record itself, i.e. from the timestamp of a log line.
+ */
+public interface TimestampExtractor {
+
+    /**
+     * @param record the record read by the tailer.
+     * @return the time the record was written at, in milliseconds since the epoch, or -1 if unknown.
+     */
+    long extract(Record record);
+}
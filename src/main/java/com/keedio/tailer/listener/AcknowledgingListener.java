@@ -0,0 +1,28 @@
+package com.keedio.tailer.listener;
+
+import com.keedio.tailer.Record;
+import com.keedio.tailer.checkpoint.Acknowledgement;
+
+/**
+ * A {@link com.keedio.tailer.listener.FileEventListener} processing lines asynchronously, i.e. by handing them
+ * to an asynchronous producer.
+ *
+ * {@link com.keedio.tailer.LRTailer} calls {@link #handle(com.keedio.tailer.Record, com.keedio.tailer.checkpoint.Acknowledgement)}
+ * instead of {@link com.keedio.tailer.listener.FileEventListener#handle(String, String)} on listeners implementing this
+ * interface, and only commits the position of a line once it, and all the lines before it, have been acknowledged
+ * (see {@link com.keedio.tailer.checkpoint.AckTracker}).
+ */
+public interface AcknowledgingListener extends FileEventListener {
+
+    /**
+     * Called by the tailer when a full valid line is detected. The method may return before the line has been
+     * processed: <code>ack</code> must be acknowledged once it has.
+     *
+     * If interrupted while waiting to take the line, the listener restores the interrupt status of the thread and
+     * returns without acknowledging it: the tailer stops, and reads the line again if it is run again.
+     *
+     * @param record the valid line, with the file it was read from and its position.
+     * @param ack the token to acknowledge once the line has been processed.
+     */
+    void handle(Record record, Acknowledgement ack);
+}
@@ -46,7 +46,7 @@ public interface FileEventListener {
 
     /**
      * <p>
-     * {@link com.keedio.tailer.LRTailer} maintains a buffer where the returning values of successive calls to {@link java.io.BufferedReader#readLine()}
+     * {@link com.keedio.tailer.LRTailer} maintains a buffer where the returning values of successive calls to {@link com.keedio.tailer.io.LineReader#readLine()}
      * are accumulated. At each iteration {@link com.keedio.tailer.LRTailer} call this method to check if the buffer contains a valid line.
      * </p>
      *
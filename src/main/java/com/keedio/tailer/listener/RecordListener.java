@@ -0,0 +1,20 @@
+package com.keedio.tailer.listener;
+
+import com.keedio.tailer.Record;
+
+/**
+ * A {@link com.keedio.tailer.listener.FileEventListener} that needs the position of each line in the tailed file,
+ * i.e. in order to commit it once the line has been processed.
+ *
+ * {@link com.keedio.tailer.LRTailer} calls {@link #handle(com.keedio.tailer.Record)} instead of
+ * {@link com.keedio.tailer.listener.FileEventListener#handle(String, String)} on listeners implementing this interface.
+ */
+public interface RecordListener extends FileEventListener {
+
+    /**
+     * Called by the tailer when a full valid line is detected.
+     *
+     * @param record the valid line, with the file it was read from and its position.
+     */
+    void handle(Record record);
+}
@@ -0,0 +1,407 @@
+package com.keedio.tailer.listener.impl;
+
+import com.keedio.tailer.LRTailer;
+import com.keedio.tailer.Record;
+import com.keedio.tailer.checkpoint.Acknowledgement;
+import com.keedio.tailer.listener.AcknowledgingListener;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ *     Forwards lines to a local collector agent through a TCP or Unix domain socket.
+ * </p>
+ * <p>
+ *     Each line is framed as a 4 bytes big-endian length followed by its UTF-8 bytes. Frames are batched in large
+ *     direct buffers, which are sent with a single gathering write when the batch is full or when
+ *     <code>lingerMillis</code> have elapsed since the first line of the batch was handled.
+ * </p>
+ * <p>
+ *     Lines are acknowledged to the tailer once their batch has been written, so the tailer checkpoint (see
+ *     {@link com.keedio.tailer.checkpoint.AckTracker}) only covers forwarded lines.
+ * </p>
+ * <p>
+ *     When the connection fails, the listener reconnects with an exponential backoff and sends the whole batch
+ *     again: lines are delivered at least once. Meanwhile, {@link #handle(com.keedio.tailer.Record, com.keedio.tailer.checkpoint.Acknowledgement)}
+ *     blocks the tailer as soon as the batch is full. Waiting for the connection ends when the listener is closed,
+ *     and when the waiting thread is interrupted: the tailer then stops without the line being taken.
+ * </p>
+ * <p>
+ *     Like {@link com.keedio.tailer.listener.impl.LogFileEventListener}, this class accepts every line and does not
+ *     provide the name of rotated files: subclasses can override {@link #isValid(String)} and {@link #rotated(long, long)}.
+ * </p>
+ */
+public class ForwardingFileEventListener implements AcknowledgingListener, Closeable {
+    private final static Logger LOGGER = LogManager.getLogger(ForwardingFileEventListener.class);
+
+    private static final int MAX_CHUNK_SIZE = 64 * 1024;
+
+    private static final long INITIAL_BACKOFF = 100;
+    private static final long MAX_BACKOFF = 30000;
+
+    private static final int LENGTH_SIZE = 4;
+
+    private final SocketAddress address;
+
+    private final long lingerNanos;
+
+    /* the batch, direct buffers filled in order */
+    private final ByteBuffer[] chunks;
+
+    private final long capacity;
+
+    /* index of the chunk being filled */
+    private int currentChunk = 0;
+
+    /* acknowledgements of the lines in the batch */
+    private final List<Acknowledgement> pendingAcks = new ArrayList<>();
+
+    private long pendingBytes = 0;
+
+    private long firstPendingNanos;
+
+    /* position of the last forwarded line */
+    private volatile long flushedPosition = -1;
+
+    /* position of the last line of the batch, -1 if unknown: positions go down when the file rotates */
+    private long pendingPosition = -1;
+
+    private SocketChannel channel;
+
+    private final Lock lock = new ReentrantLock();
+
+    private final ScheduledExecutorService lingerTimer;
+
+    private volatile boolean closed = false;
+
+    /* released when the listener is closed, ending the backoff of a blocked write */
+    private final CountDownLatch closing = new CountDownLatch(1);
+
+    /**
+     * @param address the address of the collector, an {@link java.net.InetSocketAddress} or a Unix domain socket
+     *                address (see {@link #unixSocketAddress(String)}).
+     * @param batchSize the size, in bytes, of a batch. Batches larger than 64KB are rounded up to a multiple of 64KB.
+     * @param lingerMillis the maximum time, in milliseconds, a line waits for its batch to be sent.
+     */
+    public ForwardingFileEventListener(SocketAddress address, int batchSize, long lingerMillis) {
+        if (batchSize <= 0 || lingerMillis <= 0) {
+            throw new IllegalArgumentException("batchSize and lingerMillis must be positive");
+        }
+
+        this.address = address;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        int chunkSize = Math.min(batchSize, MAX_CHUNK_SIZE);
+        this.chunks = new ByteBuffer[(batchSize + chunkSize - 1) / chunkSize];
+        this.capacity = (long) chunks.length * chunkSize;
+
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = ByteBuffer.allocateDirect(chunkSize);
+        }
+
+        this.lingerTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "forwarding-linger-" + ForwardingFileEventListener.this.address);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        long period = Math.max(1, lingerMillis / 2);
+        lingerTimer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flushIfLingered();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Builds the address of a Unix domain socket. Unix domain socket channels are available since Java 16.
+     *
+     * @param path the path of the socket file.
+     * @return the address of the socket.
+     * @throws UnsupportedOperationException if the running JVM does not support Unix domain sockets.
+     */
+    public static SocketAddress unixSocketAddress(String path) {
+        try {
+            Class<?> addressClass = Class.forName("java.net.UnixDomainSocketAddress");
+            return (SocketAddress) addressClass.getMethod("of", String.class).invoke(null, path);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Unix domain sockets are not supported by this JVM", e);
+        }
+    }
+
+    @Override
+    public void handle(Record record, Acknowledgement ack) {
+        try {
+            append(record.getLine(), record.getPosition(), ack);
+        } catch (InterruptedIOException e) {
+            /* the interrupt status is set: the tailer stops without taking the line */
+            LOGGER.warn("Interrupted while forwarding a line to " + address);
+        }
+    }
+
+    @Override
+    public void handle(String filename, String line) {
+        try {
+            append(line, -1, null);
+        } catch (InterruptedIOException e) {
+            LOGGER.warn("Interrupted while forwarding a line to " + address);
+        }
+    }
+
+    /**
+     * Sends the pending lines, waiting for the connection to be available.
+     *
+     * @throws IllegalStateException if the listener was closed or the thread interrupted, its interrupt status
+     * then being set, before the pending lines could be sent.
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            flushLocked();
+        } catch (InterruptedIOException e) {
+            throw new IllegalStateException("Interrupted with unsent lines", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends the pending lines, without retrying, and closes the connection. A thread waiting for the connection
+     * gives up.
+     *
+     * @throws IllegalStateException if the pending lines could not be sent.
+     */
+    @Override
+    public void close() {
+        lingerTimer.shutdown();
+        closed = true;
+        closing.countDown();
+
+        lock.lock();
+        try {
+            flushLocked();
+        } catch (InterruptedIOException e) {
+            throw new IllegalStateException("Interrupted with unsent lines", e);
+        } finally {
+            closeChannel();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the position of the last line written to the socket.
+     */
+    public long getFlushedPosition() {
+        return flushedPosition;
+    }
+
+    @Override
+    public void init(LRTailer lrTailer) {
+        LOGGER.info("Forwarding " + lrTailer.getTailedFile().getAbsolutePath() + " to " + address);
+    }
+
+    @Override
+    public String rotated(long lastPosition, long currPosition) {
+        return null;
+    }
+
+    @Override
+    public void notExists() {
+        LOGGER.warn("File does not exists");
+    }
+
+    @Override
+    public void handleException(Exception e) {
+        LOGGER.error("Received exception", e);
+    }
+
+    @Override
+    public boolean isValid(String partialLine) {
+        return true;
+    }
+
+    private void append(String line, long position, Acknowledgement ack) throws InterruptedIOException {
+        byte[] data = line.getBytes(StandardCharsets.UTF_8);
+        byte[] length = ByteBuffer.allocate(LENGTH_SIZE).putInt(data.length).array();
+        long frameSize = LENGTH_SIZE + data.length;
+
+        try {
+            lock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to forward a line to " + address);
+        }
+        try {
+            if (pendingBytes + frameSize > capacity) {
+                flushLocked();
+            }
+
+            if (pendingBytes == 0) {
+                firstPendingNanos = System.nanoTime();
+            }
+
+            if (frameSize > capacity) {
+                /* larger than a whole batch, sent on its own */
+                writeFully(new ByteBuffer[]{ByteBuffer.wrap(length), ByteBuffer.wrap(data)}, 2);
+            } else {
+                copy(length);
+                copy(data);
+                pendingBytes += frameSize;
+            }
+
+            if (ack != null) {
+                pendingAcks.add(ack);
+            }
+            if (position >= 0) {
+                pendingPosition = position;
+            }
+
+            if (pendingBytes == capacity || frameSize > capacity) {
+                flushLocked();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* copies bytes at the end of the batch, spanning chunks if needed */
+    private void copy(byte[] data) {
+        int offset = 0;
+
+        while (offset < data.length) {
+            ByteBuffer chunk = chunks[currentChunk];
+
+            if (!chunk.hasRemaining()) {
+                chunk = chunks[++currentChunk];
+            }
+
+            int count = Math.min(chunk.remaining(), data.length - offset);
+            chunk.put(data, offset, count);
+            offset += count;
+        }
+    }
+
+    private void flushIfLingered() {
+        lock.lock();
+        try {
+            if (pendingBytes > 0 && System.nanoTime() - firstPendingNanos >= lingerNanos) {
+                flushLocked();
+            }
+        } catch (InterruptedIOException | RuntimeException e) {
+            LOGGER.error("Could not flush lines to " + address, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLocked() throws InterruptedIOException {
+        if (pendingBytes > 0) {
+            int used = currentChunk + 1;
+
+            for (int i = 0; i < used; i++) {
+                chunks[i].flip();
+            }
+
+            try {
+                writeFully(chunks, used);
+            } catch (InterruptedIOException | RuntimeException e) {
+                /* the batch stays pending, to be sent again */
+                for (int i = 0; i < used; i++) {
+                    chunks[i].position(chunks[i].limit()).limit(chunks[i].capacity());
+                }
+                throw e;
+            }
+
+            for (int i = 0; i < used; i++) {
+                chunks[i].clear();
+            }
+            currentChunk = 0;
+            pendingBytes = 0;
+        }
+
+        for (Acknowledgement ack : pendingAcks) {
+            ack.ack();
+        }
+        pendingAcks.clear();
+
+        if (pendingPosition >= 0) {
+            flushedPosition = pendingPosition;
+            pendingPosition = -1;
+        }
+    }
+
+    /* writes the buffers with gathering writes, reconnecting and writing them again from the start on failure,
+       until closed or interrupted */
+    private void writeFully(ByteBuffer[] buffers, int count) throws InterruptedIOException {
+        long backoff = INITIAL_BACKOFF;
+
+        while (true) {
+            try {
+                if (channel == null) {
+                    channel = SocketChannel.open(address);
+                    LOGGER.info("Connected to " + address);
+                }
+
+                while (buffers[count - 1].hasRemaining()) {
+                    channel.write(buffers, 0, count);
+                }
+                return;
+            } catch (IOException e) {
+                closeChannel();
+
+                for (int i = 0; i < count; i++) {
+                    buffers[i].position(0);
+                }
+
+                if (closed) {
+                    throw new IllegalStateException("Listener closed with unsent lines", e);
+                }
+
+                LOGGER.warn("Could not write to " + address + ", retrying in " + backoff + " ms", e);
+
+                try {
+                    if (closing.await(backoff, TimeUnit.MILLISECONDS)) {
+                        throw new IllegalStateException("Listener closed with unsent lines", e);
+                    }
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted with unsent lines");
+                }
+                backoff = Math.min(MAX_BACKOFF, backoff * 2);
+            }
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.warn("Could not close connection to " + address, e);
+        }
+        channel = null;
+    }
+}
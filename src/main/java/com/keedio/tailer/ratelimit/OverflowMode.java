@@ -0,0 +1,15 @@
+package com.keedio.tailer.ratelimit;
+
+/**
+ * What a {@link com.keedio.tailer.ratelimit.RateLimitingListener} does with the lines exceeding its rate limits.
+ */
+public enum OverflowMode {
+    /* blocks the tailer until the line is within the limits, leaving the excess on disk */
+    DELAY,
+    /* keeps one exceeding line out of N, in order */
+    SAMPLE,
+    /* keeps the exceeding lines whose hash is a multiple of N, so that the same lines are kept across files and restarts */
+    HASH_SAMPLE,
+    /* drops every exceeding line */
+    DROP
+}
@@ -0,0 +1,111 @@
+package com.keedio.tailer.ratelimit;
+
+/**
+ * A snapshot of the lines a {@link com.keedio.tailer.ratelimit.RateLimitingListener} let through, delayed and shed,
+ * together with the position of the tailer at the time of the snapshot.
+ */
+public class RateLimitCounters {
+    private final String filename;
+    private final long position;
+
+    private final long passedRecords;
+    private final long passedBytes;
+    private final long delayedRecords;
+    private final long delayMillis;
+    private final long sampledOutRecords;
+    private final long sampledOutBytes;
+    private final long droppedRecords;
+    private final long droppedBytes;
+
+    public RateLimitCounters(String filename, long position, long passedRecords, long passedBytes,
+                             long delayedRecords, long delayMillis, long sampledOutRecords, long sampledOutBytes,
+                             long droppedRecords, long droppedBytes) {
+        this.filename = filename;
+        this.position = position;
+        this.passedRecords = passedRecords;
+        this.passedBytes = passedBytes;
+        this.delayedRecords = delayedRecords;
+        this.delayMillis = delayMillis;
+        this.sampledOutRecords = sampledOutRecords;
+        this.sampledOutBytes = sampledOutBytes;
+        this.droppedRecords = droppedRecords;
+        this.droppedBytes = droppedBytes;
+    }
+
+    /**
+     * @return the absolute path of the tailed file, or null if the listener is not registered to a tailer yet.
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * @return the position of the last fully read line of the tailer, or -1 if the listener is not registered to a tailer yet.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the number of lines delivered to the downstream listener, sampled lines included.
+     */
+    public long getPassedRecords() {
+        return passedRecords;
+    }
+
+    public long getPassedBytes() {
+        return passedBytes;
+    }
+
+    /**
+     * @return the number of lines which waited for the rate limits.
+     */
+    public long getDelayedRecords() {
+        return delayedRecords;
+    }
+
+    /**
+     * @return the total time the tailer waited for the rate limits, in milliseconds.
+     */
+    public long getDelayMillis() {
+        return delayMillis;
+    }
+
+    /**
+     * @return the number of exceeding lines discarded by sampling.
+     */
+    public long getSampledOutRecords() {
+        return sampledOutRecords;
+    }
+
+    public long getSampledOutBytes() {
+        return sampledOutBytes;
+    }
+
+    /**
+     * @return the number of exceeding lines dropped.
+     */
+    public long getDroppedRecords() {
+        return droppedRecords;
+    }
+
+    public long getDroppedBytes() {
+        return droppedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimitCounters{" +
+                "filename='" + filename + '\'' +
+                ", position=" + position +
+                ", passedRecords=" + passedRecords +
+                ", passedBytes=" + passedBytes +
+                ", delayedRecords=" + delayedRecords +
+                ", delayMillis=" + delayMillis +
+                ", sampledOutRecords=" + sampledOutRecords +
+                ", sampledOutBytes=" + sampledOutBytes +
+                ", droppedRecords=" + droppedRecords +
+                ", droppedBytes=" + droppedBytes +
+                '}';
+    }
+}
@@ -0,0 +1,104 @@
+package com.keedio.tailer.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ *     Limits the bytes and the records per second read by one or more tailers, allowing bursts of one second.
+ * </p>
+ * <p>
+ *     A limiter can be private to a {@link com.keedio.tailer.ratelimit.RateLimitingListener}, limiting a single file,
+ *     or shared among several listeners, limiting all their files together.
+ * </p>
+ * <p>
+ *     Lengths are given by the caller: {@link com.keedio.tailer.ratelimit.RateLimitingListener} counts the bytes each
+ *     line takes in the tailed file, terminator included.
+ * </p>
+ */
+public class RateLimiter {
+    private final TokenBucket bytes;
+
+    private final TokenBucket records;
+
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * @param bytesPerSecond the maximum number of bytes per second, 0 or less for no limit.
+     * @param recordsPerSecond the maximum number of records per second, 0 or less for no limit.
+     */
+    public RateLimiter(long bytesPerSecond, long recordsPerSecond) {
+        this.bytes = bytesPerSecond > 0 ? new TokenBucket(bytesPerSecond, bytesPerSecond) : null;
+        this.records = recordsPerSecond > 0 ? new TokenBucket(recordsPerSecond, recordsPerSecond) : null;
+    }
+
+    /**
+     * Takes the tokens of a record if both limits allow it.
+     *
+     * @param length the length of the record, in bytes.
+     * @return true if the record is within the limits.
+     */
+    public boolean tryAcquire(long length) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+
+            if (bytes != null && !bytes.tryTake(length, now)) {
+                return false;
+            }
+            if (records != null && !records.tryTake(1, now)) {
+                if (bytes != null) {
+                    bytes.giveBack(length);
+                }
+                return false;
+            }
+
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for both limits to allow a record, then takes its tokens.
+     *
+     * @param length the length of the record, in bytes.
+     * @throws InterruptedException if the thread was interrupted while waiting.
+     */
+    public void acquire(long length) throws InterruptedException {
+        while (!tryAcquire(length)) {
+            long waitNanos;
+
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                waitNanos = Math.max(bytes != null ? bytes.waitNanos(length, now) : 0,
+                        records != null ? records.waitNanos(1, now) : 0);
+            } finally {
+                lock.unlock();
+            }
+
+            TimeUnit.NANOSECONDS.sleep(Math.max(1, waitNanos));
+        }
+    }
+
+    /**
+     * Gives back the tokens of a record accepted by this limiter but rejected by another one.
+     *
+     * @param length the length of the record, in bytes.
+     */
+    void release(long length) {
+        lock.lock();
+        try {
+            if (bytes != null) {
+                bytes.giveBack(length);
+            }
+            if (records != null) {
+                records.giveBack(1);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
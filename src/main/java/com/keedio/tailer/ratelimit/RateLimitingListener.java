@@ -0,0 +1,276 @@
+package com.keedio.tailer.ratelimit;
+
+import com.keedio.tailer.LRTailer;
+import com.keedio.tailer.Record;
+import com.keedio.tailer.checkpoint.Acknowledgement;
+import com.keedio.tailer.listener.AcknowledgingListener;
+import com.keedio.tailer.listener.FileEventListener;
+import com.keedio.tailer.listener.RecordListener;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ *     Bounds the lines a {@link com.keedio.tailer.LRTailer} delivers to a downstream listener with a per-file and an
+ *     optional global {@link com.keedio.tailer.ratelimit.RateLimiter}, the latter shared among the listeners of several
+ *     tailers.
+ * </p>
+ * <p>
+ *     Lines exceeding the limits are handled according to the {@link com.keedio.tailer.ratelimit.OverflowMode}:
+ *     delayed, sampled with a rate of one line out of <code>sampleRate</code>, or dropped. Sampled lines do not take
+ *     tokens, so at most one out of <code>sampleRate</code> exceeding lines goes through.
+ * </p>
+ * <p>
+ *     A line delayed when the tailer thread is interrupted is neither delivered, acknowledged nor counted: the
+ *     interrupt status is restored, so that the tailer stops and reads the line again when restarted.
+ * </p>
+ * <p>
+ *     The length of a line is the number of bytes the tailer read for it, i.e. the difference between its position and
+ *     the position of the previous line of the same file. The first line of a file, and lines delivered without
+ *     position, are counted as their length encoded in the charset of the tailer plus a one byte terminator.
+ * </p>
+ * <p>
+ *     Shed lines are acknowledged as soon as they are discarded, so the tailer checkpoint moves past them. They are
+ *     accounted by {@link #getCounters()}, next to the position of the tailer.
+ * </p>
+ * <p>
+ *     Validation, rotation and error notifications are delegated to the downstream listener.
+ * </p>
+ */
+public class RateLimitingListener implements AcknowledgingListener {
+    private static final int DEFAULT_SAMPLE_RATE = 10;
+
+    private final FileEventListener downstream;
+
+    private final RateLimiter fileLimiter;
+
+    private final RateLimiter globalLimiter;
+
+    private final OverflowMode mode;
+
+    private final int sampleRate;
+
+    private volatile LRTailer tailer;
+
+    /* the file and the position of the previous line, only accessed by the tailer thread */
+    private String lastFilename;
+    private long lastPosition = -1;
+
+    /* number of lines exceeding the limits, drives SAMPLE */
+    private final AtomicLong exceeding = new AtomicLong();
+
+    private final AtomicLong passedRecords = new AtomicLong();
+    private final AtomicLong passedBytes = new AtomicLong();
+    private final AtomicLong delayedRecords = new AtomicLong();
+    private final AtomicLong delayNanos = new AtomicLong();
+    private final AtomicLong sampledOutRecords = new AtomicLong();
+    private final AtomicLong sampledOutBytes = new AtomicLong();
+    private final AtomicLong droppedRecords = new AtomicLong();
+    private final AtomicLong droppedBytes = new AtomicLong();
+
+    /**
+     * Builds a listener keeping one exceeding line out of 10 in the sampling modes.
+     *
+     * @param downstream the listener lines are delivered to.
+     * @param fileLimiter the limits of the tailed file, may be null.
+     * @param globalLimiter the limits shared with other tailers, may be null.
+     * @param mode what to do with the lines exceeding the limits.
+     */
+    public RateLimitingListener(FileEventListener downstream, RateLimiter fileLimiter, RateLimiter globalLimiter,
+                                OverflowMode mode) {
+        this(downstream, fileLimiter, globalLimiter, mode, DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * @param downstream the listener lines are delivered to.
+     * @param fileLimiter the limits of the tailed file, may be null.
+     * @param globalLimiter the limits shared with other tailers, may be null.
+     * @param mode what to do with the lines exceeding the limits.
+     * @param sampleRate the sampling modes keep one exceeding line out of <code>sampleRate</code>.
+     */
+    public RateLimitingListener(FileEventListener downstream, RateLimiter fileLimiter, RateLimiter globalLimiter,
+                                OverflowMode mode, int sampleRate) {
+        if (sampleRate <= 0) {
+            throw new IllegalArgumentException("sampleRate must be positive");
+        }
+        this.downstream = downstream;
+        this.fileLimiter = fileLimiter;
+        this.globalLimiter = globalLimiter;
+        this.mode = mode;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * @return the counters of passed, delayed and shed lines, with the position of the tailer.
+     */
+    public RateLimitCounters getCounters() {
+        LRTailer tailer = this.tailer;
+
+        return new RateLimitCounters(
+                tailer != null ? tailer.getTailedFile().getAbsolutePath() : null,
+                tailer != null ? tailer.getLastFullLinePosition() : -1,
+                passedRecords.get(), passedBytes.get(),
+                delayedRecords.get(), TimeUnit.NANOSECONDS.toMillis(delayNanos.get()),
+                sampledOutRecords.get(), sampledOutBytes.get(),
+                droppedRecords.get(), droppedBytes.get());
+    }
+
+    @Override
+    public void handle(Record record, Acknowledgement ack) {
+        if (!admit(record.getLine(), length(record.getFilename(), record.getLine(), record.getPosition()))) {
+            /* not shed but interrupted while delayed: left to the tailer */
+            if (!Thread.currentThread().isInterrupted()) {
+                ack.ack();
+            }
+            return;
+        }
+
+        if (downstream instanceof AcknowledgingListener) {
+            ((AcknowledgingListener) downstream).handle(record, ack);
+            return;
+        }
+
+        if (downstream instanceof RecordListener) {
+            ((RecordListener) downstream).handle(record);
+        } else {
+            downstream.handle(record.getFilename(), record.getLine());
+        }
+        ack.ack();
+    }
+
+    @Override
+    public void handle(String filename, String line) {
+        if (admit(line, length(filename, line, -1))) {
+            downstream.handle(filename, line);
+        }
+    }
+
+    @Override
+    public void init(LRTailer lrTailer) {
+        this.tailer = lrTailer;
+        downstream.init(lrTailer);
+    }
+
+    @Override
+    public String rotated(long lastPosition, long currPosition) {
+        return downstream.rotated(lastPosition, currPosition);
+    }
+
+    @Override
+    public void notExists() {
+        downstream.notExists();
+    }
+
+    @Override
+    public void handleException(Exception e) {
+        downstream.handleException(e);
+    }
+
+    @Override
+    public boolean isValid(String partialLine) {
+        return downstream.isValid(partialLine);
+    }
+
+    /* the number of bytes read for the line, its position being -1 if unknown */
+    private long length(String filename, String line, long position) {
+        long length;
+
+        if (position > lastPosition && lastPosition >= 0 && filename.equals(lastFilename)) {
+            length = position - lastPosition;
+        } else {
+            /* first line of a generation: lines are terminated by one byte, but for CRLF */
+            LRTailer tailer = this.tailer;
+            Charset charset = tailer != null ? tailer.getCharset() : Charset.defaultCharset();
+
+            length = line.getBytes(charset).length + 1;
+        }
+
+        lastFilename = filename;
+        lastPosition = position;
+
+        return length;
+    }
+
+    /* decides whether the line goes through, updating the counters, false if interrupted while delayed */
+    private boolean admit(String line, long length) {
+        if (tryAcquire(length)) {
+            return pass(length);
+        }
+
+        switch (mode) {
+            case DELAY:
+                long start = System.nanoTime();
+                boolean fileAcquired = false;
+                try {
+                    if (fileLimiter != null) {
+                        fileLimiter.acquire(length);
+                        fileAcquired = true;
+                    }
+                    if (globalLimiter != null) {
+                        globalLimiter.acquire(length);
+                    }
+                } catch (InterruptedException e) {
+                    if (fileAcquired) {
+                        fileLimiter.release(length);
+                    }
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                delayedRecords.incrementAndGet();
+                delayNanos.addAndGet(System.nanoTime() - start);
+                return pass(length);
+            case SAMPLE:
+                if (exceeding.getAndIncrement() % sampleRate == 0) {
+                    return pass(length);
+                }
+                break;
+            case HASH_SAMPLE:
+                if ((hash(line) & Integer.MAX_VALUE) % sampleRate == 0) {
+                    return pass(length);
+                }
+                break;
+            default:
+                droppedRecords.incrementAndGet();
+                droppedBytes.addAndGet(length);
+                return false;
+        }
+
+        sampledOutRecords.incrementAndGet();
+        sampledOutBytes.addAndGet(length);
+        return false;
+    }
+
+    private boolean tryAcquire(long length) {
+        if (fileLimiter != null && !fileLimiter.tryAcquire(length)) {
+            return false;
+        }
+        if (globalLimiter != null && !globalLimiter.tryAcquire(length)) {
+            if (fileLimiter != null) {
+                fileLimiter.release(length);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private boolean pass(long length) {
+        passedRecords.incrementAndGet();
+        passedBytes.addAndGet(length);
+        return true;
+    }
+
+    /* the hash code of the line, with the bits spread so that the low ones are usable for sampling */
+    static int hash(String line) {
+        int h = line.hashCode();
+
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+
+        return h;
+    }
+}
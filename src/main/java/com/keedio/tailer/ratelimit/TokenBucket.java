@@ -0,0 +1,84 @@
+package com.keedio.tailer.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *     A token bucket refilled at <code>rate</code> tokens per second up to <code>capacity</code> tokens.
+ * </p>
+ * <p>
+ *     A request for more tokens than the capacity is granted when the bucket is full, leaving it in debt, so that
+ *     oversized lines are slowed down instead of being rejected forever.
+ * </p>
+ * <p>
+ *     This class is not thread safe: see {@link com.keedio.tailer.ratelimit.RateLimiter}.
+ * </p>
+ */
+class TokenBucket {
+    private final double rate;
+
+    private final double capacity;
+
+    private double tokens;
+
+    private long lastRefillNanos;
+
+    /**
+     * @param rate the number of tokens added per second.
+     * @param capacity the maximum number of tokens, the allowed burst.
+     */
+    TokenBucket(double rate, double capacity) {
+        if (rate <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("rate and capacity must be positive");
+        }
+        this.rate = rate;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Takes <code>count</code> tokens if available.
+     *
+     * @param count the number of tokens.
+     * @param now the current time, as returned by {@link System#nanoTime()}.
+     * @return true if the tokens were taken.
+     */
+    boolean tryTake(long count, long now) {
+        refill(now);
+
+        if (tokens < Math.min(count, capacity)) {
+            return false;
+        }
+        tokens -= count;
+
+        return true;
+    }
+
+    /**
+     * Gives back tokens taken by {@link #tryTake(long, long)}.
+     *
+     * @param count the number of tokens.
+     */
+    void giveBack(long count) {
+        tokens = Math.min(capacity, tokens + count);
+    }
+
+    /**
+     * @param count the number of tokens.
+     * @param now the current time, as returned by {@link System#nanoTime()}.
+     * @return the time, in nanoseconds, to wait before <code>count</code> tokens are available.
+     */
+    long waitNanos(long count, long now) {
+        refill(now);
+
+        double missing = Math.min(count, capacity) - tokens;
+
+        return missing <= 0 ? 0 : (long) Math.ceil(missing / rate * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * rate / TimeUnit.SECONDS.toNanos(1));
+        lastRefillNanos = now;
+    }
+}
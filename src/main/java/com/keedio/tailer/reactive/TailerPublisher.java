@@ -0,0 +1,375 @@
+package com.keedio.tailer.reactive;
+
+import com.keedio.tailer.LRTailer;
+import com.keedio.tailer.Record;
+import com.keedio.tailer.checkpoint.AckTracker;
+import com.keedio.tailer.checkpoint.Acknowledgement;
+import com.keedio.tailer.checkpoint.CheckpointStore;
+import com.keedio.tailer.listener.AcknowledgingListener;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ *     Exposes the lines read by a {@link com.keedio.tailer.LRTailer} as a Reactive Streams
+ *     {@link org.reactivestreams.Publisher}. Use {@link org.reactivestreams.FlowAdapters} to bridge it
+ *     to <code>java.util.concurrent.Flow</code>.
+ * </p>
+ * <p>
+ *     The tailer reads only as much as the subscriber has requested: when there is no outstanding demand,
+ *     {@link #handle(com.keedio.tailer.Record, com.keedio.tailer.checkpoint.Acknowledgement)} blocks the tailer
+ *     thread, which stops reading the file until {@link org.reactivestreams.Subscription#request(long)} is called
+ *     again. Cancelling the subscription, or interrupting the tailer thread while it waits, stops the tailer. A
+ *     record whose wait is interrupted is not delivered, and is read again if the tailer is run again.
+ * </p>
+ * <p>
+ *     Signals to the subscriber are serialized: an error raised while a record is being delivered, i.e. by a
+ *     non positive {@link org.reactivestreams.Subscription#request(long)}, is signalled once
+ *     {@link org.reactivestreams.Subscriber#onNext(Object)} has returned, by the thread delivering the record.
+ * </p>
+ * <p>
+ *     Records are acknowledged by calling {@link #acknowledge(com.keedio.tailer.Record)}. As records are delivered in
+ *     order, acknowledging a record acknowledges all the records delivered before it. The publisher sets an
+ *     {@link com.keedio.tailer.checkpoint.AckTracker} on the tailer, so the positions are tracked per generation of
+ *     the file and committed to the {@link com.keedio.tailer.checkpoint.CheckpointStore}, if any, along with the
+ *     identity of the generation they were read from: positions restart at 0 when the file rotates.
+ * </p>
+ * <p>
+ *     At most <code>maxUnacknowledged</code> records can be delivered and not acknowledged: the tailer then waits for
+ *     acknowledgements as it waits for demand.
+ * </p>
+ * <p>
+ *     Only one subscriber is supported. Like {@link com.keedio.tailer.listener.impl.LogFileEventListener}, this class
+ *     accepts every line and does not provide the name of rotated files: subclasses can override
+ *     {@link #isValid(String)} and {@link #rotated(long, long)}.
+ * </p>
+ */
+public class TailerPublisher implements Publisher<Record>, AcknowledgingListener {
+    private final static Logger LOGGER = LogManager.getLogger(TailerPublisher.class);
+
+    /* default maximum number of records delivered and not acknowledged */
+    private static final int DEFAULT_MAX_UNACKNOWLEDGED = 10000;
+
+    private static final Acknowledgement NO_ACK = new Acknowledgement() {
+        @Override
+        public void ack() {
+        }
+    };
+
+    /* where acknowledged positions are committed, may be null */
+    private final CheckpointStore checkpointStore;
+
+    private final int maxUnacknowledged;
+
+    private final Lock lock = new ReentrantLock();
+
+    /* signalled when demand increases or the subscription is cancelled */
+    private final Condition demandAvailable = lock.newCondition();
+
+    private LRTailer tailer;
+
+    private Subscriber<? super Record> subscriber;
+
+    /* number of records requested by the subscriber and not delivered yet */
+    private long demand = 0;
+
+    private boolean cancelled = false;
+
+    /* true while onNext is called, errors are then signalled once it returns */
+    private boolean emitting = false;
+
+    private Throwable pendingError;
+
+    /* records delivered and not acknowledged yet, in delivery order */
+    private final Deque<Delivered> unacknowledged = new ArrayDeque<>();
+
+    private AckTracker ackTracker;
+
+    /**
+     * Builds a publisher which does not commit acknowledged positions.
+     */
+    public TailerPublisher() {
+        this(null);
+    }
+
+    /**
+     * @param checkpointStore where acknowledged positions are committed.
+     */
+    public TailerPublisher(CheckpointStore checkpointStore) {
+        this(checkpointStore, DEFAULT_MAX_UNACKNOWLEDGED);
+    }
+
+    /**
+     * @param checkpointStore where acknowledged positions are committed, may be null.
+     * @param maxUnacknowledged the maximum number of records delivered and not acknowledged.
+     */
+    public TailerPublisher(CheckpointStore checkpointStore, int maxUnacknowledged) {
+        if (maxUnacknowledged <= 0) {
+            throw new IllegalArgumentException("maxUnacknowledged must be positive");
+        }
+        this.checkpointStore = checkpointStore;
+        this.maxUnacknowledged = maxUnacknowledged;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void subscribe(Subscriber<? super Record> s) {
+        if (s == null) {
+            throw new NullPointerException("subscriber must not be null");
+        }
+
+        lock.lock();
+        try {
+            if (subscriber == null) {
+                subscriber = s;
+                s.onSubscribe(new TailerSubscription());
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        s.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        s.onError(new IllegalStateException("TailerPublisher only supports a single subscriber"));
+    }
+
+    /**
+     * Acknowledges the given record and all the records delivered before it. Records already acknowledged are ignored.
+     *
+     * @param record the processed record, as delivered to the subscriber.
+     * @throws IOException if the position could not be committed.
+     */
+    public void acknowledge(Record record) throws IOException {
+        List<Acknowledgement> acks = new ArrayList<>();
+
+        lock.lock();
+        try {
+            if (!isUnacknowledged(record)) {
+                return;
+            }
+
+            Delivered delivered;
+            do {
+                delivered = unacknowledged.removeFirst();
+                acks.add(delivered.ack);
+            } while (delivered.record != record);
+        } finally {
+            lock.unlock();
+        }
+
+        for (Acknowledgement ack : acks) {
+            ack.ack();
+        }
+        ackTracker.commit();
+    }
+
+    /**
+     * @return the position of the last acknowledged record in its generation of the file, -1 if no record has been
+     * acknowledged yet.
+     */
+    public long getCommittedPosition() {
+        return ackTracker == null ? -1 : ackTracker.getWatermark();
+    }
+
+    @Override
+    public void init(LRTailer lrTailer) {
+        this.tailer = lrTailer;
+
+        /* acknowledgements are committed by acknowledge(), not grouped */
+        this.ackTracker = new AckTracker(checkpointStore, lrTailer.getTailedFile().getAbsolutePath(),
+                maxUnacknowledged, Integer.MAX_VALUE, Long.MAX_VALUE);
+        lrTailer.setAckTracker(ackTracker);
+    }
+
+    @Override
+    public String rotated(long lastPosition, long currPosition) {
+        return null;
+    }
+
+    /**
+     * Waits for the subscriber to request more records, then delivers the given one. If the tailer thread is
+     * interrupted while waiting, the record is not delivered and the interrupt status of the thread is set, so that
+     * the tailer stops without moving past the record.
+     *
+     * @param record a valid line.
+     * @param ack the token acknowledged when the subscriber acknowledges the record.
+     */
+    @Override
+    public void handle(Record record, Acknowledgement ack) {
+        Subscriber<? super Record> s;
+
+        lock.lock();
+        try {
+            while (demand == 0 && !cancelled) {
+                demandAvailable.await();
+            }
+
+            if (cancelled) {
+                return;
+            }
+
+            demand--;
+            unacknowledged.addLast(new Delivered(record, ack));
+            s = subscriber;
+            emitting = true;
+        } catch (InterruptedException e) {
+            /* i.e. the executor is shut down */
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            s.onNext(record);
+        } finally {
+            emitted();
+        }
+    }
+
+    @Override
+    public void handle(String filename, String line) {
+        /* a line without position: acknowledging it commits nothing */
+        handle(new Record(filename, line, -1), NO_ACK);
+    }
+
+    @Override
+    public void notExists() {
+        signalError(new IllegalStateException(tailer.getTailedFile().getAbsolutePath() + " does not exists"));
+    }
+
+    @Override
+    public void handleException(Exception e) {
+        signalError(e);
+    }
+
+    @Override
+    public boolean isValid(String partialLine) {
+        return true;
+    }
+
+    /* called holding the lock */
+    private boolean isUnacknowledged(Record record) {
+        for (Delivered delivered : unacknowledged) {
+            if (delivered.record == record) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void signalError(Throwable t) {
+        Subscriber<? super Record> s = null;
+
+        lock.lock();
+        try {
+            if (!cancelled) {
+                cancelled = true;
+                demandAvailable.signalAll();
+
+                if (emitting) {
+                    /* signalled by the thread calling onNext */
+                    pendingError = t;
+                    return;
+                }
+                s = subscriber;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (s != null) {
+            s.onError(t);
+        } else {
+            LOGGER.error("Tailer failed with no subscriber to notify", t);
+        }
+    }
+
+    /* called once onNext has returned, signals the error raised meanwhile if any */
+    private void emitted() {
+        Subscriber<? super Record> s;
+        Throwable error;
+
+        lock.lock();
+        try {
+            emitting = false;
+            error = pendingError;
+            pendingError = null;
+            s = subscriber;
+        } finally {
+            lock.unlock();
+        }
+
+        if (error != null) {
+            s.onError(error);
+        }
+    }
+
+    private class TailerSubscription implements Subscription {
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                signalError(new IllegalArgumentException("requested a non positive number of records: " + n));
+                return;
+            }
+
+            lock.lock();
+            try {
+                /* demand is capped to Long.MAX_VALUE, meaning unbounded */
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                demandAvailable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            lock.lock();
+            try {
+                cancelled = true;
+                demandAvailable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            if (tailer != null) {
+                tailer.stop();
+            }
+        }
+    }
+
+    /* a record delivered to the subscriber, with the token of the tracker */
+    private static class Delivered {
+        private final Record record;
+        private final Acknowledgement ack;
+
+        Delivered(Record record, Acknowledgement ack) {
+            this.record = record;
+            this.ack = ack;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.keedio.tailer.scheduler;
+
+import com.keedio.tailer.LRTailer;
+import com.keedio.tailer.PollResult;
+import com.keedio.tailer.clock.Clock;
+import com.keedio.tailer.clock.SystemClock;
+import com.keedio.tailer.exception.TailerException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ *     Tails many files from a single thread, sharing reading time among them with deficit round robin,
+ *     so that a chatty file cannot starve the others.
+ * </p>
+ * <p>
+ *     At each round every tailed file earns a byte quantum proportional to its weight, added to its deficit, and is
+ *     polled (see {@link com.keedio.tailer.LRTailer#poll(long, int)}) for at most its deficit in bytes and
+ *     <code>recordQuantum * weight</code> lines. The bytes read are subtracted from the deficit, which is reset when
+ *     the file has no more data, so idle files do not accumulate credit.
+ * </p>
+ * <p>
+ *     Files lagging behind by more than <code>lagThreshold</code> bytes earn a larger quantum, up to
+ *     <code>maxLagBoost</code> times the normal one, so that they can catch up. The lag of a file is the one reported
+ *     by its last poll (see {@link com.keedio.tailer.PollResult#getLag()}), so the scheduler does not stat the files
+ *     itself and a shared {@link com.keedio.tailer.io.AttributePoller} keeps bounding the stats.
+ * </p>
+ * <p>
+ *     Within a round files are polled by decreasing priority: priorities only affect the order in which files are
+ *     served, every file is served at every round.
+ * </p>
+ * <p>
+ *     When a round reads nothing the scheduler sleeps <code>sleepTime</code> milliseconds on its
+ *     {@link com.keedio.tailer.clock.Clock}. A tailer failing with a
+ *     {@link com.keedio.tailer.exception.TailerException} is removed from the scheduler and closed.
+ * </p>
+ * <p>
+ *     Tailers are only polled and closed by the scheduler thread: a tailer removed by another thread is skipped from
+ *     then on, and closed at the end of the round.
+ * </p>
+ */
+public class FairShareScheduler implements Runnable {
+    private final static Logger LOGGER = LogManager.getLogger(FairShareScheduler.class);
+
+    private static final long DEFAULT_BYTE_QUANTUM = 64 * 1024;
+    private static final int DEFAULT_RECORD_QUANTUM = 1000;
+    private static final long DEFAULT_LAG_THRESHOLD = 16 * 1024 * 1024;
+    private static final int DEFAULT_MAX_LAG_BOOST = 4;
+
+    private final long byteQuantum;
+
+    private final int recordQuantum;
+
+    private final long lagThreshold;
+
+    private final int maxLagBoost;
+
+    private final long sleepTime;
+
+    /* entries sorted by decreasing priority */
+    private final List<Entry> entries = new CopyOnWriteArrayList<>();
+
+    /* serializes the updates of the entries order */
+    private final Lock entriesLock = new ReentrantLock();
+
+    private Clock clock = SystemClock.getInstance();
+
+    private volatile boolean run = true;
+
+    /**
+     * Builds a scheduler with a 64KB and 1000 lines quantum.
+     *
+     * @param sleepTime the time, in milliseconds, to sleep when no file has new data.
+     */
+    public FairShareScheduler(long sleepTime) {
+        this(sleepTime, DEFAULT_BYTE_QUANTUM, DEFAULT_RECORD_QUANTUM, DEFAULT_LAG_THRESHOLD, DEFAULT_MAX_LAG_BOOST);
+    }
+
+    /**
+     * @param sleepTime the time, in milliseconds, to sleep when no file has new data.
+     * @param byteQuantum the number of bytes a file with weight 1 can read at each round.
+     * @param recordQuantum the number of lines a file with weight 1 can deliver at each round.
+     * @param lagThreshold the lag, in bytes, above which a file earns a larger quantum.
+     * @param maxLagBoost the maximum factor the quantum of a lagging file is multiplied by.
+     */
+    public FairShareScheduler(long sleepTime, long byteQuantum, int recordQuantum, long lagThreshold, int maxLagBoost) {
+        if (byteQuantum <= 0 || recordQuantum <= 0 || lagThreshold <= 0 || maxLagBoost < 1) {
+            throw new IllegalArgumentException("quanta, lag threshold and boost must be positive");
+        }
+        this.sleepTime = sleepTime;
+        this.byteQuantum = byteQuantum;
+        this.recordQuantum = recordQuantum;
+        this.lagThreshold = lagThreshold;
+        this.maxLagBoost = maxLagBoost;
+    }
+
+    /**
+     * Sets the source of time the scheduler waits on between rounds. The system clock is used by default.
+     *
+     * @param clock the source of time.
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Adds a tailer with weight 1 and priority 0.
+     *
+     * @param tailer the tailer to schedule.
+     */
+    public void add(LRTailer tailer) {
+        add(tailer, 1, 0);
+    }
+
+    /**
+     * Adds a tailer. The tailer is opened (see {@link com.keedio.tailer.LRTailer#open()}) by this method.
+     *
+     * @param tailer the tailer to schedule.
+     * @param weight the share of reading time of the file, relative to the other files.
+     * @param priority the order in which files are served within a round, higher first.
+     * @throws TailerException if the tailer could not be opened.
+     */
+    public void add(LRTailer tailer, int weight, int priority) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight must be positive: " + weight);
+        }
+
+        tailer.open();
+
+        entriesLock.lock();
+        try {
+            List<Entry> sorted = new ArrayList<>(entries);
+            sorted.add(new Entry(tailer, weight, priority));
+            Collections.sort(sorted, new Comparator<Entry>() {
+                @Override
+                public int compare(Entry e1, Entry e2) {
+                    return Integer.compare(e2.priority, e1.priority);
+                }
+            });
+
+            entries.clear();
+            entries.addAll(sorted);
+        } finally {
+            entriesLock.unlock();
+        }
+    }
+
+    /**
+     * Removes a tailer. A poll of the tailer in progress completes, but the tailer is not polled again: it is closed
+     * by the scheduler thread at the end of the current round.
+     *
+     * @param tailer the tailer to remove.
+     */
+    public void remove(LRTailer tailer) {
+        for (Entry entry : entries) {
+            if (entry.tailer == tailer) {
+                entry.removed = true;
+            }
+        }
+    }
+
+    /**
+     * Stops the scheduler. Tailers are closed when the scheduler thread exits.
+     */
+    public void stop() {
+        run = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        try {
+            while (run) {
+                if (runRound() == 0) {
+                    try {
+                        clock.sleep(sleepTime);
+                    } catch (InterruptedException e) {
+                        /* i.e. the executor is shut down */
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        } finally {
+            for (Entry entry : entries) {
+                entry.tailer.close();
+            }
+        }
+    }
+
+    /**
+     * Serves every file once.
+     *
+     * @return the number of bytes read in this round.
+     */
+    long runRound() {
+        long total = 0;
+
+        for (Entry entry : entries) {
+            if (!run) {
+                break;
+            }
+
+            if (entry.removed) {
+                continue;
+            }
+
+            LRTailer tailer = entry.tailer;
+
+            entry.deficit += byteQuantum * entry.weight * lagBoost(entry.lag);
+
+            if (entry.deficit <= 0) {
+                /* still paying for a long line read in a previous round */
+                continue;
+            }
+
+            try {
+                PollResult result = tailer.poll(entry.deficit, recordQuantum * entry.weight);
+
+                total += result.getBytes();
+                entry.bytesRead += result.getBytes();
+                entry.lag = result.getLag();
+
+                /* the last line read may exceed the deficit, the excess is paid in the next rounds */
+                entry.deficit = result.hasMore() ? entry.deficit - result.getBytes() : 0;
+            } catch (TailerException e) {
+                LOGGER.error("Removing failed tailer of " + tailer.getTailedFile().getAbsolutePath(), e);
+                entry.removed = true;
+            }
+        }
+
+        closeRemoved();
+        return total;
+    }
+
+    /* drops and closes the removed tailers, between two rounds */
+    private void closeRemoved() {
+        List<Entry> closed = null;
+
+        for (Entry entry : entries) {
+            if (entry.removed) {
+                if (closed == null) {
+                    closed = new ArrayList<>();
+                }
+                closed.add(entry);
+            }
+        }
+
+        if (closed == null) {
+            return;
+        }
+
+        entriesLock.lock();
+        try {
+            entries.removeAll(closed);
+        } finally {
+            entriesLock.unlock();
+        }
+
+        for (Entry entry : closed) {
+            entry.tailer.close();
+        }
+    }
+
+    /**
+     * @param tailer a scheduled tailer.
+     * @return the number of bytes read by the tailer since it was added, -1 if the tailer is not scheduled.
+     */
+    public long getBytesRead(LRTailer tailer) {
+        for (Entry entry : entries) {
+            if (entry.tailer == tailer && !entry.removed) {
+                return entry.bytesRead;
+            }
+        }
+        return -1;
+    }
+
+    private int lagBoost(long lag) {
+        return (int) Math.min(maxLagBoost, 1 + lag / lagThreshold);
+    }
+
+    private static class Entry {
+        private final LRTailer tailer;
+        private final int weight;
+        private final int priority;
+
+        /* bytes the file can still read, only accessed by the scheduler thread */
+        private long deficit = 0;
+
+        /* bytes left to read as of the last poll, only accessed by the scheduler thread */
+        private long lag = 0;
+
+        private volatile long bytesRead = 0;
+
+        /* set by remove, the tailer being closed by the scheduler thread */
+        private volatile boolean removed = false;
+
+        private Entry(LRTailer tailer, int weight, int priority) {
+            this.tailer = tailer;
+            this.weight = weight;
+            this.priority = priority;
+        }
+    }
+}
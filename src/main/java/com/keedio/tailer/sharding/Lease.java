@@ -0,0 +1,115 @@
+package com.keedio.tailer.sharding;
+
+import com.keedio.tailer.checkpoint.FileIdentity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * The content of a lease file: the tailed file, its owner, the heartbeat counter of the owner and the position
+ * up to which the file has been processed, with the identity of the generation of the file the position refers to,
+ * if known. A released lease has an empty owner.
+ */
+class Lease {
+    private static final String FILE = "file";
+    private static final String OWNER = "owner";
+    private static final String COUNTER = "counter";
+    private static final String OFFSET = "offset";
+    private static final String IDENTITY = "identity";
+
+    private final String file;
+    private final String owner;
+    private final long counter;
+    private final long offset;
+
+    /* may be null */
+    private final FileIdentity identity;
+
+    Lease(String file, String owner, long counter, long offset, FileIdentity identity) {
+        this.file = file;
+        this.owner = owner;
+        this.counter = counter;
+        this.offset = offset;
+        this.identity = identity;
+    }
+
+    String getFile() {
+        return file;
+    }
+
+    String getOwner() {
+        return owner;
+    }
+
+    long getCounter() {
+        return counter;
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    FileIdentity getIdentity() {
+        return identity;
+    }
+
+    boolean isReleased() {
+        return owner.isEmpty();
+    }
+
+    /**
+     * @return the lease stored in the given file, or null if the file does not exist.
+     */
+    static Lease read(Path path) throws IOException {
+        Properties properties = new Properties();
+
+        try (InputStream in = Files.newInputStream(path)) {
+            properties.load(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        String identity = properties.getProperty(IDENTITY);
+
+        return new Lease(properties.getProperty(FILE, ""), properties.getProperty(OWNER, ""),
+                Long.parseLong(properties.getProperty(COUNTER, "0")),
+                Long.parseLong(properties.getProperty(OFFSET, "-1")),
+                identity != null ? FileIdentity.parse(identity) : null);
+    }
+
+    /**
+     * Replaces atomically the content of the given file with this lease.
+     */
+    void write(Path path, String writer) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(FILE, file);
+        properties.setProperty(OWNER, owner);
+        properties.setProperty(COUNTER, Long.toString(counter));
+        properties.setProperty(OFFSET, Long.toString(offset));
+        if (identity != null) {
+            properties.setProperty(IDENTITY, identity.toString());
+        }
+
+        Path tmp = path.resolveSibling(path.getFileName() + "." + writer + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            properties.store(out, null);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return true if both leases are absent, or have the same owner and counter.
+     */
+    static boolean sameState(Lease l1, Lease l2) {
+        if (l1 == null || l2 == null) {
+            return l1 == l2;
+        }
+        return l1.owner.equals(l2.owner) && l1.counter == l2.counter;
+    }
+}
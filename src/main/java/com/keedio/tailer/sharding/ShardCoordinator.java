@@ -0,0 +1,542 @@
+package com.keedio.tailer.sharding;
+
+import com.keedio.tailer.LRTailer;
+import com.keedio.tailer.StartPosition;
+import com.keedio.tailer.checkpoint.FileIdentity;
+import com.keedio.tailer.checkpoint.IdentityCheckpointStore;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>
+ *     Shares the tailing of a set of files among several processes, on one host or on hosts sharing a filesystem,
+ *     so that each file is tailed by a single process at a time.
+ * </p>
+ * <p>
+ *     Processes coordinate through a shared directory, without talking to each other:
+ *     <ul>
+ *         <li>each process heartbeats an <code>&lt;instanceId&gt;.instance</code> file, so that the others know how
+ *         many processes are alive and each one claims its share of the files,</li>
+ *         <li>each tailed file has a <code>.lease</code> file holding its owner, a heartbeat counter and the position up to
+ *         which the file has been processed. The owner increments the counter and updates the position at each
+ *         heartbeat.</li>
+ *     </ul>
+ * </p>
+ * <p>
+ *     A lease whose counter did not change for <code>leaseTimeoutMillis</code> is expired, its owner is considered
+ *     dead and the file is claimed by another process, which resumes tailing at the position found in the lease.
+ *     Expiration is measured with the local clock of each process, so clocks do not need to be synchronized.
+ *     When a process joins or stops, leases are released with their last position and claimed by the others. A
+ *     released file is handed off once its tailer has exited, the lease being renewed meanwhile, so that waiting for
+ *     a tailer does not delay the heartbeats of the other leases. A process restarted with the same identifier
+ *     reclaims the leases it owned right away.
+ * </p>
+ * <p>
+ *     Claims are serialized by a <code>.claim</code> file created atomically. An owner which was paused longer than
+ *     the lease timeout may keep reading its file until its next heartbeat, when it finds out it lost the lease:
+ *     lines read in the meantime are delivered twice.
+ * </p>
+ * <p>
+ *     The handed off position is the one committed to this coordinator, acting as
+ *     {@link com.keedio.tailer.checkpoint.IdentityCheckpointStore} (i.e. by an
+ *     {@link com.keedio.tailer.checkpoint.AckTracker}), or the last fully read line of the tailer if nothing has been
+ *     committed. Positions are handed off with the {@link com.keedio.tailer.checkpoint.FileIdentity} of the
+ *     generation they refer to, so that a file rotated meanwhile is read from its beginning.
+ * </p>
+ */
+public class ShardCoordinator implements Runnable, IdentityCheckpointStore {
+    private final static Logger LOGGER = LogManager.getLogger(ShardCoordinator.class);
+
+    private static final String LEASE_SUFFIX = ".lease";
+    private static final String CLAIM_SUFFIX = ".claim";
+    private static final String INSTANCE_SUFFIX = ".instance";
+
+    private final Path directory;
+
+    private final String instanceId;
+
+    /* absolute paths of the files to share */
+    private final List<String> filenames;
+
+    private final TailerFactory tailerFactory;
+
+    private final ExecutorService executor;
+
+    private final long heartbeatMillis;
+
+    private final long leaseTimeoutNanos;
+
+    /* the files owned by this process */
+    private final Map<String, Owned> owned = new ConcurrentHashMap<>();
+
+    /* the files being released: their tailers have been stopped, their leases are released once they exit */
+    private final Map<String, Owned> releasing = new ConcurrentHashMap<>();
+
+    /* positions handed off by the previous owners */
+    private final Map<String, Checkpoint> handedOff = new ConcurrentHashMap<>();
+
+    /* positions committed by the tailers */
+    private final Map<String, Checkpoint> committed = new ConcurrentHashMap<>();
+
+    /* last seen state of the leases and instances of other processes, to detect expiration */
+    private final Map<String, Observation> observations = new HashMap<>();
+
+    private long instanceCounter = 0;
+
+    private volatile boolean run = true;
+
+    /**
+     * @param coordinationDirectory the directory shared by the processes.
+     * @param instanceId the identifier of this process, unique among the processes.
+     * @param filenames the files to share, the same for all the processes.
+     * @param tailerFactory builds the tailers of the claimed files.
+     * @param executor runs the tailers of the claimed files.
+     * @param heartbeatMillis the time, in milliseconds, between two heartbeats.
+     * @param leaseTimeoutMillis the time, in milliseconds, after which a process which stopped heartbeating is considered dead.
+     * @throws IOException if the coordination directory could not be created.
+     */
+    public ShardCoordinator(File coordinationDirectory, String instanceId, Collection<String> filenames,
+                            TailerFactory tailerFactory, ExecutorService executor,
+                            long heartbeatMillis, long leaseTimeoutMillis) throws IOException {
+        if (heartbeatMillis <= 0 || leaseTimeoutMillis <= heartbeatMillis) {
+            throw new IllegalArgumentException("leaseTimeoutMillis must be greater than heartbeatMillis");
+        }
+        if (instanceId.isEmpty()) {
+            throw new IllegalArgumentException("instanceId must not be empty");
+        }
+
+        this.directory = Files.createDirectories(coordinationDirectory.toPath());
+        this.instanceId = instanceId;
+        this.tailerFactory = tailerFactory;
+        this.executor = executor;
+        this.heartbeatMillis = heartbeatMillis;
+        this.leaseTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(leaseTimeoutMillis);
+
+        this.filenames = new ArrayList<>();
+        for (String filename : filenames) {
+            this.filenames.add(new File(filename).getAbsolutePath());
+        }
+
+        /* processes start claiming at different files, reducing contention */
+        Collections.rotate(this.filenames, instanceId.hashCode() % Math.max(1, this.filenames.size()));
+    }
+
+    /**
+     * Heartbeats and rebalances the files until stopped, then releases the owned files.
+     */
+    @Override
+    public void run() {
+        try {
+            while (run) {
+                tick();
+
+                try {
+                    Thread.sleep(heartbeatMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } finally {
+            releaseAll();
+        }
+    }
+
+    /**
+     * Stops the coordinator: the owned files are released once {@link #run()} returns.
+     */
+    public void stop() {
+        run = false;
+    }
+
+    /**
+     * @return the absolute paths of the files owned by this process.
+     */
+    public Set<String> getOwnedFiles() {
+        return Collections.unmodifiableSet(owned.keySet());
+    }
+
+    @Override
+    public long load(String filename) {
+        Checkpoint checkpoint = handedOff.get(filename);
+
+        return checkpoint != null ? checkpoint.position : -1;
+    }
+
+    @Override
+    public FileIdentity loadIdentity(String filename) {
+        Checkpoint checkpoint = handedOff.get(filename);
+
+        return checkpoint != null ? checkpoint.identity : null;
+    }
+
+    @Override
+    public void commit(String filename, long position) {
+        commit(filename, position, null);
+    }
+
+    @Override
+    public void commit(String filename, long position, FileIdentity identity) {
+        committed.put(filename, new Checkpoint(position, identity));
+    }
+
+    /**
+     * Heartbeats, renews the owned leases, then claims or releases files so that each live process owns its share.
+     */
+    void tick() {
+        try {
+            heartbeatInstance();
+            int instances = countLiveInstances();
+
+            renewLeases();
+
+            int share = (filenames.size() + instances - 1) / instances;
+
+            List<String> owning = new ArrayList<>(owned.keySet());
+            for (int i = share; i < owning.size(); i++) {
+                release(owning.get(i));
+            }
+
+            completeReleases();
+
+            for (String filename : filenames) {
+                if (owned.size() >= share) {
+                    break;
+                }
+                if (!owned.containsKey(filename) && !releasing.containsKey(filename)) {
+                    tryClaim(filename);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Could not coordinate through " + directory, e);
+        }
+    }
+
+    /**
+     * Releases all the owned files, waiting for their tailers to exit in order to hand off their last positions.
+     */
+    void releaseAll() {
+        for (String filename : new ArrayList<>(owned.keySet())) {
+            release(filename);
+        }
+
+        for (Map.Entry<String, Owned> entry : new ArrayList<>(releasing.entrySet())) {
+            Owned file = entry.getValue();
+            long remaining = leaseTimeoutNanos - (System.nanoTime() - file.releaseStart);
+
+            try {
+                file.future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                /* reported by completeRelease */
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            try {
+                completeRelease(entry.getKey(), file);
+            } catch (IOException e) {
+                LOGGER.error("Could not release " + entry.getKey(), e);
+            }
+        }
+
+        try {
+            Files.deleteIfExists(directory.resolve(instanceId + INSTANCE_SUFFIX));
+        } catch (IOException e) {
+            LOGGER.warn("Could not delete the instance file of " + instanceId, e);
+        }
+    }
+
+    private void heartbeatInstance() throws IOException {
+        Path tmp = directory.resolve(instanceId + INSTANCE_SUFFIX + ".tmp");
+
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            out.write(Long.toString(++instanceCounter).getBytes(StandardCharsets.UTF_8));
+        }
+        Files.move(tmp, directory.resolve(instanceId + INSTANCE_SUFFIX),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /* counts the processes whose instance file changed recently, this one included */
+    private int countLiveInstances() throws IOException {
+        int instances = 1;
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + INSTANCE_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                String id = name.substring(0, name.length() - INSTANCE_SUFFIX.length());
+
+                if (id.equals(instanceId)) {
+                    continue;
+                }
+
+                long counter;
+                try {
+                    counter = Long.parseLong(new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim());
+                } catch (IOException | NumberFormatException e) {
+                    /* deleted or being replaced */
+                    continue;
+                }
+
+                if (isExpired(name, id, counter)) {
+                    LOGGER.info("Instance " + id + " stopped heartbeating");
+                    Files.deleteIfExists(path);
+                    observations.remove(name);
+                } else {
+                    instances++;
+                }
+            }
+        }
+
+        return instances;
+    }
+
+    /* heartbeats the owned leases, stopping the tailers of the lost ones */
+    private void renewLeases() throws IOException {
+        for (Map.Entry<String, Owned> entry : owned.entrySet()) {
+            String filename = entry.getKey();
+            Owned file = entry.getValue();
+            Path path = leasePath(filename);
+            Lease lease = Lease.read(path);
+
+            if (lease == null || !instanceId.equals(lease.getOwner())) {
+                LOGGER.warn("Lost the lease of " + filename + " to " + (lease != null ? lease.getOwner() : "nobody"));
+                file.tailer.stop();
+                owned.remove(filename);
+                continue;
+            }
+
+            if (file.future.isDone()) {
+                LOGGER.warn("Tailer of " + filename + " stopped, releasing it");
+                release(filename);
+                continue;
+            }
+
+            Checkpoint checkpoint = position(filename, file);
+            new Lease(filename, instanceId, ++file.counter, checkpoint.position, checkpoint.identity)
+                    .write(path, instanceId);
+        }
+    }
+
+    private void tryClaim(String filename) throws IOException {
+        Path path = leasePath(filename);
+        Lease lease = Lease.read(path);
+
+        /* a lease of this instance which is not owned was left by a previous run with the same identifier */
+        if (lease != null && !lease.isReleased() && !instanceId.equals(lease.getOwner())
+                && !isExpired(path.toString(), lease.getOwner(), lease.getCounter())) {
+            return;
+        }
+
+        Path claim = directory.resolve(path.getFileName() + CLAIM_SUFFIX);
+        try {
+            Files.createFile(claim);
+        } catch (FileAlreadyExistsException e) {
+            /* another process is claiming the file, or died while claiming it */
+            if (isExpired(claim.toString(), "", Files.getLastModifiedTime(claim).toMillis())) {
+                Files.deleteIfExists(claim);
+            }
+            return;
+        }
+
+        long offset;
+        FileIdentity identity;
+        try {
+            Lease current = Lease.read(path);
+
+            if (!Lease.sameState(lease, current)) {
+                return;
+            }
+
+            offset = current != null ? current.getOffset() : -1;
+            identity = current != null ? current.getIdentity() : null;
+            new Lease(filename, instanceId, 0, offset, identity).write(path, instanceId);
+        } finally {
+            Files.deleteIfExists(claim);
+        }
+
+        LOGGER.info("Claimed " + filename + (lease != null ? " from " + lease.getOwner() : "") + " at offset: " + offset);
+        observations.remove(path.toString());
+
+        if (offset >= 0) {
+            handedOff.put(filename, new Checkpoint(offset, identity));
+        } else {
+            handedOff.remove(filename);
+        }
+        committed.remove(filename);
+
+        LRTailer tailer = tailerFactory.create(filename, StartPosition.checkpoint(this));
+        owned.put(filename, new Owned(tailer, executor.submit(tailer)));
+    }
+
+    /* stops tailing the file, its lease is released once the tailer exits */
+    private void release(String filename) {
+        Owned file = owned.remove(filename);
+        if (file == null) {
+            return;
+        }
+
+        file.tailer.stop();
+        file.releaseStart = System.nanoTime();
+        releasing.put(filename, file);
+    }
+
+    /* releases the leases of the exited tailers, renewing the others */
+    private void completeReleases() throws IOException {
+        for (Map.Entry<String, Owned> entry : releasing.entrySet()) {
+            String filename = entry.getKey();
+            Owned file = entry.getValue();
+
+            if (file.future.isDone() || System.nanoTime() - file.releaseStart >= leaseTimeoutNanos) {
+                completeRelease(filename, file);
+                continue;
+            }
+
+            Path path = leasePath(filename);
+            Lease lease = Lease.read(path);
+
+            if (lease != null && instanceId.equals(lease.getOwner())) {
+                Checkpoint checkpoint = position(filename, file);
+                new Lease(filename, instanceId, ++file.counter, checkpoint.position, checkpoint.identity)
+                        .write(path, instanceId);
+            }
+        }
+    }
+
+    /* releases the lease of the file with the last position of its tailer */
+    private void completeRelease(String filename, Owned file) throws IOException {
+        releasing.remove(filename);
+
+        if (!file.future.isDone()) {
+            LOGGER.warn("Tailer of " + filename + " did not stop in time");
+        } else {
+            try {
+                file.future.get();
+            } catch (ExecutionException e) {
+                LOGGER.warn("Tailer of " + filename + " failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        Path path = leasePath(filename);
+        Lease lease = Lease.read(path);
+
+        if (lease != null && instanceId.equals(lease.getOwner())) {
+            Checkpoint checkpoint = position(filename, file);
+            new Lease(filename, "", file.counter + 1, checkpoint.position, checkpoint.identity).write(path, instanceId);
+
+            LOGGER.info("Released " + filename + " at offset: " + checkpoint.position);
+        }
+    }
+
+    /* the position to hand off, with the identity of the generation it refers to */
+    private Checkpoint position(String filename, Owned file) {
+        Checkpoint checkpoint = committed.get(filename);
+        if (checkpoint != null) {
+            return checkpoint;
+        }
+
+        /* the position read refers to the identity if the identity did not change meanwhile */
+        FileIdentity identity = file.tailer.getFileIdentity();
+        long read = file.tailer.getLastFullLinePosition();
+
+        if (identity != null && identity == file.tailer.getFileIdentity()) {
+            file.lastRead = new Checkpoint(read, identity);
+        }
+        if (file.lastRead != null) {
+            return file.lastRead;
+        }
+
+        checkpoint = handedOff.get(filename);
+        return checkpoint != null ? checkpoint : new Checkpoint(read, null);
+    }
+
+    /* true if the owner and the counter of a lease or an instance did not change for the lease timeout */
+    private boolean isExpired(String key, String owner, long counter) {
+        long now = System.nanoTime();
+        Observation observation = observations.get(key);
+
+        if (observation == null || !observation.owner.equals(owner) || observation.counter != counter) {
+            observations.put(key, new Observation(owner, counter, now));
+            return false;
+        }
+
+        return now - observation.since >= leaseTimeoutNanos;
+    }
+
+    private Path leasePath(String filename) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(filename.getBytes(StandardCharsets.UTF_8));
+            return directory.resolve(String.format("%040x", new BigInteger(1, digest)) + LEASE_SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Owned {
+        private final LRTailer tailer;
+        private final Future<?> future;
+        private long counter = 0;
+
+        /* the last position read by the tailer along with its identity, null if none yet */
+        private Checkpoint lastRead;
+
+        /* when the tailer was stopped in order to release the file */
+        private long releaseStart;
+
+        Owned(LRTailer tailer, Future<?> future) {
+            this.tailer = tailer;
+            this.future = future;
+        }
+    }
+
+    private static class Checkpoint {
+        private final long position;
+
+        /* may be null */
+        private final FileIdentity identity;
+
+        Checkpoint(long position, FileIdentity identity) {
+            this.position = position;
+            this.identity = identity;
+        }
+    }
+
+    private static class Observation {
+        private final String owner;
+        private final long counter;
+        private final long since;
+
+        Observation(String owner, long counter, long since) {
+            this.owner = owner;
+            this.counter = counter;
+            this.since = since;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.keedio.tailer.sharding;
+
+import com.keedio.tailer.LRTailer;
+import com.keedio.tailer.StartPosition;
+
+/**
+ * Builds the tailers of the files a {@link com.keedio.tailer.sharding.ShardCoordinator} acquires.
+ */
+public interface TailerFactory {
+
+    /**
+     * @param filename the absolute path of the file to tail.
+     * @param startPosition the position handed off by the previous owner of the file, to be passed to the tailer.
+     * @return a tailer of the file, not started yet.
+     */
+    LRTailer create(String filename, StartPosition startPosition);
+}
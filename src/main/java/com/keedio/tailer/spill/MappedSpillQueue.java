@@ -0,0 +1,414 @@
+package com.keedio.tailer.spill;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ *     An append-only, persistent queue of byte records, stored in memory-mapped segment files of a local directory.
+ * </p>
+ * <p>
+ *     Each record is stored as a 4 bytes length followed by its payload. The slot following the last record always
+ *     holds a 0 length, and a -1 length marks the end of a segment, so stale data of a recycled segment is never read.
+ *     Records must fit in a segment: see {@link #getMaxRecordSize()}.
+ * </p>
+ * <p>
+ *     The queue has its own read cursor: {@link #peek()} returns the oldest record and {@link #remove()} moves the
+ *     cursor past it. The cursor is persisted to a small memory-mapped file, so records survive a restart of the
+ *     process, and records which have been peeked but not removed are returned again.
+ * </p>
+ * <p>
+ *     Fully read segments are recycled as new segments instead of being deleted. The queue holds at most
+ *     <code>maxSegments</code> segments: when full, {@link #append(byte[])} blocks until the reader frees a segment.
+ * </p>
+ * <p>
+ *     Data is flushed to disk when a segment is full and when the queue is closed: a process crash loses nothing,
+ *     an operating system crash may lose the records of the last segment. The end of a segment is marked before the
+ *     next segment is created, and a segment followed by another one ends at its first 0 length anyway, so a crash
+ *     while switching segments does not block the reader.
+ * </p>
+ */
+public class MappedSpillQueue implements Closeable {
+    private final static Logger LOGGER = LogManager.getLogger(MappedSpillQueue.class);
+
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final String CURSOR_FILE = "cursor";
+
+    /* length marking the end of a segment */
+    private static final int END_OF_SEGMENT = -1;
+
+    private static final int LENGTH_SIZE = 4;
+
+    private final File directory;
+
+    private final int segmentSize;
+
+    private final int maxSegments;
+
+    private final Lock lock = new ReentrantLock();
+
+    /* signalled when a record is appended */
+    private final Condition notEmpty = lock.newCondition();
+
+    /* signalled when a segment is freed */
+    private final Condition notFull = lock.newCondition();
+
+    /* sequence numbers of the segments holding unread records, oldest first */
+    private final Deque<Long> segments = new ArrayDeque<>();
+
+    /* fully read segment files, ready to be recycled */
+    private final Deque<File> freeSegments = new ArrayDeque<>();
+
+    /* the read cursor, persisted as the sequence number of the read segment followed by the read offset */
+    private final MappedByteBuffer cursor;
+
+    private long writeSequence;
+    private MappedByteBuffer writeBuffer;
+    private int writePosition;
+
+    private long readSequence;
+    private MappedByteBuffer readBuffer;
+    private int readPosition;
+
+    /**
+     * Opens the queue stored in the given directory, creating it if needed.
+     *
+     * @param directory the directory holding the segment files.
+     * @param segmentSize the size, in bytes, of each segment.
+     * @param maxSegments the maximum number of segments, bounding the disk space used by the queue.
+     * @throws IOException if an error occurred opening the segments.
+     */
+    public MappedSpillQueue(File directory, int segmentSize, int maxSegments) throws IOException {
+        if (segmentSize < 64 || maxSegments < 2) {
+            throw new IllegalArgumentException("segmentSize must be at least 64 bytes and maxSegments at least 2");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory.getAbsolutePath());
+        }
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.cursor = map(new File(directory, CURSOR_FILE), 2 * 8);
+
+        recover();
+    }
+
+    /**
+     * Appends a record, waiting for the reader to free a segment if the queue is full.
+     *
+     * @param data the record.
+     * @throws InterruptedIOException if the thread was interrupted while waiting, the record is not appended
+     * and the interrupt status of the thread is set.
+     * @throws IOException if an error occurred writing the record.
+     * @throws IllegalArgumentException if the record is longer than {@link #getMaxRecordSize()}.
+     */
+    public void append(byte[] data) throws IOException {
+        if (!offer(data, Long.MAX_VALUE)) {
+            throw new InterruptedIOException("Interrupted while waiting for a free segment in "
+                    + directory.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Appends a record, waiting at most <code>timeout</code> milliseconds for the reader to free a segment
+     * if the queue is full.
+     *
+     * @param data the record.
+     * @param timeout the maximum time to wait, in milliseconds.
+     * @return true if the record was appended, false if the queue was still full after <code>timeout</code> or if
+     * the thread was interrupted while waiting, its interrupt status then being set.
+     * @throws IOException if an error occurred writing the record.
+     * @throws IllegalArgumentException if the record is longer than {@link #getMaxRecordSize()}.
+     */
+    public boolean offer(byte[] data, long timeout) throws IOException {
+        if (data.length > getMaxRecordSize()) {
+            throw new IllegalArgumentException("record of " + data.length + " bytes does not fit in a segment");
+        }
+
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        lock.lock();
+        try {
+            /* room for the record and for the length of the next slot */
+            if (segmentSize - writePosition < 2 * LENGTH_SIZE + data.length) {
+                while (segments.size() >= maxSegments) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = notFull.awaitNanos(nanos);
+                }
+                rollSegment();
+            }
+
+            writeBuffer.position(writePosition + LENGTH_SIZE);
+            writeBuffer.put(data);
+            writeBuffer.putInt(0);
+            writeBuffer.putInt(writePosition, data.length);
+
+            writePosition += LENGTH_SIZE + data.length;
+
+            notEmpty.signalAll();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the oldest record of the queue, without removing it.
+     *
+     * @return the oldest record, or null if the queue is empty.
+     * @throws IOException if an error occurred reading the segments.
+     */
+    public byte[] peek() throws IOException {
+        lock.lock();
+        try {
+            int length = readLength();
+
+            if (length == 0) {
+                return null;
+            }
+
+            byte[] data = new byte[length];
+            readBuffer.position(readPosition + LENGTH_SIZE);
+            readBuffer.get(data);
+
+            return data;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits at most <code>timeout</code> milliseconds for a record to be available, then returns it without
+     * removing it.
+     *
+     * @param timeout the maximum time to wait, in milliseconds.
+     * @return the oldest record, or null if the queue is still empty after <code>timeout</code>.
+     * @throws IOException if an error occurred reading the segments.
+     * @throws InterruptedException if the thread was interrupted while waiting.
+     */
+    public byte[] peek(long timeout) throws IOException, InterruptedException {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        lock.lock();
+        try {
+            byte[] data;
+            while ((data = peek()) == null && nanos > 0) {
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return data;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the read cursor past the oldest record, if any.
+     *
+     * @throws IOException if an error occurred reading the segments.
+     */
+    public void remove() throws IOException {
+        lock.lock();
+        try {
+            int length = readLength();
+
+            if (length == 0) {
+                return;
+            }
+
+            readPosition += LENGTH_SIZE + length;
+            saveCursor();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if all the appended records have been removed.
+     * @throws IOException if an error occurred reading the segments.
+     */
+    public boolean isEmpty() throws IOException {
+        lock.lock();
+        try {
+            return readLength() == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the size, in bytes, of the longest record which fits in a segment.
+     */
+    public int getMaxRecordSize() {
+        return segmentSize - 2 * LENGTH_SIZE;
+    }
+
+    /**
+     * @return the number of segments holding unread records.
+     */
+    public int getSegmentCount() {
+        lock.lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes the written records and the read cursor to disk.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            writeBuffer.force();
+            cursor.force();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Loads the read cursor and looks for the end of the last segment.
+     */
+    private void recover() throws IOException {
+        readSequence = cursor.getLong(0);
+        readPosition = (int) cursor.getLong(8);
+
+        List<Long> existing = new ArrayList<>();
+        for (String name : directory.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SEGMENT_SUFFIX);
+            }
+        })) {
+            existing.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+        }
+        Collections.sort(existing);
+
+        for (Long sequence : existing) {
+            if (sequence < readSequence) {
+                freeSegments.add(segmentFile(sequence));
+            } else {
+                segments.addLast(sequence);
+            }
+        }
+
+        if (segments.isEmpty()) {
+            segments.addLast(readSequence);
+            readPosition = 0;
+            readBuffer = prepareSegment(readSequence);
+        } else {
+            readBuffer = map(segmentFile(readSequence), segmentSize);
+        }
+
+        writeSequence = segments.peekLast();
+        writeBuffer = writeSequence == readSequence ? readBuffer : map(segmentFile(writeSequence), segmentSize);
+        writePosition = writeSequence == readSequence ? readPosition : 0;
+
+        int length;
+        while ((length = writeBuffer.getInt(writePosition)) > 0) {
+            writePosition += LENGTH_SIZE + length;
+        }
+
+        if (length == END_OF_SEGMENT) {
+            /* the process stopped between marking the end of the last segment and creating the next one */
+            writeBuffer.putInt(writePosition, 0);
+        }
+
+        LOGGER.debug("Opened spill queue " + directory.getAbsolutePath() + " with " + segments.size() + " segments");
+    }
+
+    /* marks the end of the current segment, then creates the next one */
+    private void rollSegment() throws IOException {
+        writeBuffer.putInt(writePosition, END_OF_SEGMENT);
+        writeBuffer.force();
+
+        MappedByteBuffer next = prepareSegment(writeSequence + 1);
+
+        writeSequence++;
+        writeBuffer = next;
+        writePosition = 0;
+        segments.addLast(writeSequence);
+    }
+
+    /*
+     * returns the length of the record at the read cursor, 0 if there is none, moving the reader to the next segments
+     * first if the current one is exhausted: a segment followed by another one may lack its end mark after a crash
+     */
+    private int readLength() throws IOException {
+        int length = readBuffer.getInt(readPosition);
+
+        while (length == END_OF_SEGMENT || (length == 0 && readSequence != writeSequence)) {
+            nextReadSegment();
+            length = readBuffer.getInt(readPosition);
+        }
+        return length;
+    }
+
+    /* moves the reader to the next segment, recycling the current one */
+    private void nextReadSegment() throws IOException {
+        freeSegments.addLast(segmentFile(segments.removeFirst()));
+
+        readSequence++;
+        readPosition = 0;
+        readBuffer = readSequence == writeSequence ? writeBuffer : map(segmentFile(readSequence), segmentSize);
+        saveCursor();
+
+        notFull.signalAll();
+    }
+
+    /* maps a new segment, reusing a free segment file if possible */
+    private MappedByteBuffer prepareSegment(long sequence) throws IOException {
+        File file = segmentFile(sequence);
+        File free = freeSegments.pollFirst();
+
+        if (free != null && !free.renameTo(file)) {
+            throw new IOException("Could not recycle " + free.getAbsolutePath() + " as " + file.getAbsolutePath());
+        }
+
+        MappedByteBuffer buffer = map(file, segmentSize);
+        buffer.putInt(0, 0);
+
+        return buffer;
+    }
+
+    private void saveCursor() {
+        cursor.putLong(0, readSequence);
+        cursor.putLong(8, readPosition);
+    }
+
+    private File segmentFile(long sequence) {
+        return new File(directory, String.format("%020d", sequence) + SEGMENT_SUFFIX);
+    }
+
+    private static MappedByteBuffer map(File file, int size) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.keedio.tailer.spill;
+
+import com.keedio.tailer.LRTailer;
+import com.keedio.tailer.Record;
+import com.keedio.tailer.checkpoint.Acknowledgement;
+import com.keedio.tailer.exception.TailerException;
+import com.keedio.tailer.listener.AcknowledgingListener;
+import com.keedio.tailer.listener.FileEventListener;
+import com.keedio.tailer.listener.RecordListener;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ *     Decouples a {@link com.keedio.tailer.LRTailer} from a slow or unavailable listener by spilling valid lines
+ *     to a {@link com.keedio.tailer.spill.MappedSpillQueue}. The tailer keeps draining the tailed file at disk speed
+ *     while the downstream listener catches up later.
+ * </p>
+ * <p>
+ *     Lines are acknowledged to the tailer as soon as they are spilled, so the tailer checkpoint (see
+ *     {@link com.keedio.tailer.checkpoint.AckTracker}) tracks what has been spilled, while the queue read cursor
+ *     tracks what has been delivered. A line whose spilling is interrupted while the queue is full is not
+ *     acknowledged: the interrupt status of the thread is restored, which stops the tailer.
+ * </p>
+ * <p>
+ *     Lines are delivered to the downstream listener by {@link #run()}, which must be submitted to an executor.
+ *     A line is removed from the queue only once the downstream listener has handled it without throwing:
+ *     failed lines are retried after <code>retryTime</code> milliseconds.
+ * </p>
+ * <p>
+ *     Lines too long to fit in a segment of the queue are dropped with a warning, and acknowledged so that the tailer
+ *     moves past them: they are counted by {@link #getOversizedCount()}.
+ * </p>
+ * <p>
+ *     Validation, rotation and error notifications are delegated to the downstream listener.
+ * </p>
+ */
+public class SpillingListener implements AcknowledgingListener, Runnable {
+    private final static Logger LOGGER = LogManager.getLogger(SpillingListener.class);
+
+    private static final long POLL_TIMEOUT = 100;
+
+    private final FileEventListener downstream;
+
+    private final MappedSpillQueue queue;
+
+    /* time to wait before delivering again a line the downstream listener failed to handle */
+    private final long retryTime;
+
+    /* number of lines dropped because they do not fit in a segment */
+    private final AtomicLong oversized = new AtomicLong();
+
+    private volatile boolean run = true;
+
+    /**
+     * @param downstream the listener lines are delivered to.
+     * @param queue the queue lines are spilled to.
+     * @param retryTime the time, in milliseconds, to wait before retrying a failed delivery.
+     */
+    public SpillingListener(FileEventListener downstream, MappedSpillQueue queue, long retryTime) {
+        this.downstream = downstream;
+        this.queue = queue;
+        this.retryTime = retryTime;
+    }
+
+    /**
+     * Stops delivering lines to the downstream listener.
+     */
+    public void stop() {
+        run = false;
+    }
+
+    /**
+     * Delivers spilled lines to the downstream listener until stopped or interrupted.
+     */
+    @Override
+    public void run() {
+        while (run) {
+            try {
+                byte[] data = queue.peek(POLL_TIMEOUT);
+
+                if (data == null) {
+                    continue;
+                }
+
+                Record record = decode(data);
+
+                try {
+                    if (downstream instanceof RecordListener) {
+                        ((RecordListener) downstream).handle(record);
+                    } else {
+                        downstream.handle(record.getFilename(), record.getLine());
+                    }
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Delivery of spilled line failed, retrying in " + retryTime + " ms", e);
+                    Thread.sleep(retryTime);
+                    continue;
+                }
+
+                queue.remove();
+            } catch (IOException e) {
+                LOGGER.error("Could not read spilled lines, retrying in " + retryTime + " ms", e);
+
+                if (!sleep(retryTime)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void handle(Record record, Acknowledgement ack) {
+        if (spill(record)) {
+            ack.ack();
+        }
+    }
+
+    @Override
+    public void handle(String filename, String line) {
+        spill(new Record(filename, line, -1));
+    }
+
+    /**
+     * @return the number of lines dropped because they were too long to fit in a segment of the queue.
+     */
+    public long getOversizedCount() {
+        return oversized.get();
+    }
+
+    /* returns false, the interrupt status of the thread being set, if interrupted while waiting for room */
+    private boolean spill(Record record) {
+        byte[] data = encode(record);
+
+        if (data.length > queue.getMaxRecordSize()) {
+            oversized.incrementAndGet();
+            LOGGER.warn("Dropping line of " + data.length + " bytes read from " + record.getFilename()
+                    + " at position " + record.getPosition() + ": spill segments hold at most "
+                    + queue.getMaxRecordSize() + " bytes");
+            return true;
+        }
+
+        try {
+            queue.append(data);
+            return true;
+        } catch (InterruptedIOException e) {
+            /* i.e. the executor is shut down: the tailer stops without taking the line */
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (IOException e) {
+            throw new TailerException("Could not spill line read from " + record.getFilename(), e);
+        }
+    }
+
+    /* returns false, the interrupt status of the thread being set, if interrupted */
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public void init(LRTailer lrTailer) {
+        downstream.init(lrTailer);
+    }
+
+    @Override
+    public String rotated(long lastPosition, long currPosition) {
+        return downstream.rotated(lastPosition, currPosition);
+    }
+
+    @Override
+    public void notExists() {
+        downstream.notExists();
+    }
+
+    @Override
+    public void handleException(Exception e) {
+        downstream.handleException(e);
+    }
+
+    @Override
+    public boolean isValid(String partialLine) {
+        return downstream.isValid(partialLine);
+    }
+
+    /* filename length, filename, position, line */
+    static byte[] encode(Record record) {
+        byte[] filename = record.getFilename().getBytes(StandardCharsets.UTF_8);
+        byte[] line = record.getLine().getBytes(StandardCharsets.UTF_8);
+
+        return ByteBuffer.allocate(4 + filename.length + 8 + line.length)
+                .putInt(filename.length)
+                .put(filename)
+                .putLong(record.getPosition())
+                .put(line)
+                .array();
+    }
+
+    static Record decode(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+
+        int filenameLength = buffer.getInt();
+        String filename = new String(data, 4, filenameLength, StandardCharsets.UTF_8);
+        buffer.position(4 + filenameLength);
+
+        long position = buffer.getLong();
+        String line = new String(data, buffer.position(), buffer.remaining(), StandardCharsets.UTF_8);
+
+        return new Record(filename, line, position);
+    }
+}
@@ -0,0 +1,15 @@
+package com.keedio.tailer.supervisor;
+
+import java.io.IOException;
+
+/**
+ * Considers I/O errors as transient (including missing files, which are temporarily missing during rotation,
+ * and access denied errors), and any other error as fatal.
+ */
+public class DefaultErrorClassifier implements ErrorClassifier {
+
+    @Override
+    public ErrorType classify(Throwable cause) {
+        return cause instanceof IOException ? ErrorType.TRANSIENT : ErrorType.FATAL;
+    }
+}
@@ -0,0 +1,23 @@
+package com.keedio.tailer.supervisor;
+
+/**
+ * Decides whether a tailer failure is worth a restart.
+ */
+public interface ErrorClassifier {
+
+    /**
+     * Error classes.
+     */
+    enum ErrorType {
+        /* the error may go away by itself, i.e. an I/O error or a permission flap during rotation */
+        TRANSIENT,
+        /* restarting the tailer would fail again */
+        FATAL
+    }
+
+    /**
+     * @param cause the exception the tailer failed with (the cause of the thrown {@link com.keedio.tailer.exception.TailerException}).
+     * @return the class of the error.
+     */
+    ErrorType classify(Throwable cause);
+}
@@ -0,0 +1,14 @@
+package com.keedio.tailer.supervisor;
+
+/**
+ * Notified by a {@link com.keedio.tailer.supervisor.TailerSupervisor} when the health of its tailer changes.
+ */
+public interface HealthListener {
+
+    /**
+     * @param supervisor the supervisor of the tailer.
+     * @param health the new health state.
+     * @param cause the error which caused the change, null if the change is not caused by an error.
+     */
+    void healthChanged(TailerSupervisor supervisor, TailerHealth health, Throwable cause);
+}
@@ -0,0 +1,17 @@
+package com.keedio.tailer.supervisor;
+
+/**
+ * Health states of a tailer run by a {@link com.keedio.tailer.supervisor.TailerSupervisor}.
+ */
+public enum TailerHealth {
+    /* the tailer has not been started yet */
+    STARTING,
+    /* the tailer is running */
+    RUNNING,
+    /* the tailer failed with a transient error and will be restarted */
+    RETRYING,
+    /* the tailer failed with a fatal error, or too many times, and will not be restarted */
+    FAILED,
+    /* the tailer has been stopped */
+    STOPPED
+}
@@ -0,0 +1,231 @@
+package com.keedio.tailer.supervisor;
+
+import com.keedio.tailer.LRTailer;
+import com.keedio.tailer.exception.TailerException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *     Runs a {@link com.keedio.tailer.LRTailer}, restarting it when it fails with a transient error instead of
+ *     letting the {@link com.keedio.tailer.exception.TailerException} end tailing for good.
+ * </p>
+ * <p>
+ *     Errors are classified by an {@link com.keedio.tailer.supervisor.ErrorClassifier}. Transient errors are
+ *     retried after an exponential backoff with jitter: the n-th consecutive restart waits a random time between
+ *     half and all of <code>min(maxBackoff, initialBackoff * 2^n)</code>. The backoff is reset once the tailer
+ *     has been running for longer than <code>maxBackoff</code>.
+ * </p>
+ * <p>
+ *     The restarted tailer resumes from the last fully read line. The first run starts at the tailer
+ *     {@link com.keedio.tailer.StartPosition}, use {@link com.keedio.tailer.StartPosition#checkpoint} to start
+ *     from the last persisted position.
+ * </p>
+ * <p>
+ *     The health state and the number of restarts are available through getters and published to an
+ *     optional {@link com.keedio.tailer.supervisor.HealthListener}.
+ * </p>
+ */
+public class TailerSupervisor implements Runnable {
+    private final static Logger LOGGER = LogManager.getLogger(TailerSupervisor.class);
+
+    private static final long DEFAULT_INITIAL_BACKOFF = 1000;
+    private static final long DEFAULT_MAX_BACKOFF = 60000;
+
+    private final LRTailer tailer;
+
+    /* backoff, in milliseconds, before the first restart */
+    private final long initialBackoff;
+
+    /* maximum backoff, in milliseconds, between restarts */
+    private final long maxBackoff;
+
+    /* maximum number of restarts, a negative value means unlimited */
+    private final int maxRestarts;
+
+    private ErrorClassifier errorClassifier = new DefaultErrorClassifier();
+
+    private HealthListener healthListener;
+
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private volatile TailerHealth health = TailerHealth.STARTING;
+
+    private volatile int restartCount = 0;
+
+    private volatile Throwable lastError;
+
+    /**
+     * Builds a supervisor restarting the tailer an unlimited number of times,
+     * with a backoff between 1 second and 1 minute.
+     *
+     * @param tailer the supervised tailer.
+     */
+    public TailerSupervisor(LRTailer tailer) {
+        this(tailer, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF, -1);
+    }
+
+    /**
+     * @param tailer the supervised tailer.
+     * @param initialBackoff the backoff, in milliseconds, before the first restart.
+     * @param maxBackoff the maximum backoff, in milliseconds, between restarts.
+     * @param maxRestarts the maximum number of restarts, a negative value means unlimited.
+     */
+    public TailerSupervisor(LRTailer tailer, long initialBackoff, long maxBackoff, int maxRestarts) {
+        if (tailer == null) {
+            throw new NullPointerException("tailer must not be null");
+        }
+        if (initialBackoff <= 0 || maxBackoff < initialBackoff) {
+            throw new IllegalArgumentException("invalid backoff: " + initialBackoff + ", " + maxBackoff);
+        }
+        this.tailer = tailer;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.maxRestarts = maxRestarts;
+    }
+
+    public void setErrorClassifier(ErrorClassifier errorClassifier) {
+        this.errorClassifier = errorClassifier;
+    }
+
+    public void setHealthListener(HealthListener healthListener) {
+        this.healthListener = healthListener;
+    }
+
+    /**
+     * Stops the tailer, and any pending restart.
+     */
+    public void stop() {
+        stopped.countDown();
+        tailer.stop();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws TailerException if the tailer failed with a fatal error, or was restarted too many times.
+     */
+    @Override
+    public void run() {
+        int attempt = 0;
+
+        while (stopped.getCount() > 0) {
+            long startedAt = System.nanoTime();
+
+            try {
+                setHealth(TailerHealth.RUNNING, null);
+                tailer.run();
+
+                setHealth(TailerHealth.STOPPED, null);
+                return;
+            } catch (TailerException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                lastError = cause;
+
+                if (errorClassifier.classify(cause) == ErrorClassifier.ErrorType.FATAL) {
+                    LOGGER.error("Fatal error tailing " + tailer.getTailedFile().getAbsolutePath(), cause);
+                    setHealth(TailerHealth.FAILED, cause);
+                    throw e;
+                }
+
+                if (maxRestarts >= 0 && restartCount >= maxRestarts) {
+                    LOGGER.error("Giving up tailing " + tailer.getTailedFile().getAbsolutePath()
+                            + " after " + restartCount + " restarts", cause);
+                    setHealth(TailerHealth.FAILED, cause);
+                    throw e;
+                }
+
+                /* a tailer which has been running for a while is not failing repeatedly */
+                if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) > maxBackoff) {
+                    attempt = 0;
+                }
+
+                long backoff = backoff(attempt++);
+
+                LOGGER.warn("Transient error tailing " + tailer.getTailedFile().getAbsolutePath()
+                        + ", restarting in " + backoff + " ms", cause);
+                setHealth(TailerHealth.RETRYING, cause);
+
+                if (awaitStop(backoff)) {
+                    break;
+                }
+
+                restartCount++;
+            }
+        }
+
+        setHealth(TailerHealth.STOPPED, null);
+    }
+
+    /**
+     * @return the current health state of the tailer.
+     */
+    public TailerHealth getHealth() {
+        return health;
+    }
+
+    /**
+     * @return the number of times the tailer has been restarted.
+     */
+    public int getRestartCount() {
+        return restartCount;
+    }
+
+    /**
+     * @return the last error the tailer failed with, null if it never failed.
+     */
+    public Throwable getLastError() {
+        return lastError;
+    }
+
+    /**
+     * @return the supervised tailer.
+     */
+    public LRTailer getTailer() {
+        return tailer;
+    }
+
+    /**
+     * Computes a jittered exponential backoff.
+     *
+     * @param attempt the number of consecutive restarts.
+     * @return a random backoff between half and all of <code>min(maxBackoff, initialBackoff * 2^attempt)</code>.
+     */
+    long backoff(int attempt) {
+        long ceiling = maxBackoff;
+
+        if (attempt < 62 && initialBackoff <= maxBackoff >> attempt) {
+            ceiling = initialBackoff << attempt;
+        }
+
+        long half = ceiling / 2;
+
+        return half + ThreadLocalRandom.current().nextLong(ceiling - half + 1);
+    }
+
+    /* waits for the given time, returns true if the supervisor has been stopped meanwhile */
+    private boolean awaitStop(long millis) {
+        try {
+            return stopped.await(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+    }
+
+    private void setHealth(TailerHealth newHealth, Throwable cause) {
+        if (health == newHealth) {
+            return;
+        }
+
+        health = newHealth;
+
+        if (healthListener != null) {
+            healthListener.healthChanged(this, newHealth, cause);
+        }
+    }
+}
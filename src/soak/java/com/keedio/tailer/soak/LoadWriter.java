@@ -0,0 +1,275 @@
+package com.keedio.tailer.soak;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>
+ *     Appends numbered records to a file at a given rate, and rotates the file when it reaches the rotation size.
+ * </p>
+ * <p>
+ *     A record is <code>sequence timestamp crc payload</code>, ended by <code>|</code>. Multi-line records continue
+ *     with stack trace like lines, only the last one ends with <code>|</code>. The CRC-32 covers the payload and the
+ *     continuation lines as a tailer delivers them, i.e. without the line delimiters, so that a
+ *     {@link com.keedio.tailer.soak.VerifyingListener} can check each record.
+ * </p>
+ * <p>
+ *     Rotations are run by the writer thread between two records, as a rolling appender would: no record is lost
+ *     by the rotation itself, so every record written must be delivered exactly once.
+ * </p>
+ */
+public class LoadWriter implements Runnable {
+
+    /* records are written in batches, at this period when throttled */
+    private static final long TICK_MILLIS = 10;
+
+    private static final int LETTERS_SIZE = 64 * 1024;
+
+    private final SoakConfig config;
+
+    private final File file;
+
+    private final Random random;
+
+    /* random letters, payloads are taken from it */
+    private final char[] letters = new char[LETTERS_SIZE];
+
+    private final CRC32 crc = new CRC32();
+
+    private volatile boolean run = true;
+
+    /* the number of records written, also the sequence of the next record */
+    private volatile long records = 0;
+
+    private volatile long bytes = 0;
+
+    private volatile long rotations = 0;
+
+    private FileOutputStream fileOut;
+
+    private OutputStream out;
+
+    /* bytes written to the current generation */
+    private long generationBytes = 0;
+
+    /**
+     * @param config the parameters of the run.
+     * @param file the file to write to.
+     * @param seed the seed of the written content.
+     */
+    public LoadWriter(SoakConfig config, File file, long seed) {
+        this.config = config;
+        this.file = file;
+        this.random = new Random(seed);
+
+        for (int i = 0; i < LETTERS_SIZE; i++) {
+            letters[i] = (char) ('a' + random.nextInt(26));
+        }
+    }
+
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+
+        try {
+            open();
+
+            while (run) {
+                long due = config.rate == 0 ? records + 1000
+                        : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) * config.rate / 1000;
+
+                while (records < due && run) {
+                    write();
+
+                    if (config.rotation != SoakConfig.Rotation.NONE && generationBytes >= config.rotateSize) {
+                        rotate();
+                    }
+                }
+                out.flush();
+
+                if (config.rate != 0) {
+                    Thread.sleep(TICK_MILLIS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write " + file, e);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Stops writing. The last batch is flushed.
+     */
+    public void stop() {
+        run = false;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the number of records written.
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return the number of bytes written.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the number of rotations.
+     */
+    public long getRotations() {
+        return rotations;
+    }
+
+    private void write() throws IOException {
+        List<String> lines = new ArrayList<>(1);
+        lines.add(payload(config.nextLineSize(random)));
+
+        if (random.nextDouble() < config.stackTraceRatio) {
+            for (int i = 0; i < config.stackTraceDepth; i++) {
+                lines.add("\tat com.keedio.soak.Frame" + i + ".call(Frame.java:" + (i + 1) + ")");
+            }
+        }
+
+        int last = lines.size() - 1;
+        lines.set(last, lines.get(last) + "|");
+
+        crc.reset();
+        for (String line : lines) {
+            crc.update(line.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        StringBuilder record = new StringBuilder();
+        record.append(records).append(' ').append(System.currentTimeMillis()).append(' ')
+                .append(Long.toHexString(crc.getValue())).append(' ');
+        for (String line : lines) {
+            record.append(line).append('\n');
+        }
+
+        byte[] data = record.toString().getBytes(StandardCharsets.US_ASCII);
+        out.write(data);
+
+        generationBytes += data.length;
+        bytes += data.length;
+        records++;
+    }
+
+    private String payload(int size) {
+        int length = Math.min(size, LETTERS_SIZE);
+        return new String(letters, random.nextInt(LETTERS_SIZE - length + 1), length);
+    }
+
+    private void rotate() throws IOException {
+        out.flush();
+
+        if (config.rotation == SoakConfig.Rotation.COPY_TRUNCATE) {
+            shift();
+            Files.copy(file.toPath(), generation(1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+            /* the file is open for appending: next records are written at the beginning */
+            fileOut.getChannel().truncate(0);
+        } else {
+            close();
+            shift();
+            Files.move(file.toPath(), generation(1).toPath());
+            open();
+
+            if (config.rotation == SoakConfig.Rotation.RENAME_CREATE_COMPRESS) {
+                compress(generation(1));
+            }
+        }
+
+        generationBytes = 0;
+        rotations++;
+    }
+
+    /* app.log.n becomes app.log.n+1, the oldest generation is removed */
+    private void shift() throws IOException {
+        Files.deleteIfExists(generation(config.keep).toPath());
+        Files.deleteIfExists(compressed(generation(config.keep)).toPath());
+
+        for (int i = config.keep - 1; i >= 1; i--) {
+            moveIfExists(generation(i), generation(i + 1));
+            moveIfExists(compressed(generation(i)), compressed(generation(i + 1)));
+        }
+    }
+
+    private static void moveIfExists(File source, File target) throws IOException {
+        if (source.exists()) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Compresses a rotated file like gzip, keeping its modification time. The file is compressed under a
+     * temporary name not starting with the name of the tailed file, then renamed, so that the tailer never
+     * sees a partially compressed generation.
+     */
+    private void compress(File rotated) throws IOException {
+        File temporary = new File(rotated.getParentFile(), "." + rotated.getName() + ".gz.part");
+
+        try (InputStream in = new FileInputStream(rotated);
+             OutputStream gzipOut = new GZIPOutputStream(new FileOutputStream(temporary), 64 * 1024)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                gzipOut.write(buffer, 0, read);
+            }
+        }
+
+        temporary.setLastModified(rotated.lastModified());
+        Files.move(temporary.toPath(), compressed(rotated).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.delete(rotated.toPath());
+    }
+
+    private File generation(int index) {
+        return new File(file.getPath() + "." + index);
+    }
+
+    private static File compressed(File generation) {
+        return new File(generation.getPath() + ".gz");
+    }
+
+    private void open() throws IOException {
+        fileOut = new FileOutputStream(file, true);
+        out = new BufferedOutputStream(fileOut, 64 * 1024);
+    }
+
+    private void close() {
+        if (out == null) {
+            return;
+        }
+
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not close " + file, e);
+        }
+        out = null;
+    }
+}
@@ -0,0 +1,173 @@
+package com.keedio.tailer.soak;
+
+import java.util.Random;
+
+/**
+ * <p>
+ *     The parameters of a soak run, parsed from <code>key=value</code> arguments. Every parameter has a default,
+ *     see {@link #usage()}.
+ * </p>
+ */
+public class SoakConfig {
+
+    /**
+     * Distributions of the size of the lines written.
+     */
+    public enum SizeDistribution {
+        /* every line has the mean size */
+        FIXED,
+        /* uniform between 1 and twice the mean size */
+        UNIFORM,
+        /* exponential around the mean size, i.e. mostly short lines and a few long ones */
+        EXPONENTIAL
+    }
+
+    /**
+     * Rotation styles, as logrotate would rotate the files.
+     */
+    public enum Rotation {
+        /* no rotation */
+        NONE,
+        /* the file is renamed and a new file is created */
+        RENAME_CREATE,
+        /* the file is renamed, compressed right away, and a new file is created */
+        RENAME_CREATE_COMPRESS,
+        /* the file is copied and truncated in place */
+        COPY_TRUNCATE
+    }
+
+    /* directory of the written files, a temporary directory if null */
+    String directory = null;
+
+    int files = 4;
+
+    /* run time in seconds, without the final drain */
+    long duration = 60;
+
+    /* records per second per file, 0 to write as fast as possible */
+    int rate = 1000;
+
+    int lineSize = 120;
+
+    SizeDistribution lineSizeDistribution = SizeDistribution.EXPONENTIAL;
+
+    /* the lines are cut at this size */
+    int maxLineSize = 8192;
+
+    /* fraction of the records spanning several lines, like stack traces */
+    double stackTraceRatio = 0.01;
+
+    /* number of continuation lines of a multi-line record */
+    int stackTraceDepth = 20;
+
+    Rotation rotation = Rotation.RENAME_CREATE;
+
+    /* size in bytes a file is rotated at */
+    long rotateSize = 16 * 1024 * 1024;
+
+    /* rotated generations kept */
+    int keep = 5;
+
+    long sleepTime = 100;
+
+    /* interval of the shared attribute poller in milliseconds, 0 to let each tailer stat its file */
+    long pollerInterval = 0;
+
+    /* report period in seconds */
+    long reportInterval = 10;
+
+    /* time given to the tailers to catch up once writers are stopped, in seconds */
+    long drainTimeout = 60;
+
+    long seed = new Random().nextLong();
+
+    /**
+     * @param args <code>key=value</code> arguments.
+     * @return the configuration.
+     * @throws IllegalArgumentException if an argument is unknown or malformed.
+     */
+    public static SoakConfig parse(String[] args) {
+        SoakConfig config = new SoakConfig();
+
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected key=value: " + arg);
+            }
+            config.set(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return config;
+    }
+
+    private void set(String key, String value) {
+        switch (key) {
+            case "directory": directory = value; break;
+            case "files": files = Integer.parseInt(value); break;
+            case "duration": duration = Long.parseLong(value); break;
+            case "rate": rate = Integer.parseInt(value); break;
+            case "lineSize": lineSize = Integer.parseInt(value); break;
+            case "lineSizeDistribution": lineSizeDistribution = SizeDistribution.valueOf(value); break;
+            case "maxLineSize": maxLineSize = Integer.parseInt(value); break;
+            case "stackTraceRatio": stackTraceRatio = Double.parseDouble(value); break;
+            case "stackTraceDepth": stackTraceDepth = Integer.parseInt(value); break;
+            case "rotation": rotation = Rotation.valueOf(value); break;
+            case "rotateSize": rotateSize = Long.parseLong(value); break;
+            case "keep": keep = Integer.parseInt(value); break;
+            case "sleepTime": sleepTime = Long.parseLong(value); break;
+            case "pollerInterval": pollerInterval = Long.parseLong(value); break;
+            case "reportInterval": reportInterval = Long.parseLong(value); break;
+            case "drainTimeout": drainTimeout = Long.parseLong(value); break;
+            case "seed": seed = Long.parseLong(value); break;
+            default: throw new IllegalArgumentException("Unknown parameter: " + key);
+        }
+    }
+
+    /**
+     * @return the size of the payload of the next line.
+     */
+    int nextLineSize(Random random) {
+        int size;
+
+        switch (lineSizeDistribution) {
+            case UNIFORM:
+                size = 1 + random.nextInt(2 * lineSize);
+                break;
+            case EXPONENTIAL:
+                size = (int) Math.ceil(-lineSize * Math.log(1 - random.nextDouble()));
+                break;
+            default:
+                size = lineSize;
+        }
+        return Math.max(1, Math.min(size, maxLineSize));
+    }
+
+    static String usage() {
+        return "SoakRunner [key=value...], defaults:\n"
+                + "  directory=<temporary>   where the files are written\n"
+                + "  files=4                 number of files, one writer and one tailer each\n"
+                + "  duration=60             seconds of writing\n"
+                + "  rate=1000               records per second per file, 0 for as fast as possible\n"
+                + "  lineSize=120            mean line size in bytes\n"
+                + "  lineSizeDistribution=EXPONENTIAL  FIXED, UNIFORM or EXPONENTIAL\n"
+                + "  maxLineSize=8192        lines are cut at this size\n"
+                + "  stackTraceRatio=0.01    fraction of multi-line records\n"
+                + "  stackTraceDepth=20      continuation lines of a multi-line record\n"
+                + "  rotation=RENAME_CREATE  NONE, RENAME_CREATE, RENAME_CREATE_COMPRESS or COPY_TRUNCATE\n"
+                + "  rotateSize=16777216     size in bytes a file is rotated at\n"
+                + "  keep=5                  rotated generations kept\n"
+                + "  sleepTime=100           tailer sleep time in milliseconds\n"
+                + "  pollerInterval=0        shared attribute poller interval in milliseconds, 0 for none\n"
+                + "  reportInterval=10       seconds between two reports\n"
+                + "  drainTimeout=60         seconds given to the tailers to catch up at the end\n"
+                + "  seed=<random>           seed of the written content";
+    }
+
+    @Override
+    public String toString() {
+        return "files=" + files + " duration=" + duration + " rate=" + rate + " lineSize=" + lineSize
+                + " lineSizeDistribution=" + lineSizeDistribution + " maxLineSize=" + maxLineSize
+                + " stackTraceRatio=" + stackTraceRatio + " stackTraceDepth=" + stackTraceDepth
+                + " rotation=" + rotation + " rotateSize=" + rotateSize + " keep=" + keep
+                + " sleepTime=" + sleepTime + " pollerInterval=" + pollerInterval + " seed=" + seed;
+    }
+}
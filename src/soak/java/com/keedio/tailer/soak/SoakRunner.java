@@ -0,0 +1,268 @@
+package com.keedio.tailer.soak;
+
+import com.keedio.tailer.LRTailer;
+import com.keedio.tailer.io.AttributePoller;
+import com.keedio.tailer.io.LocalFileSource;
+import com.keedio.tailer.latency.LatencyHistogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ *     Soak and throughput run of the tailer: {@link com.keedio.tailer.soak.LoadWriter}s append records to local
+ *     files and rotate them, while one {@link com.keedio.tailer.LRTailer} per file delivers the records to a
+ *     {@link com.keedio.tailer.soak.VerifyingListener}.
+ * </p>
+ * <p>
+ *     Every report interval, the records and megabytes written and delivered per second, the lag and the latency
+ *     percentiles of the interval are printed. Once the writers are stopped, the tailers are given some time to
+ *     catch up, then the totals are printed and every written record is checked to have been delivered exactly once
+ *     and in order. The process exits with status 1 if not.
+ * </p>
+ * <p>
+ *     Usage: <code>mvn -Psoak test-compile exec:java -Dexec.args="duration=3600 files=8 rate=5000"</code>, see
+ *     {@link com.keedio.tailer.soak.SoakConfig#usage()} for the parameters.
+ * </p>
+ */
+public class SoakRunner {
+
+    private final SoakConfig config;
+
+    private final List<LoadWriter> writers = new ArrayList<>();
+
+    private final List<LRTailer> tailers = new ArrayList<>();
+
+    private final List<VerifyingListener> listeners = new ArrayList<>();
+
+    private final LatencyHistogram totalLatency = new LatencyHistogram();
+
+    private final AtomicReference<LatencyHistogram> intervalLatency =
+            new AtomicReference<>(new LatencyHistogram());
+
+    private AttributePoller attributePoller;
+
+    /* totals at the previous report */
+    private long lastTime;
+    private long lastWrittenRecords;
+    private long lastWrittenBytes;
+    private long lastDeliveredRecords;
+    private long lastDeliveredBytes;
+
+    public SoakRunner(SoakConfig config) {
+        this.config = config;
+    }
+
+    public static void main(String[] args) throws Exception {
+        SoakConfig config;
+        try {
+            config = SoakConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(SoakConfig.usage());
+            System.exit(2);
+            return;
+        }
+
+        boolean passed = new SoakRunner(config).run();
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Runs the writers and the tailers, then checks the delivered records.
+     *
+     * @return true if every written record has been delivered exactly once and in order.
+     * @throws Exception if the run failed.
+     */
+    public boolean run() throws Exception {
+        boolean temporary = config.directory == null;
+        File directory = temporary ? Files.createTempDirectory("soak").toFile() : new File(config.directory);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+
+        System.out.println("Soak run in " + directory + ": " + config);
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            start(directory, executor);
+
+            long end = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(config.duration);
+            while (System.currentTimeMillis() < end) {
+                Thread.sleep(Math.min(TimeUnit.SECONDS.toMillis(config.reportInterval),
+                        Math.max(1, end - System.currentTimeMillis())));
+                report("write");
+            }
+
+            for (LoadWriter writer : writers) {
+                writer.stop();
+            }
+
+            long drainEnd = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(config.drainTimeout);
+            while (!caughtUp() && System.currentTimeMillis() < drainEnd) {
+                Thread.sleep(100);
+            }
+            report("drain");
+
+            return check();
+        } finally {
+            for (LRTailer tailer : tailers) {
+                tailer.stop();
+            }
+            if (attributePoller != null) {
+                attributePoller.stop();
+            }
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+
+            if (temporary) {
+                delete(directory);
+            }
+        }
+    }
+
+    private void start(File directory, ExecutorService executor) throws IOException {
+        if (config.pollerInterval > 0) {
+            attributePoller = new AttributePoller(new LocalFileSource(), config.pollerInterval);
+            executor.submit(attributePoller);
+        }
+
+        for (int i = 0; i < config.files; i++) {
+            File file = new File(directory, "soak-" + i + ".log");
+            file.createNewFile();
+
+            VerifyingListener listener = new VerifyingListener(file.getAbsolutePath() + ".1", totalLatency,
+                    intervalLatency);
+            LRTailer tailer = new LRTailer(listener, config.sleepTime, file.getAbsolutePath());
+            if (attributePoller != null) {
+                tailer.setAttributePoller(attributePoller);
+            }
+
+            listeners.add(listener);
+            tailers.add(tailer);
+            writers.add(new LoadWriter(config, file, config.seed + i));
+        }
+
+        for (LRTailer tailer : tailers) {
+            executor.submit(tailer);
+        }
+
+        lastTime = System.currentTimeMillis();
+        for (LoadWriter writer : writers) {
+            final Future<?> running = executor.submit(writer);
+            watch(executor, running);
+        }
+    }
+
+    /* reports a writer failure as soon as it happens */
+    private static void watch(ExecutorService executor, final Future<?> running) {
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    running.get();
+                } catch (Exception e) {
+                    System.err.println("Writer failure: " + e);
+                }
+            }
+        });
+    }
+
+    private boolean caughtUp() {
+        for (int i = 0; i < writers.size(); i++) {
+            if (listeners.get(i).getExpected() < writers.get(i).getRecords()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void report(String phase) {
+        long now = System.currentTimeMillis();
+        double seconds = Math.max(1, now - lastTime) / 1000.0;
+
+        long writtenRecords = 0;
+        long writtenBytes = 0;
+        long deliveredRecords = 0;
+        long deliveredBytes = 0;
+        long lagBytes = 0;
+        long rotations = 0;
+
+        for (int i = 0; i < writers.size(); i++) {
+            writtenRecords += writers.get(i).getRecords();
+            writtenBytes += writers.get(i).getBytes();
+            rotations += writers.get(i).getRotations();
+            deliveredRecords += listeners.get(i).getDelivered();
+            deliveredBytes += listeners.get(i).getBytes();
+            lagBytes += tailers.get(i).getLag();
+        }
+
+        LatencyHistogram latency = intervalLatency.getAndSet(new LatencyHistogram());
+
+        System.out.println(String.format("%s: written %.0f records/s %.2f MB/s, delivered %.0f records/s %.2f MB/s, "
+                        + "lag %d records %d bytes, %d rotations, latency ms p50 %d p99 %d p99.9 %d max %d",
+                phase,
+                (writtenRecords - lastWrittenRecords) / seconds, mb(writtenBytes - lastWrittenBytes) / seconds,
+                (deliveredRecords - lastDeliveredRecords) / seconds, mb(deliveredBytes - lastDeliveredBytes) / seconds,
+                writtenRecords - deliveredRecords, lagBytes, rotations,
+                latency.getPercentile(50), latency.getPercentile(99), latency.getPercentile(99.9), latency.getMax()));
+
+        lastTime = now;
+        lastWrittenRecords = writtenRecords;
+        lastWrittenBytes = writtenBytes;
+        lastDeliveredRecords = deliveredRecords;
+        lastDeliveredBytes = deliveredBytes;
+    }
+
+    private boolean check() {
+        boolean passed = true;
+        long written = 0;
+
+        for (int i = 0; i < writers.size(); i++) {
+            LoadWriter writer = writers.get(i);
+            VerifyingListener listener = listeners.get(i);
+            written += writer.getRecords();
+
+            /* records never delivered after the last delivered one are missing too */
+            long missing = listener.getMissing() + Math.max(0, writer.getRecords() - listener.getExpected());
+
+            if (missing > 0 || listener.getDuplicated() > 0 || listener.getCorrupt() > 0
+                    || listener.getErrors() > 0) {
+                passed = false;
+                System.out.println(String.format("FAILED %s: %d records written, %d missing, %d duplicated, "
+                                + "%d corrupt, %d tailer failures", writer.getFile(), writer.getRecords(), missing,
+                        listener.getDuplicated(), listener.getCorrupt(), listener.getErrors()));
+            }
+        }
+
+        System.out.println(String.format("%s: %d records written to %d files, latency ms p50 %d p99 %d p99.9 %d "
+                        + "max %d mean %.1f", passed ? "PASSED" : "FAILED", written, writers.size(),
+                totalLatency.getPercentile(50), totalLatency.getPercentile(99), totalLatency.getPercentile(99.9),
+                totalLatency.getMax(), totalLatency.getMean()));
+
+        return passed;
+    }
+
+    private static double mb(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+
+    private static void delete(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,174 @@
+package com.keedio.tailer.soak;
+
+import com.keedio.tailer.LRTailer;
+import com.keedio.tailer.latency.LatencyHistogram;
+import com.keedio.tailer.listener.FileEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+/**
+ * <p>
+ *     Checks the records written by a {@link com.keedio.tailer.soak.LoadWriter} as a tailer delivers them: every
+ *     record must be delivered once, in the order it was written, and unchanged.
+ * </p>
+ * <p>
+ *     A record delivered with a lower sequence than expected is counted as duplicated, a record delivered with a
+ *     higher one counts the skipped records as missing, and a record whose CRC-32 does not match is counted as
+ *     corrupt. The delay between the time a record was written and the time it is delivered is recorded in the
+ *     latency histograms.
+ * </p>
+ * <p>
+ *     Called by a single tailer thread, counters can be read from any thread.
+ * </p>
+ */
+public class VerifyingListener implements FileEventListener {
+
+    private final String rotatedFileName;
+
+    private final LatencyHistogram totalLatency;
+
+    /* the histogram of the current report interval, swapped by the reporter */
+    private final AtomicReference<LatencyHistogram> intervalLatency;
+
+    private final CRC32 crc = new CRC32();
+
+    /* sequence of the next expected record */
+    private volatile long expected = 0;
+
+    private volatile long delivered = 0;
+
+    private volatile long bytes = 0;
+
+    private volatile long duplicated = 0;
+
+    private volatile long missing = 0;
+
+    private volatile long corrupt = 0;
+
+    private volatile long errors = 0;
+
+    /**
+     * @param rotatedFileName the name of the first rotated generation of the tailed file.
+     * @param totalLatency the histogram of the latencies of the whole run.
+     * @param intervalLatency the histogram of the latencies of the current report interval.
+     */
+    public VerifyingListener(String rotatedFileName, LatencyHistogram totalLatency,
+                             AtomicReference<LatencyHistogram> intervalLatency) {
+        this.rotatedFileName = rotatedFileName;
+        this.totalLatency = totalLatency;
+        this.intervalLatency = intervalLatency;
+    }
+
+    @Override
+    public void handle(String filename, String line) {
+        long now = System.currentTimeMillis();
+
+        delivered++;
+        bytes += line.length();
+
+        /* sequence timestamp crc body */
+        int first = line.indexOf(' ');
+        int second = first < 0 ? -1 : line.indexOf(' ', first + 1);
+        int third = second < 0 ? -1 : line.indexOf(' ', second + 1);
+
+        if (third < 0) {
+            corrupt++;
+            return;
+        }
+
+        long sequence;
+        long timestamp;
+        long checksum;
+        try {
+            sequence = Long.parseLong(line.substring(0, first));
+            timestamp = Long.parseLong(line.substring(first + 1, second));
+            checksum = Long.parseLong(line.substring(second + 1, third), 16);
+        } catch (NumberFormatException e) {
+            corrupt++;
+            return;
+        }
+
+        crc.reset();
+        crc.update(line.substring(third + 1).getBytes(StandardCharsets.US_ASCII));
+        if (crc.getValue() != checksum) {
+            corrupt++;
+            return;
+        }
+
+        if (sequence < expected) {
+            duplicated++;
+            return;
+        }
+        if (sequence > expected) {
+            missing += sequence - expected;
+        }
+        expected = sequence + 1;
+
+        totalLatency.record(now - timestamp);
+        intervalLatency.get().record(now - timestamp);
+    }
+
+    @Override
+    public void init(LRTailer lrTailer) {
+    }
+
+    @Override
+    public String rotated(long lastPosition, long currPosition) {
+        return rotatedFileName;
+    }
+
+    @Override
+    public void notExists() {
+        errors++;
+    }
+
+    @Override
+    public void handleException(Exception e) {
+        errors++;
+        System.err.println("Tailer failure: " + e);
+    }
+
+    @Override
+    public boolean isValid(String partialLine) {
+        return partialLine.endsWith("|");
+    }
+
+    /**
+     * @return the sequence of the next expected record, i.e. the number of records delivered in order.
+     */
+    public long getExpected() {
+        return expected;
+    }
+
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * @return the number of characters delivered.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getDuplicated() {
+        return duplicated;
+    }
+
+    public long getMissing() {
+        return missing;
+    }
+
+    public long getCorrupt() {
+        return corrupt;
+    }
+
+    /**
+     * @return the number of tailer failures.
+     */
+    public long getErrors() {
+        return errors;
+    }
+}
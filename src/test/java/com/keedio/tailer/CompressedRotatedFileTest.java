@@ -0,0 +1,79 @@
+package com.keedio.tailer;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.keedio.tailer.io.LineReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CompressedRotatedFileTest {
+    private File logDir;
+
+    @Before
+    public void init() throws Exception {
+        logDir = Files.createTempDir();
+    }
+
+    @After
+    public void destroy() throws Exception {
+        for (File f : logDir.listFiles()) {
+            f.delete();
+        }
+        logDir.delete();
+    }
+
+    @Test
+    public void testFindRotatedFile() throws Exception {
+        File rotated = new File(logDir, "test.log.1");
+
+        assertNull(LRTailer.findRotatedFile(rotated.getAbsolutePath()));
+
+        gzip("line\n", new File(logDir, "test.log.1.gz"));
+        assertEquals(new File(logDir, "test.log.1.gz"), LRTailer.findRotatedFile(rotated.getAbsolutePath()));
+
+        Files.write("line\n", rotated, Charsets.UTF_8);
+        assertEquals(rotated, LRTailer.findRotatedFile(rotated.getAbsolutePath()));
+    }
+
+    @Test
+    public void testReadCompressedFromOffset() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            content.append("line number ").append(i).append('\n');
+        }
+        File compressed = new File(logDir, "test.log.1.gz");
+        gzip(content.toString(), compressed);
+
+        long offset = content.indexOf("line number 15000\n");
+
+        try (LineReader reader = LRTailer.openReader(compressed, offset)) {
+            assertEquals("line number 15000", reader.readLine());
+            assertEquals("line number 15001", reader.readLine());
+        }
+    }
+
+    @Test
+    public void testReadCompressedPastEnd() throws Exception {
+        File compressed = new File(logDir, "test.log.1.gz");
+        gzip("line\n", compressed);
+
+        try (LineReader reader = LRTailer.openReader(compressed, 1000)) {
+            assertNull(reader.readLine());
+        }
+    }
+
+    private static void gzip(String content, File target) throws Exception {
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(target))) {
+            out.write(content.getBytes(Charsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.keedio.tailer;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.keedio.tailer.checkpoint.FileCheckpointStore;
+import com.keedio.tailer.checkpoint.FileIdentity;
+import com.keedio.tailer.io.DelimiterScanner;
+import com.keedio.tailer.io.LocalFileSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class StartPositionTest {
+    private File logDir;
+    private File logFile;
+
+    @Before
+    public void init() throws Exception {
+        logDir = Files.createTempDir();
+        logFile = new File(logDir, "test.log");
+    }
+
+    @After
+    public void destroy() throws Exception {
+        logFile.delete();
+        logDir.delete();
+    }
+
+    @Test
+    public void testBeginningAndEnd() throws Exception {
+        Files.write("line1\nline2\n", logFile, Charsets.UTF_8);
+
+        assertEquals(0L, StartPosition.beginning().resolve(logFile));
+        assertEquals(12L, StartPosition.end().resolve(logFile));
+    }
+
+    @Test
+    public void testOffset() throws Exception {
+        Files.write("line1\nline2\n", logFile, Charsets.UTF_8);
+
+        assertEquals(6L, StartPosition.offset(6).resolve(logFile));
+        assertEquals(0L, StartPosition.offset(100).resolve(logFile));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeOffset() {
+        StartPosition.offset(-1);
+    }
+
+    @Test
+    public void testLastLines() throws Exception {
+        Files.write("line1\nline2\nline3\n", logFile, Charsets.UTF_8);
+
+        assertEquals(12L, StartPosition.lastLines(1).resolve(logFile));
+        assertEquals(6L, StartPosition.lastLines(2).resolve(logFile));
+        assertEquals(0L, StartPosition.lastLines(3).resolve(logFile));
+        assertEquals(0L, StartPosition.lastLines(10).resolve(logFile));
+    }
+
+    @Test
+    public void testLastLinesWithPartialLastLine() throws Exception {
+        Files.write("line1\nline2\npartial", logFile, Charsets.UTF_8);
+
+        assertEquals(12L, StartPosition.lastLines(1).resolve(logFile));
+        assertEquals(6L, StartPosition.lastLines(2).resolve(logFile));
+    }
+
+    @Test
+    public void testLastLinesAcrossBlocks() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append("line number ").append(i).append('\n');
+        }
+        Files.write(content, logFile, Charsets.UTF_8);
+
+        String expectedTail = "line number 990\n";
+        long expected = content.indexOf(expectedTail);
+
+        for (int blockSize : new int[]{1, 7, 16, 4096}) {
+            assertEquals(expected, StartPosition.findLastLinesOffset(logFile, 10, blockSize,
+                    DelimiterScanner.newline()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoLastLines() {
+        StartPosition.lastLines(0);
+    }
+
+    @Test
+    public void testLastLinesWithCarriageReturns() throws Exception {
+        Files.write("line1\r\nline2\rline3\r\n", logFile, Charsets.UTF_8);
+
+        for (int blockSize : new int[]{1, 2, 3, 4096}) {
+            assertEquals(13L, StartPosition.findLastLinesOffset(logFile, 1, blockSize, DelimiterScanner.newline()));
+            assertEquals(7L, StartPosition.findLastLinesOffset(logFile, 2, blockSize, DelimiterScanner.newline()));
+            assertEquals(0L, StartPosition.findLastLinesOffset(logFile, 3, blockSize, DelimiterScanner.newline()));
+        }
+    }
+
+    @Test
+    public void testLastLinesWithCustomDelimiter() throws Exception {
+        Files.write("rec1||rec2\n||rec3||", logFile, Charsets.UTF_8);
+        DelimiterScanner scanner = DelimiterScanner.of("||", StandardCharsets.UTF_8);
+
+        for (int blockSize : new int[]{1, 2, 3, 4096}) {
+            assertEquals(13L, StartPosition.findLastLinesOffset(logFile, 1, blockSize, scanner));
+            assertEquals(6L, StartPosition.findLastLinesOffset(logFile, 2, blockSize, scanner));
+            assertEquals(0L, StartPosition.findLastLinesOffset(logFile, 3, blockSize, scanner));
+        }
+    }
+
+    @Test
+    public void testLastLinesInUtf16() throws Exception {
+        /* \u0a00 is 0x00 0x0a in UTF-16LE: no line feed byte may be taken for a line boundary */
+        Files.write("line1\nli\u0a00e2\nline3\n", logFile, StandardCharsets.UTF_16LE);
+        DelimiterScanner scanner = DelimiterScanner.of("\n", StandardCharsets.UTF_16LE);
+
+        for (int blockSize : new int[]{1, 5, 4096}) {
+            assertEquals(24L, StartPosition.findLastLinesOffset(logFile, 1, blockSize, scanner));
+            assertEquals(12L, StartPosition.findLastLinesOffset(logFile, 2, blockSize, scanner));
+        }
+        assertEquals(24L, StartPosition.lastLines(1).resolve(new LocalFileSource(), logFile.getAbsolutePath(),
+                scanner));
+    }
+
+    @Test
+    public void testCheckpoint() throws Exception {
+        Files.write("line1\nline2\n", logFile, Charsets.UTF_8);
+        FileCheckpointStore store = new FileCheckpointStore(new File(logDir, "checkpoints"));
+
+        assertEquals(0L, StartPosition.checkpoint(store).resolve(logFile));
+
+        store.commit(logFile.getAbsolutePath(), 6);
+        assertEquals(6L, StartPosition.checkpoint(store).resolve(logFile));
+
+        store.commit(logFile.getAbsolutePath(), 100);
+        assertEquals(0L, StartPosition.checkpoint(store).resolve(logFile));
+
+        new File(logDir, "checkpoints").delete();
+    }
+
+    @Test
+    public void testCheckpointOfReplacedFile() throws Exception {
+        Files.write("line1\nline2\n", logFile, Charsets.UTF_8);
+        File storeFile = new File(logDir, "checkpoints");
+        FileCheckpointStore store = new FileCheckpointStore(storeFile);
+        LocalFileSource fileSource = new LocalFileSource();
+
+        FileIdentity identity = FileIdentity.of(fileSource.readAttributes(logFile.getAbsolutePath()).getFileKey(),
+                "line1\n".getBytes(StandardCharsets.US_ASCII));
+        store.commit(logFile.getAbsolutePath(), 6, identity);
+        assertEquals(6L, StartPosition.checkpoint(store).resolve(logFile));
+
+        /* rewritten in place, the file keeps its key like a new file reusing the inode of a removed one */
+        Files.write("other\nline2\n", logFile, Charsets.UTF_8);
+        assertEquals(0L, StartPosition.checkpoint(store).resolve(logFile));
+
+        storeFile.delete();
+    }
+
+    @Test
+    public void testEmptyFile() throws Exception {
+        Files.write("", logFile, Charsets.UTF_8);
+
+        assertEquals(0L, StartPosition.lastLines(5).resolve(logFile));
+        assertEquals(0L, StartPosition.end().resolve(logFile));
+    }
+}
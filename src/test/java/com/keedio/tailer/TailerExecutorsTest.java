@@ -0,0 +1,149 @@
+package com.keedio.tailer;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.keedio.tailer.checkpoint.AckTracker;
+import com.keedio.tailer.checkpoint.Acknowledgement;
+import com.keedio.tailer.listener.AcknowledgingListener;
+import com.keedio.tailer.listener.impl.LogFileEventListener;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class TailerExecutorsTest {
+    private File logDir;
+
+    @Before
+    public void init() throws Exception {
+        logDir = Files.createTempDir();
+    }
+
+    @After
+    public void destroy() throws Exception {
+        for (File f : logDir.listFiles()) {
+            f.delete();
+        }
+        logDir.delete();
+    }
+
+    @Test
+    public void testPlatformThreads() throws Exception {
+        runTailers(TailerExecutors.Mode.PLATFORM);
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        Assume.assumeTrue(TailerExecutors.isVirtualThreadSupported());
+
+        runTailers(TailerExecutors.Mode.VIRTUAL);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testVirtualThreadsNotSupported() {
+        Assume.assumeFalse(TailerExecutors.isVirtualThreadSupported());
+
+        TailerExecutors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @Test
+    public void testInterruptedListenerStopsTailer() throws Exception {
+        File file = new File(logDir, "test.log");
+        Files.write("line0\nline1\nline2\n", file, Charsets.UTF_8);
+
+        final List<String> handled = new ArrayList<>();
+        final List<Exception> exceptions = new ArrayList<>();
+        final AtomicBoolean interrupt = new AtomicBoolean(true);
+
+        LRTailer tailer = new LRTailer(new AcknowledgingLogListener() {
+            @Override
+            public void handle(Record record, Acknowledgement ack) {
+                handled.add(record.getLine());
+
+                if (record.getLine().equals("line1") && interrupt.getAndSet(false)) {
+                    /* interrupted while waiting to take the line */
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                ack.ack();
+            }
+
+            @Override
+            public void handleException(Exception e) {
+                exceptions.add(e);
+            }
+        }, 50, file.getAbsolutePath());
+        AckTracker ackTracker = new AckTracker(null, file.getAbsolutePath(), 10, 1, 0);
+        tailer.setAckTracker(ackTracker);
+
+        /* the file is shorter than the head of its identity: no I/O follows the interrupted delivery */
+        tailer.open();
+        tailer.poll(Long.MAX_VALUE, Integer.MAX_VALUE);
+
+        assertTrue(Thread.interrupted());
+        assertTrue(exceptions.isEmpty());
+        assertEquals(Arrays.asList("line0", "line1"), handled);
+        assertEquals(6, tailer.getLastFullLinePosition());
+        tailer.close();
+
+        /* read again from the interrupted line */
+        tailer.open();
+        tailer.poll(Long.MAX_VALUE, Integer.MAX_VALUE);
+        tailer.close();
+
+        assertTrue(exceptions.isEmpty());
+        assertEquals(Arrays.asList("line0", "line1", "line1", "line2"), handled);
+        assertEquals(18, ackTracker.getWatermark());
+    }
+
+    /* runs 100 tailers, then stops them by shutting down the executor */
+    private void runTailers(TailerExecutors.Mode mode) throws Exception {
+        final CountDownLatch lines = new CountDownLatch(100);
+        ExecutorService executor = TailerExecutors.newExecutor(mode);
+
+        for (int i = 0; i < 100; i++) {
+            File file = new File(logDir, "test" + i + ".log");
+            Files.write("a line\n", file, Charsets.UTF_8);
+
+            executor.submit(new LRTailer(new LogFileEventListener() {
+                @Override
+                public void handle(String filename, String line) {
+                    lines.countDown();
+                }
+
+                @Override
+                public boolean isValid(String partialLine) {
+                    return true;
+                }
+            }, 50, file.getAbsolutePath()));
+        }
+
+        assertTrue(lines.await(10, TimeUnit.SECONDS));
+
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    private static class AcknowledgingLogListener extends LogFileEventListener implements AcknowledgingListener {
+        @Override
+        public void handle(Record record, Acknowledgement ack) {
+            ack.ack();
+        }
+
+        @Override
+        public boolean isValid(String partialLine) {
+            return true;
+        }
+    }
+}
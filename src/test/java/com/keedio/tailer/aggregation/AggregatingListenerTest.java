@@ -0,0 +1,122 @@
+package com.keedio.tailer.aggregation;
+
+import com.keedio.tailer.Record;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class AggregatingListenerTest {
+    private final List<WindowSummary> summaries = new CopyOnWriteArrayList<>();
+
+    private SummaryListener summaryListener;
+
+    private final KeyExtractor levelExtractor = new RegexKeyExtractor("^\\S+ (\\w+) ", 1);
+
+    @Before
+    public void init() {
+        summaries.clear();
+        summaryListener = new SummaryListener() {
+            @Override
+            public void windowClosed(WindowSummary summary) {
+                summaries.add(summary);
+            }
+        };
+    }
+
+    @Test
+    public void testTumblingWindows() {
+        AggregatingListener listener = new AggregatingListener(levelExtractor, summaryListener, 1000, 10);
+
+        listener.handle(record("INFO"), 10000);
+        listener.handle(record("ERROR"), 10500);
+        listener.handle(record("INFO"), 10999);
+        listener.handle(new Record("test.log", "unparseable", 0), 10999);
+        assertTrue(summaries.isEmpty());
+
+        listener.handle(record("WARN"), 11000);
+
+        assertEquals(1, summaries.size());
+        WindowSummary summary = summaries.get(0);
+        assertEquals(10000, summary.getStart());
+        assertEquals(11000, summary.getEnd());
+        assertEquals(4, summary.getRecords());
+        assertEquals("test.log", summary.getFilename());
+        assertEquals(2, summary.getKeys().size());
+        assertEquals("INFO", summary.getKeys().get(0).getKey());
+        assertEquals(2, summary.getKeys().get(0).getCount());
+        assertEquals(0, summary.getKeys().get(0).getError());
+        assertEquals("ERROR", summary.getKeys().get(1).getKey());
+
+        /* idle windows are not emitted */
+        listener.tick(60000);
+        assertEquals(2, summaries.size());
+        assertEquals(11000, summaries.get(1).getStart());
+        assertEquals(1, summaries.get(1).getRecords());
+
+        listener.tick(120000);
+        assertEquals(2, summaries.size());
+    }
+
+    @Test
+    public void testSlidingWindows() {
+        AggregatingListener listener = new AggregatingListener(levelExtractor, summaryListener, 3000, 1000, 10);
+
+        listener.handle(record("INFO"), 0);
+        listener.handle(record("ERROR"), 1000);
+        listener.handle(record("ERROR"), 2000);
+        listener.tick(5000);
+
+        /* windows ending at 1000 .. 5000 */
+        assertEquals(5, summaries.size());
+        assertEquals(1, summaries.get(0).getRecords());
+        assertEquals(2, summaries.get(1).getRecords());
+        assertEquals(3, summaries.get(2).getRecords());
+        assertEquals(0, summaries.get(2).getStart());
+        assertEquals("ERROR", summaries.get(2).getKeys().get(0).getKey());
+        assertEquals(2, summaries.get(2).getKeys().get(0).getCount());
+        assertEquals(2, summaries.get(3).getRecords());
+        assertEquals(1, summaries.get(4).getRecords());
+        assertEquals(2000, summaries.get(4).getStart());
+    }
+
+    @Test
+    public void testHeavyHittersAreBounded() {
+        AggregatingListener listener = new AggregatingListener(levelExtractor, summaryListener, 1000, 5);
+
+        for (int i = 0; i < 10000; i++) {
+            listener.handle(record(i % 2 == 0 ? "ERROR" : "LEVEL" + i), 0);
+        }
+        listener.tick(1000);
+
+        WindowSummary summary = summaries.get(0);
+        assertEquals(10000, summary.getRecords());
+        assertEquals(5, summary.getKeys().size());
+
+        KeyCount top = summary.getKeys().get(0);
+        assertEquals("ERROR", top.getKey());
+        assertTrue(top.getCount() >= 5000);
+        assertTrue(top.getCount() - top.getError() <= 5000);
+    }
+
+    @Test
+    public void testSpaceSavingMerge() {
+        SpaceSaving sketch = new SpaceSaving(2);
+        sketch.offer("a", 10, 0);
+        sketch.offer("b", 3, 0);
+        sketch.offer("c", 1, 0);
+
+        List<KeyCount> top = sketch.top();
+        assertEquals("a", top.get(0).getKey());
+        assertEquals("c", top.get(1).getKey());
+        assertEquals(4, top.get(1).getCount());
+        assertEquals(3, top.get(1).getError());
+    }
+
+    private static Record record(String level) {
+        return new Record("test.log", "2016-02-13T10:00:00 " + level + " something happened", 0);
+    }
+}
@@ -0,0 +1,180 @@
+package com.keedio.tailer.checkpoint;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class AckTrackerTest {
+
+    @Test
+    public void testWatermarkIsContiguous() throws Exception {
+        AckTracker tracker = new AckTracker(null, "test.log", 10, 100, 60000);
+
+        Acknowledgement first = tracker.register(10);
+        Acknowledgement second = tracker.register(20);
+        Acknowledgement third = tracker.register(30);
+
+        third.ack();
+        assertEquals(-1L, tracker.getWatermark());
+
+        first.ack();
+        assertEquals(10L, tracker.getWatermark());
+
+        second.ack();
+        assertEquals(30L, tracker.getWatermark());
+        assertEquals(0, tracker.getInFlight());
+
+        /* acknowledging twice has no effect */
+        second.ack();
+        assertEquals(30L, tracker.getWatermark());
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        RecordingStore store = new RecordingStore();
+        AckTracker tracker = new AckTracker(store, "test.log", 100, 3, 60000);
+
+        List<Acknowledgement> acks = new ArrayList<>();
+        for (int i = 1; i <= 7; i++) {
+            acks.add(tracker.register(i * 10));
+        }
+        for (Acknowledgement ack : acks) {
+            ack.ack();
+        }
+
+        assertEquals(2, store.commits.size());
+        assertEquals(Long.valueOf(30), store.commits.get(0));
+        assertEquals(Long.valueOf(60), store.commits.get(1));
+        assertEquals(60L, tracker.getCommittedWatermark());
+
+        tracker.commitIfDue();
+        assertEquals(2, store.commits.size());
+
+        tracker.commit();
+        assertEquals(Long.valueOf(70), store.commits.get(2));
+
+        /* nothing changed, nothing to commit */
+        tracker.commit();
+        assertEquals(3, store.commits.size());
+    }
+
+    @Test
+    public void testCommitInterval() throws Exception {
+        RecordingStore store = new RecordingStore();
+        AckTracker tracker = new AckTracker(store, "test.log", 100, 1000, 0);
+
+        tracker.register(10).ack();
+
+        assertEquals(1, store.commits.size());
+        assertEquals(10L, tracker.getCommittedWatermark());
+    }
+
+    @Test
+    public void testInFlightLimit() throws Exception {
+        final AckTracker tracker = new AckTracker(null, "test.log", 2, 100, 60000);
+
+        Acknowledgement first = tracker.register(10);
+        tracker.register(20);
+
+        ExecutorService service = Executors.newSingleThreadExecutor();
+        try {
+            Future<Acknowledgement> blocked = service.submit(new Callable<Acknowledgement>() {
+                @Override
+                public Acknowledgement call() throws Exception {
+                    return tracker.register(30);
+                }
+            });
+
+            try {
+                blocked.get(200, TimeUnit.MILLISECONDS);
+                fail("register should block when the in-flight limit is reached");
+            } catch (TimeoutException e) {
+                // expected
+            }
+
+            first.ack();
+
+            assertNotNull(blocked.get(1, TimeUnit.SECONDS));
+            assertEquals(2, tracker.getInFlight());
+        } finally {
+            service.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testInterruptedRegister() throws Exception {
+        final AckTracker tracker = new AckTracker(null, "test.log", 1, 100, 60000);
+        tracker.register(10);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        ExecutorService service = Executors.newSingleThreadExecutor();
+        Future<Acknowledgement> blocked = service.submit(new Callable<Acknowledgement>() {
+            @Override
+            public Acknowledgement call() throws Exception {
+                started.countDown();
+                return tracker.register(20);
+            }
+        });
+
+        started.await();
+        service.shutdownNow();
+
+        try {
+            blocked.get(1, TimeUnit.SECONDS);
+            fail("register should be interrupted");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+        }
+        assertEquals(1, tracker.getInFlight());
+    }
+
+    @Test
+    public void testIdentityCommitted() throws Exception {
+        File storeFile = File.createTempFile("checkpoints", null);
+        try {
+            FileCheckpointStore store = new FileCheckpointStore(storeFile);
+            AckTracker tracker = new AckTracker(store, "test.log", 100, 1000, 60000);
+
+            FileIdentity first = FileIdentity.of(1L, "first generation".getBytes(StandardCharsets.US_ASCII));
+            FileIdentity second = FileIdentity.of(1L, "second generation".getBytes(StandardCharsets.US_ASCII));
+
+            tracker.register(10, first).ack();
+            tracker.commit();
+            assertEquals(10L, store.load("test.log"));
+            assertEquals(first, store.loadIdentity("test.log"));
+
+            /* same position in another generation: committed again */
+            tracker.register(10, second).ack();
+            tracker.commit();
+            assertEquals(second, new FileCheckpointStore(storeFile).loadIdentity("test.log"));
+
+            /* without identity, the last position is committed alone */
+            tracker.register(20).ack();
+            tracker.commit();
+            assertEquals(20L, store.load("test.log"));
+            assertNull(store.loadIdentity("test.log"));
+        } finally {
+            storeFile.delete();
+        }
+    }
+
+    static class RecordingStore implements CheckpointStore {
+        final List<Long> commits = new CopyOnWriteArrayList<>();
+
+        @Override
+        public long load(String filename) {
+            return commits.isEmpty() ? -1 : commits.get(commits.size() - 1);
+        }
+
+        @Override
+        public void commit(String filename, long position) {
+            commits.add(position);
+        }
+    }
+}
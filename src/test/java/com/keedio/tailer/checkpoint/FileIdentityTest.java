@@ -0,0 +1,68 @@
+package com.keedio.tailer.checkpoint;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class FileIdentityTest {
+
+    @Test
+    public void testMatchesSameKeyAndHead() {
+        byte[] head = bytes("2016-02-13 10:00:00 first line\n");
+        FileIdentity identity = FileIdentity.of(42L, head);
+
+        assertTrue(identity.matches(42L, head));
+        assertTrue(identity.matches(null, head));
+        assertFalse(identity.matches(43L, head));
+        assertFalse(identity.matches(42L, bytes("2016-02-13 10:05:00 first line\n")));
+    }
+
+    @Test
+    public void testGrownFileMatches() {
+        FileIdentity identity = FileIdentity.of(42L, bytes("first"));
+
+        assertEquals(5, identity.getHeadLength());
+        assertFalse(identity.isComplete());
+        assertTrue(identity.matches(42L, bytes("first line\nsecond line\n")));
+
+        /* a file shorter than the hashed bytes has been truncated or replaced */
+        assertFalse(identity.matches(42L, bytes("fir")));
+    }
+
+    @Test
+    public void testHeadIsBounded() {
+        byte[] head = new byte[FileIdentity.HEAD_SIZE + 100];
+        Arrays.fill(head, (byte) 'a');
+
+        FileIdentity identity = FileIdentity.of(42L, head);
+
+        assertEquals(FileIdentity.HEAD_SIZE, identity.getHeadLength());
+        assertTrue(identity.isComplete());
+
+        /* bytes past the head do not count */
+        head[FileIdentity.HEAD_SIZE] = 'b';
+        assertTrue(identity.matches(42L, head));
+    }
+
+    @Test
+    public void testParse() {
+        for (FileIdentity identity : new FileIdentity[]{
+                FileIdentity.of("(dev=803,ino=1234)", bytes("a line: with colons\n")),
+                FileIdentity.of(null, bytes("no file key")),
+                FileIdentity.of(7L, new byte[0])}) {
+            assertEquals(identity, FileIdentity.parse(identity.toString()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseMalformed() {
+        FileIdentity.parse("12");
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,182 @@
+package com.keedio.tailer.io;
+
+import com.keedio.tailer.simulation.SimulatedClock;
+import com.keedio.tailer.simulation.SimulatedFileSource;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AttributePollerTest {
+    private static final String FILE = "/sim/app.log";
+
+    private SimulatedClock clock;
+
+    private SimulatedFileSource files;
+
+    private AttributePoller poller;
+
+    @Before
+    public void setUp() {
+        clock = new SimulatedClock();
+        files = new SimulatedFileSource(clock);
+        files.create(FILE);
+
+        poller = new AttributePoller(files, 100);
+        poller.setClock(clock);
+        poller.register(FILE);
+    }
+
+    @Test
+    public void testOneStatPerInterval() throws Exception {
+        assertNull(poller.getAttributes(FILE));
+
+        poller.poll();
+        assertEquals(1, poller.getStatCount());
+        assertEquals(0, poller.getAttributes(FILE).getSize());
+
+        files.append(FILE, new byte[10]);
+        clock.advanceTo(50);
+        poller.poll();
+        assertEquals(1, poller.getStatCount());
+        assertEquals(0, poller.getAttributes(FILE).getSize());
+
+        clock.advanceTo(100);
+        poller.poll();
+        assertEquals(2, poller.getStatCount());
+        assertEquals(10, poller.getAttributes(FILE).getSize());
+    }
+
+    @Test
+    public void testActivityDiscardsSnapshot() throws Exception {
+        poller.poll();
+        assertNotNull(poller.getAttributes(FILE));
+
+        clock.advanceTo(100);
+        poller.activity(FILE);
+        assertNull(poller.getAttributes(FILE));
+
+        /* read during the last interval, it is not stated */
+        clock.advanceTo(150);
+        poller.poll();
+        assertEquals(1, poller.getStatCount());
+        assertNull(poller.getAttributes(FILE));
+
+        /* until the next stat */
+        clock.advanceTo(200);
+        poller.poll();
+        assertEquals(2, poller.getStatCount());
+        assertNotNull(poller.getAttributes(FILE));
+    }
+
+    @Test
+    public void testActiveFileStatedEveryActiveInterval() throws Exception {
+        for (long time = 0; time <= 800; time += 50) {
+            clock.advanceTo(time);
+            files.append(FILE, new byte[10]);
+            poller.activity(FILE);
+            poller.poll();
+
+            if (time == 400) {
+                assertEquals(90, poller.getAttributes(FILE).getSize());
+            }
+        }
+
+        /* a file still written after a rotation keeps growing for its tailer, it is stated anyway */
+        assertEquals(3, poller.getStatCount());
+        assertEquals(170, poller.getAttributes(FILE).getSize());
+
+        poller.setActiveInterval(100);
+        clock.advanceTo(850);
+        poller.activity(FILE);
+        poller.poll();
+        assertEquals(3, poller.getStatCount());
+
+        clock.advanceTo(900);
+        poller.activity(FILE);
+        poller.poll();
+        assertEquals(4, poller.getStatCount());
+    }
+
+    @Test
+    public void testActivityDuringSlowStat() throws Exception {
+        final CountDownLatch stating = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        FileSource slow = new SimulatedFileSource(clock) {
+            @Override
+            public FileAttributes readAttributes(String path) throws IOException {
+                stating.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return files.readAttributes(path);
+            }
+        };
+        poller = new AttributePoller(slow, 100);
+        poller.setClock(clock);
+        poller.register(FILE);
+        poller.register("/sim/other.log");
+
+        Thread round = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                poller.poll();
+            }
+        });
+        round.start();
+        assertTrue(stating.await(5, TimeUnit.SECONDS));
+
+        /* the tailers do not wait for the stat */
+        poller.activity(FILE);
+        poller.activity("/sim/other.log");
+        assertNull(poller.getAttributes(FILE));
+        poller.register("/sim/new.log");
+
+        release.countDown();
+        round.join(5000);
+        assertFalse(round.isAlive());
+    }
+
+    @Test
+    public void testActivityWhileStating() throws Exception {
+        FileSource racing = new SimulatedFileSource(clock) {
+            @Override
+            public FileAttributes readAttributes(String path) throws IOException {
+                FileAttributes attributes = files.readAttributes(path);
+                poller.activity(path);
+                return attributes;
+            }
+        };
+        poller = new AttributePoller(racing, 100);
+        poller.setClock(clock);
+        poller.register(FILE);
+
+        poller.poll();
+        assertEquals(1, poller.getStatCount());
+        assertNull(poller.getAttributes(FILE));
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void testMissingFile() throws Exception {
+        files.delete(FILE);
+        poller.poll();
+
+        poller.getAttributes(FILE);
+    }
+
+    @Test
+    public void testUnregister() throws Exception {
+        poller.unregister(FILE);
+        poller.poll();
+
+        assertEquals(0, poller.getStatCount());
+        assertNull(poller.getAttributes(FILE));
+    }
+}
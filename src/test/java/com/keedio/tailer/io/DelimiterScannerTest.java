@@ -0,0 +1,77 @@
+package com.keedio.tailer.io;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DelimiterScannerTest {
+
+    @Test
+    public void testNewline() {
+        ByteBuffer buffer = buffer("first line\nsecond line\r\n", ByteOrder.LITTLE_ENDIAN);
+        DelimiterScanner scanner = DelimiterScanner.newline();
+
+        assertEquals(10, scanner.indexOf(buffer, 0, buffer.capacity()));
+        assertEquals(22, scanner.indexOf(buffer, 11, buffer.capacity()));
+        assertEquals(23, scanner.indexOf(buffer, 23, buffer.capacity()));
+        assertEquals(-1, scanner.indexOf(buffer, 24, buffer.capacity()));
+        assertEquals(-1, scanner.indexOf(buffer, 0, 10));
+    }
+
+    @Test
+    public void testMultiByteDelimiter() {
+        ByteBuffer buffer = buffer("a|b||c|||d||", ByteOrder.LITTLE_ENDIAN);
+        DelimiterScanner scanner = DelimiterScanner.of("||", StandardCharsets.UTF_8);
+
+        assertEquals(3, scanner.indexOf(buffer, 0, buffer.capacity()));
+        assertEquals(6, scanner.indexOf(buffer, 5, buffer.capacity()));
+        assertEquals(10, scanner.indexOf(buffer, 8, buffer.capacity()));
+        /* the delimiter must lie entirely in the range */
+        assertEquals(-1, scanner.indexOf(buffer, 8, 11));
+        assertEquals(1, scanner.partialDelimiterLength(buffer, 8, 11));
+        assertEquals(0, scanner.partialDelimiterLength(buffer, 0, 1));
+    }
+
+    @Test
+    public void testSwarMatchesScalar() {
+        Random random = new Random(42);
+        byte[] delimiter = {'\n'};
+        byte[] multiByte = {'\r', '\n', '-'};
+
+        for (int round = 0; round < 1000; round++) {
+            byte[] data = new byte[random.nextInt(200)];
+            for (int i = 0; i < data.length; i++) {
+                /* few distinct values, so that delimiters are frequent */
+                data[i] = (byte) "ab\r\n-\u0080\u00ff".charAt(random.nextInt(7));
+            }
+
+            for (ByteOrder order : new ByteOrder[]{ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+                ByteBuffer heap = ByteBuffer.wrap(data).order(order);
+                ByteBuffer direct = ByteBuffer.allocateDirect(data.length).order(order);
+                direct.put(data);
+
+                int from = data.length == 0 ? 0 : random.nextInt(data.length);
+
+                for (byte[] d : new byte[][]{delimiter, multiByte}) {
+                    int expected = DelimiterScanner.of(d, DelimiterScanner.Mode.SCALAR).indexOf(heap, from, data.length);
+
+                    assertEquals(expected, DelimiterScanner.of(d, DelimiterScanner.Mode.SWAR).indexOf(heap, from, data.length));
+                    assertEquals(expected, DelimiterScanner.of(d, DelimiterScanner.Mode.SWAR).indexOf(direct, from, data.length));
+                }
+
+                int expected = DelimiterScanner.newline(DelimiterScanner.Mode.SCALAR).indexOf(heap, from, data.length);
+                assertEquals(expected, DelimiterScanner.newline(DelimiterScanner.Mode.SWAR).indexOf(heap, from, data.length));
+                assertEquals(expected, DelimiterScanner.newline(DelimiterScanner.Mode.SWAR).indexOf(direct, from, data.length));
+            }
+        }
+    }
+
+    private static ByteBuffer buffer(String content, ByteOrder order) {
+        return ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)).order(order);
+    }
+}
@@ -0,0 +1,166 @@
+package com.keedio.tailer.io;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class LineReaderTest {
+
+    @Test
+    public void testLinesAndLengths() throws Exception {
+        GrowingChannel channel = new GrowingChannel();
+        channel.append("first\nsecond\r\n\nfourth \u00e9\nlone\rreturn\n");
+        LineReader reader = new LineReader(channel, DelimiterScanner.newline(), StandardCharsets.UTF_8);
+
+        assertLine(reader, "first", 6);
+        assertLine(reader, "second", 8);
+        assertLine(reader, "", 1);
+        assertLine(reader, "fourth \u00e9", 10);
+        /* as with BufferedReader, a lone carriage return ends a line */
+        assertLine(reader, "lone", 5);
+        assertLine(reader, "return", 7);
+        assertNull(reader.readLine());
+        assertEquals(0, reader.getLastLength());
+    }
+
+    @Test
+    public void testPartialLines() throws Exception {
+        GrowingChannel channel = new GrowingChannel();
+        LineReader reader = new LineReader(channel, DelimiterScanner.newline(), StandardCharsets.UTF_8);
+
+        channel.append("a partial");
+        assertLine(reader, "a partial", 9);
+        assertNull(reader.readLine());
+
+        /* the line feed following the carriage return is skipped, and counted in the next line */
+        channel.append(" line\r");
+        assertLine(reader, " line", 6);
+        assertNull(reader.readLine());
+
+        channel.append("\nnext\n");
+        assertLine(reader, "next", 6);
+    }
+
+    @Test
+    public void testCustomDelimiterAcrossBufferBoundaries() throws Exception {
+        GrowingChannel channel = new GrowingChannel();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            content.append("record ").append(i).append("<EOR>");
+        }
+        channel.append(content.toString());
+
+        LineReader reader = new LineReader(channel, DelimiterScanner.of("<EOR>", StandardCharsets.UTF_8),
+                StandardCharsets.UTF_8, 16);
+
+        for (int i = 0; i < 100; i++) {
+            assertLine(reader, "record " + i, ("record " + i).length() + 5);
+        }
+        assertNull(reader.readLine());
+    }
+
+    @Test
+    public void testPartialMultiByteDelimiter() throws Exception {
+        GrowingChannel channel = new GrowingChannel();
+        LineReader reader = new LineReader(channel, DelimiterScanner.of("<EOR>", StandardCharsets.UTF_8),
+                StandardCharsets.UTF_8, 16);
+
+        channel.append("record<EO");
+        assertLine(reader, "record", 6);
+
+        channel.append("R>next<EOR>");
+        assertLine(reader, "", 5);
+        assertLine(reader, "next", 9);
+    }
+
+    @Test
+    public void testCharacterSplitAcrossWrites() throws Exception {
+        GrowingChannel channel = new GrowingChannel();
+        LineReader reader = new LineReader(channel, DelimiterScanner.newline(), StandardCharsets.UTF_8, 16);
+
+        /* \u00e9 is encoded as 0xc3 0xa9 */
+        channel.content.write(new byte[]{'c', 'a', 'f', (byte) 0xc3});
+        assertLine(reader, "caf", 3);
+        assertNull(reader.readLine());
+
+        channel.content.write(new byte[]{(byte) 0xa9, '!', '\n'});
+        assertLine(reader, "\u00e9!", 4);
+        assertNull(reader.readLine());
+    }
+
+    @Test
+    public void testLongLines() throws Exception {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            line.append('x');
+        }
+
+        GrowingChannel channel = new GrowingChannel();
+        channel.append(line + "\nshort\n" + line + "\n");
+        LineReader reader = new LineReader(channel, DelimiterScanner.newline(), StandardCharsets.UTF_8, 16);
+
+        assertLine(reader, line.toString(), 10001);
+        assertLine(reader, "short", 6);
+        assertLine(reader, line.toString(), 10001);
+    }
+
+    private static void assertLine(LineReader reader, String expected, int length) throws IOException {
+        assertEquals(expected, reader.readLine());
+        assertEquals(length, reader.getLastLength());
+    }
+
+    /* a file being appended to, returning at most 7 bytes per read */
+    @Test
+    public void testMalformedInput() throws Exception {
+        GrowingChannel channel = new GrowingChannel();
+        channel.append("caf\u00e9\n");
+        channel.content.write(new byte[]{'b', 'a', 'd', (byte) 0xe9, '\n'});
+
+        LineReader reader = new LineReader(channel, DelimiterScanner.newline(), StandardCharsets.UTF_8,
+                MalformedInputMode.RAW);
+
+        assertLine(reader, "caf\u00e9", 6);
+        /* lengths are counted in bytes, whatever the decoded record */
+        assertLine(reader, "bad\u00e9", 5);
+        assertNull(reader.readLine());
+    }
+
+    private static class GrowingChannel implements ReadableByteChannel {
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        private int position = 0;
+
+        void append(String data) throws IOException {
+            content.write(data.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            byte[] bytes = content.toByteArray();
+
+            if (position == bytes.length) {
+                return -1;
+            }
+
+            int count = Math.min(Math.min(7, dst.remaining()), bytes.length - position);
+            dst.put(bytes, position, count);
+            position += count;
+
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.keedio.tailer.io;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class RecordDecoderTest {
+
+    @Test
+    public void testAscii() {
+        RecordDecoder decoder = new RecordDecoder(StandardCharsets.UTF_8, MalformedInputMode.REPLACE);
+
+        /* shorter and longer than a long, and longer than the initial buffers */
+        for (String record : new String[]{"", "a", "seven b", "2016-02-13 10:00:00 INFO started", repeat('x', 1000)}) {
+            assertEquals(record, decode(decoder, record.getBytes(StandardCharsets.US_ASCII)));
+        }
+    }
+
+    @Test
+    public void testMixedContent() {
+        RecordDecoder decoder = new RecordDecoder(StandardCharsets.UTF_8, MalformedInputMode.REPLACE);
+
+        /* the non ASCII char is at every position of a long */
+        for (int i = 0; i < 9; i++) {
+            String record = repeat('a', i) + "\u00e9t\u00e9 \u20ac \ud83d\ude00 " + repeat('z', 20);
+            assertEquals(record, decode(decoder, record.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        /* the decoder is reused */
+        assertEquals("plain", decode(decoder, "plain".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals("\u00f1", decode(decoder, "\u00f1".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testMalformedReplaced() {
+        RecordDecoder decoder = new RecordDecoder(StandardCharsets.UTF_8, MalformedInputMode.REPLACE);
+
+        byte[] record = {'a', (byte) 0xff, 'b', (byte) 0xc3, 'c', (byte) 0xe2, (byte) 0x82};
+
+        assertEquals("a\ufffdb\ufffdc\ufffd", decode(decoder, record));
+    }
+
+    @Test
+    public void testMalformedRaw() {
+        RecordDecoder decoder = new RecordDecoder(StandardCharsets.UTF_8, MalformedInputMode.RAW);
+
+        byte[] record = {'a', (byte) 0xff, 'b', (byte) 0xc3, (byte) 0xa9, 'c', (byte) 0xe2, (byte) 0x82};
+        String decoded = decode(decoder, record);
+
+        assertEquals("a\u00ffb\u00e9c\u00e2\u0082", decoded);
+        /* malformed bytes are recovered by encoding them in ISO-8859-1 */
+        assertArrayEquals(new byte[]{(byte) 0xe2, (byte) 0x82},
+                decoded.substring(decoded.length() - 2).getBytes(StandardCharsets.ISO_8859_1));
+
+        /* a valid replacement char is kept */
+        assertEquals("a\ufffdb", decode(decoder, "a\ufffdb".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testLatin1() {
+        RecordDecoder decoder = new RecordDecoder(StandardCharsets.ISO_8859_1, MalformedInputMode.REPLACE);
+
+        assertEquals("caf\u00e9 \u00ff", decode(decoder, "caf\u00e9 \u00ff".getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    @Test
+    public void testNotAsciiCompatible() {
+        RecordDecoder decoder = new RecordDecoder(StandardCharsets.UTF_16BE, MalformedInputMode.REPLACE);
+
+        assertEquals("ab", decode(decoder, "ab".getBytes(StandardCharsets.UTF_16BE)));
+
+        Charset ascii = StandardCharsets.US_ASCII;
+        assertEquals("a\ufffd", decode(new RecordDecoder(ascii, MalformedInputMode.REPLACE), new byte[]{'a', (byte) 0xe9}));
+    }
+
+    @Test
+    public void testBufferUnchanged() {
+        RecordDecoder decoder = new RecordDecoder(StandardCharsets.UTF_8, MalformedInputMode.REPLACE);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(32).order(ByteOrder.nativeOrder());
+        buffer.put("first\nsecond\n".getBytes(StandardCharsets.US_ASCII));
+        buffer.position(3).limit(20);
+
+        assertEquals("second", decoder.decode(buffer, 6, 12));
+        assertEquals(3, buffer.position());
+        assertEquals(20, buffer.limit());
+    }
+
+    /* decodes the bytes from an offset in a direct buffer, as a LineReader does */
+    private static String decode(RecordDecoder decoder, byte[] record) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(record.length + 10).order(ByteOrder.nativeOrder());
+        buffer.position(3);
+        buffer.put(record);
+
+        return decoder.decode(buffer, 3, 3 + record.length);
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
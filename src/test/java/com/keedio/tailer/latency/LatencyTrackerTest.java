@@ -0,0 +1,175 @@
+package com.keedio.tailer.latency;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.keedio.tailer.LRTailer;
+import com.keedio.tailer.Record;
+import com.keedio.tailer.io.AttributePoller;
+import com.keedio.tailer.listener.impl.LogFileEventListener;
+import com.keedio.tailer.simulation.SimulatedClock;
+import com.keedio.tailer.simulation.SimulatedFileSource;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class LatencyTrackerTest {
+    private static final String LOG = "/sim/app.log";
+
+    @Test
+    public void testAttributionToSamples() {
+        LatencyTracker tracker = new LatencyTracker();
+
+        /* "line0\n" appended before 1000, "line1\n" before 2000 */
+        tracker.sample(6, 1000);
+        tracker.sample(12, 2000);
+
+        tracker.delivered(new Record("test.log", "line0", 6), 1500);
+        tracker.delivered(new Record("test.log", "line1", 12), 2100);
+
+        /* appended after the last sample */
+        tracker.delivered(new Record("test.log", "line2", 18), 2200);
+
+        LatencyHistogram histogram = tracker.getHistogram();
+        assertEquals(2, histogram.getCount());
+        assertEquals(500, histogram.getMax());
+        assertEquals(1, tracker.getUnattributed());
+    }
+
+    @Test
+    public void testCrLfLine() {
+        LatencyTracker tracker = new LatencyTracker();
+
+        /* "line0\r" appended before 1000, the "\n" before 2000 */
+        tracker.sample(6, 1000);
+        tracker.sample(7, 2000);
+
+        tracker.delivered(new Record("test.log", "line0", 7), 2100);
+
+        assertEquals(100, tracker.getHistogram().getMax());
+    }
+
+    @Test
+    public void testParsedTimestamp() {
+        LatencyTracker tracker = new LatencyTracker(new TimestampExtractor() {
+            @Override
+            public long extract(Record record) {
+                return record.getLine().startsWith("@") ? Long.parseLong(record.getLine().substring(1)) : -1;
+            }
+        });
+        tracker.sample(100, 5000);
+
+        tracker.delivered(new Record("test.log", "@4000", 6), 5000);
+        tracker.delivered(new Record("test.log", "no timestamp", 19), 5010);
+
+        assertEquals(1000, tracker.getHistogram().getMax());
+        assertEquals(10, tracker.getHistogram().getPercentile(50));
+    }
+
+    @Test
+    public void testTruncation() {
+        LatencyTracker tracker = new LatencyTracker();
+        tracker.sample(1000, 1000);
+        tracker.sample(10, 2000);
+
+        tracker.delivered(new Record("test.log", "line", 5), 2500);
+        assertEquals(500, tracker.getHistogram().getMax());
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMean(), 0.001);
+        assertEquals(1000, histogram.getMax());
+
+        long p50 = histogram.getPercentile(50);
+        long p99 = histogram.getPercentile(99);
+        assertTrue("p50 " + p50, p50 >= 500 && p50 <= 535);
+        assertTrue("p99 " + p99, p99 >= 990 && p99 <= 1000);
+
+        for (long value = 0; value < 100000; value += 7) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(LatencyHistogram.highestValue(bucket) >= value);
+            assertTrue(bucket == 0 || LatencyHistogram.highestValue(bucket - 1) < value);
+        }
+    }
+
+    @Test
+    public void testTailerIntegration() throws Exception {
+        File logDir = Files.createTempDir();
+        File file = new File(logDir, "test.log");
+        try {
+            Files.write("line0\nline1\nline2\n", file, Charsets.UTF_8);
+
+            LatencyTracker tracker = new LatencyTracker();
+            LRTailer tailer = new LRTailer(new LogFileEventListener() {
+                @Override
+                public boolean isValid(String partialLine) {
+                    return true;
+                }
+            }, 10, file.getAbsolutePath());
+            tailer.setLatencyTracker(tracker);
+
+            tailer.open();
+            tailer.poll(Long.MAX_VALUE, Integer.MAX_VALUE);
+            tailer.close();
+
+            assertEquals(3, tracker.getHistogram().getCount());
+            assertEquals(0, tracker.getUnattributed());
+        } finally {
+            file.delete();
+            logDir.delete();
+        }
+    }
+
+    @Test
+    public void testTailerWithAttributePoller() throws Exception {
+        SimulatedClock clock = new SimulatedClock();
+        SimulatedFileSource files = new SimulatedFileSource(clock);
+        files.create(LOG);
+
+        AttributePoller poller = new AttributePoller(files, 100);
+        poller.setClock(clock);
+        /* the file is active at every round: it is only sampled every round with an active interval of one round */
+        poller.setActiveInterval(100);
+
+        LatencyTracker tracker = new LatencyTracker();
+        LRTailer tailer = new LRTailer(new LogFileEventListener() {
+            @Override
+            public boolean isValid(String partialLine) {
+                return true;
+            }
+        }, 10, LOG);
+        tailer.setFileSource(files);
+        tailer.setClock(clock);
+        tailer.setAttributePoller(poller);
+        tailer.setLatencyTracker(tracker);
+        tailer.open();
+
+        /* opens the file, discarding the snapshots taken before */
+        tailer.poll(Long.MAX_VALUE, Integer.MAX_VALUE);
+
+        /* a line every 100ms, the file being read, hence active, at every poll */
+        for (int i = 0; i < 10; i++) {
+            clock.advanceTo(100 * i + 10);
+            files.append(LOG, ("line" + i + "\r\n").getBytes(Charsets.UTF_8));
+
+            clock.advanceTo(100 * i + 50);
+            poller.poll();
+
+            clock.advanceTo(100 * i + 60);
+            tailer.poll(Long.MAX_VALUE, Integer.MAX_VALUE);
+        }
+        tailer.close();
+
+        assertEquals(10, tracker.getHistogram().getCount());
+        assertEquals(0, tracker.getUnattributed());
+        assertEquals(50, tracker.getHistogram().getMax());
+    }
+}
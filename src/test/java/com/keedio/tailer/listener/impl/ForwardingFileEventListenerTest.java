@@ -0,0 +1,253 @@
+package com.keedio.tailer.listener.impl;
+
+import com.google.common.base.Charsets;
+import com.keedio.tailer.Record;
+import com.keedio.tailer.checkpoint.Acknowledgement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ForwardingFileEventListenerTest {
+    private ServerSocketChannel server;
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    @Before
+    public void init() throws Exception {
+        init(new InetSocketAddress("127.0.0.1", 0));
+    }
+
+    @After
+    public void destroy() throws Exception {
+        server.close();
+    }
+
+    private void init(InetSocketAddress address) throws IOException {
+        final ServerSocketChannel server = ServerSocketChannel.open();
+        server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        server.bind(address);
+        this.server = server;
+
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        serve(server.accept().socket());
+                    }
+                } catch (IOException e) {
+                    // server closed
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @Test
+    public void testBatchedForwarding() throws Exception {
+        ForwardingFileEventListener listener = new ForwardingFileEventListener(server.getLocalAddress(), 1024, 10000);
+        final AtomicInteger acked = new AtomicInteger();
+
+        for (int i = 0; i < 1000; i++) {
+            listener.handle(new Record("test.log", "line number " + i, i), counting(acked));
+        }
+
+        /* full batches are sent and acknowledged, the last one lingers */
+        assertTrue(acked.get() > 0 && acked.get() < 1000);
+        assertTrue(listener.getFlushedPosition() < 999);
+
+        listener.flush();
+        assertEquals(1000, acked.get());
+        assertEquals(999, listener.getFlushedPosition());
+
+        waitFor(1000);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("line number " + i, received.get(i));
+        }
+        assertEquals(1, connections.get());
+        listener.close();
+    }
+
+    @Test
+    public void testLinger() throws Exception {
+        ForwardingFileEventListener listener = new ForwardingFileEventListener(server.getLocalAddress(), 1024 * 1024, 50);
+        final AtomicInteger acked = new AtomicInteger();
+
+        listener.handle(new Record("test.log", "a line \u2603", 8), counting(acked));
+        assertEquals(0, acked.get());
+
+        waitFor(1);
+        assertEquals("a line \u2603", received.get(0));
+        assertEquals(1, acked.get());
+        assertEquals(8, listener.getFlushedPosition());
+        listener.close();
+    }
+
+    @Test
+    public void testReconnect() throws Exception {
+        final InetSocketAddress address = (InetSocketAddress) server.getLocalAddress();
+        server.close();
+
+        final ForwardingFileEventListener listener = new ForwardingFileEventListener(address, 1024, 10000);
+        final AtomicInteger acked = new AtomicInteger();
+
+        for (int i = 0; i < 10; i++) {
+            listener.handle(new Record("test.log", "line number " + i, i), counting(acked));
+        }
+
+        Thread flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                listener.flush();
+            }
+        });
+        flusher.start();
+
+        Thread.sleep(300);
+        assertEquals(0, acked.get());
+
+        /* the collector comes back */
+        init(address);
+        flusher.join(10000);
+
+        assertEquals(10, acked.get());
+        waitFor(10);
+        assertEquals("line number 0", received.get(0));
+        assertEquals("line number 9", received.get(9));
+        listener.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCloseWithUnsentLines() throws Exception {
+        ForwardingFileEventListener listener = new ForwardingFileEventListener(server.getLocalAddress(), 1024, 10000);
+        server.close();
+
+        listener.handle("test.log", "a line");
+        listener.close();
+    }
+
+    @Test
+    public void testFlushedPositionAfterRotation() throws Exception {
+        ForwardingFileEventListener listener = new ForwardingFileEventListener(server.getLocalAddress(), 1024, 10000);
+        final AtomicInteger acked = new AtomicInteger();
+
+        listener.handle(new Record("test.log", "line number 0", 100), counting(acked));
+        listener.handle(new Record("test.log", "line number 1", 200), counting(acked));
+        listener.flush();
+        assertEquals(200, listener.getFlushedPosition());
+
+        /* the first line of the new generation */
+        listener.handle(new Record("test.log", "line number 2", 10), counting(acked));
+        listener.flush();
+        assertEquals(10, listener.getFlushedPosition());
+        listener.close();
+    }
+
+    @Test
+    public void testInterruptEndsBackoff() throws Exception {
+        final ForwardingFileEventListener listener = blockedFlush();
+        final AtomicBoolean interrupted = new AtomicBoolean();
+
+        Thread flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    listener.flush();
+                } catch (IllegalStateException e) {
+                    interrupted.set(Thread.currentThread().isInterrupted());
+                }
+            }
+        });
+        flusher.start();
+        Thread.sleep(300);
+
+        flusher.interrupt();
+        flusher.join(5000);
+        assertFalse(flusher.isAlive());
+        assertTrue(interrupted.get());
+    }
+
+    @Test
+    public void testCloseEndsBackoff() throws Exception {
+        final ForwardingFileEventListener listener = blockedFlush();
+
+        Thread flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    listener.flush();
+                } catch (IllegalStateException e) {
+                    // closed
+                }
+            }
+        });
+        flusher.start();
+        Thread.sleep(300);
+
+        try {
+            listener.close();
+            fail("the line could not be sent");
+        } catch (IllegalStateException e) {
+            // unsent line
+        }
+        flusher.join(5000);
+        assertFalse(flusher.isAlive());
+    }
+
+    /* a listener holding a line for a collector which is down, the linger timer not flushing it meanwhile */
+    private ForwardingFileEventListener blockedFlush() throws IOException {
+        InetSocketAddress address = (InetSocketAddress) server.getLocalAddress();
+        server.close();
+
+        ForwardingFileEventListener listener = new ForwardingFileEventListener(address, 1024, 60000);
+        listener.handle("test.log", "a line");
+        return listener;
+    }
+
+    private void serve(Socket socket) {
+        connections.incrementAndGet();
+
+        try (DataInputStream in = new DataInputStream(socket.getInputStream())) {
+            while (true) {
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                received.add(new String(data, Charsets.UTF_8));
+            }
+        } catch (EOFException e) {
+            // client closed
+        } catch (IOException e) {
+            // connection reset
+        }
+    }
+
+    private void waitFor(int lines) throws InterruptedException {
+        for (int i = 0; i < 100 && received.size() < lines; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(lines, received.size());
+    }
+
+    private static Acknowledgement counting(final AtomicInteger acked) {
+        return new Acknowledgement() {
+            @Override
+            public void ack() {
+                acked.incrementAndGet();
+            }
+        };
+    }
+}
@@ -0,0 +1,188 @@
+package com.keedio.tailer.ratelimit;
+
+import com.keedio.tailer.Record;
+import com.keedio.tailer.checkpoint.Acknowledgement;
+import com.keedio.tailer.listener.impl.LogFileEventListener;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RateLimitingListenerTest {
+
+    @Test
+    public void testDrop() {
+        CollectingListener downstream = new CollectingListener();
+        RateLimitingListener listener = new RateLimitingListener(downstream, new RateLimiter(0, 10), null, OverflowMode.DROP);
+
+        AtomicInteger acked = new AtomicInteger();
+        for (int i = 0; i < 100; i++) {
+            listener.handle(new Record("test.log", "line" + i, i), counting(acked));
+        }
+
+        RateLimitCounters counters = listener.getCounters();
+        /* the one second burst, plus the refill while looping */
+        assertTrue(downstream.lines.size() >= 10 && downstream.lines.size() < 15);
+        assertEquals(downstream.lines.size(), counters.getPassedRecords());
+        assertEquals(100 - downstream.lines.size(), counters.getDroppedRecords());
+        assertEquals(0, counters.getSampledOutRecords());
+        assertEquals("line0", downstream.lines.get(0));
+
+        /* shed lines are acknowledged too */
+        assertEquals(100, acked.get());
+    }
+
+    @Test
+    public void testByteLimit() {
+        CollectingListener downstream = new CollectingListener();
+        RateLimitingListener listener = new RateLimitingListener(downstream, new RateLimiter(100, 0), null, OverflowMode.DROP);
+
+        /* 10 bytes with the terminator */
+        for (int i = 0; i < 100; i++) {
+            listener.handle("test.log", "123456789");
+        }
+
+        assertTrue(downstream.lines.size() >= 10 && downstream.lines.size() < 15);
+        assertEquals(10 * (100 - downstream.lines.size()), listener.getCounters().getDroppedBytes());
+    }
+
+    @Test
+    public void testBytesFromPositions() {
+        CollectingListener downstream = new CollectingListener();
+        RateLimitingListener listener = new RateLimitingListener(downstream, null, null, OverflowMode.DROP);
+
+        AtomicInteger acked = new AtomicInteger();
+        /* the first line is counted from its chars, with a one byte terminator */
+        listener.handle(new Record("test.log", "x", 3), counting(acked));
+
+        /* then from positions: 2 bytes chars and CRLF terminators, 4 chars and 7 bytes */
+        for (int i = 1; i <= 10; i++) {
+            listener.handle(new Record("test.log", "\u00e9\u00e9", 3 + 7 * i), counting(acked));
+        }
+
+        /* positions restart in another generation */
+        listener.handle(new Record("test.log.1", "ab", 4), counting(acked));
+
+        assertEquals(2 + 10 * 7 + 3, listener.getCounters().getPassedBytes());
+    }
+
+    @Test
+    public void testSample() {
+        CollectingListener downstream = new CollectingListener();
+        RateLimitingListener listener = new RateLimitingListener(downstream, new RateLimiter(0, 1), null,
+                OverflowMode.SAMPLE, 10);
+
+        for (int i = 0; i < 101; i++) {
+            listener.handle("test.log", "line" + i);
+        }
+
+        /* the burst, then one out of 10 */
+        assertEquals(11, downstream.lines.size());
+        assertEquals("line0", downstream.lines.get(0));
+        assertEquals("line1", downstream.lines.get(1));
+        assertEquals("line11", downstream.lines.get(2));
+        assertEquals(90, listener.getCounters().getSampledOutRecords());
+    }
+
+    @Test
+    public void testHashSampleIsDeterministic() {
+        CollectingListener first = new CollectingListener();
+        CollectingListener second = new CollectingListener();
+        RateLimitingListener firstListener = new RateLimitingListener(first, new RateLimiter(0, 1), null,
+                OverflowMode.HASH_SAMPLE, 4);
+        RateLimitingListener secondListener = new RateLimitingListener(second, new RateLimiter(0, 1), null,
+                OverflowMode.HASH_SAMPLE, 4);
+
+        /* burns the burst */
+        firstListener.handle("a.log", "burst");
+        secondListener.handle("b.log", "burst");
+
+        for (int i = 0; i < 1000; i++) {
+            firstListener.handle("a.log", "line" + i);
+            secondListener.handle("b.log", "line" + i);
+        }
+
+        assertEquals(first.lines, second.lines);
+        assertTrue(first.lines.size() > 150 && first.lines.size() < 350);
+    }
+
+    @Test
+    public void testDelay() {
+        CollectingListener downstream = new CollectingListener();
+        RateLimitingListener listener = new RateLimitingListener(downstream, new RateLimiter(0, 100), null, OverflowMode.DELAY);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 150; i++) {
+            listener.handle("test.log", "line" + i);
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(150, downstream.lines.size());
+        assertTrue("elapsed " + elapsed, elapsed >= 400);
+        assertTrue(listener.getCounters().getDelayedRecords() >= 40);
+        assertTrue(listener.getCounters().getDelayMillis() >= 400);
+    }
+
+    @Test
+    public void testInterruptedDelay() {
+        CollectingListener downstream = new CollectingListener();
+        RateLimitingListener listener = new RateLimitingListener(downstream, new RateLimiter(0, 1), null, OverflowMode.DELAY);
+
+        AtomicInteger acked = new AtomicInteger();
+        listener.handle(new Record("test.log", "line0", 6), counting(acked));
+
+        /* the second line waits for a token: interrupted, it is left to the tailer */
+        Thread.currentThread().interrupt();
+        listener.handle(new Record("test.log", "line1", 12), counting(acked));
+
+        assertTrue(Thread.interrupted());
+        assertEquals(1, downstream.lines.size());
+        assertEquals(1, acked.get());
+        assertEquals(1, listener.getCounters().getPassedRecords());
+        assertEquals(0, listener.getCounters().getDelayedRecords());
+    }
+
+    @Test
+    public void testGlobalLimit() {
+        RateLimiter global = new RateLimiter(0, 10);
+        CollectingListener first = new CollectingListener();
+        CollectingListener second = new CollectingListener();
+        RateLimitingListener firstListener = new RateLimitingListener(first, new RateLimiter(0, 1000), global, OverflowMode.DROP);
+        RateLimitingListener secondListener = new RateLimitingListener(second, null, global, OverflowMode.DROP);
+
+        for (int i = 0; i < 100; i++) {
+            firstListener.handle("a.log", "line" + i);
+            secondListener.handle("b.log", "line" + i);
+        }
+
+        int passed = first.lines.size() + second.lines.size();
+        assertTrue(passed >= 10 && passed < 15);
+        assertEquals(first.lines.size(), second.lines.size(), 1);
+    }
+
+    private static Acknowledgement counting(final AtomicInteger acked) {
+        return new Acknowledgement() {
+            @Override
+            public void ack() {
+                acked.incrementAndGet();
+            }
+        };
+    }
+
+    static class CollectingListener extends LogFileEventListener {
+        final List<String> lines = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void handle(String filename, String line) {
+            lines.add(line);
+        }
+
+        @Override
+        public boolean isValid(String partialLine) {
+            return true;
+        }
+    }
+}
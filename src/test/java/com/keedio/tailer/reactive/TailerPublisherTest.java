@@ -0,0 +1,226 @@
+package com.keedio.tailer.reactive;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.SettableFuture;
+import com.keedio.tailer.LRTailer;
+import com.keedio.tailer.Record;
+import com.keedio.tailer.checkpoint.FileCheckpointStore;
+import com.keedio.tailer.io.LocalFileSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TailerPublisherTest {
+    private File logDir;
+    private File logFile;
+
+    private ExecutorService service = Executors.newCachedThreadPool();
+
+    @Before
+    public void init() throws Exception {
+        logDir = Files.createTempDir();
+        logFile = new File(logDir, "test.log");
+
+        Files.write("line0\nline1\nline2\nline3\nline4\n", logFile, Charsets.UTF_8);
+    }
+
+    @After
+    public void destroy() throws Exception {
+        service.shutdownNow();
+        for (File f : logDir.listFiles()) {
+            f.delete();
+        }
+        logDir.delete();
+    }
+
+    @Test
+    public void testDemandDrivenDelivery() throws Exception {
+        File storeFile = new File(logDir, "checkpoints");
+        TailerPublisher publisher = new TailerPublisher(new FileCheckpointStore(storeFile));
+        LRTailer tailer = new LRTailer(publisher, 50, logFile.getAbsolutePath());
+
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        publisher.subscribe(subscriber);
+        service.submit(tailer);
+
+        subscriber.expect(2);
+        subscriber.subscription.request(2);
+        subscriber.await();
+        assertEquals(2, subscriber.records.size());
+
+        subscriber.expect(3);
+        subscriber.subscription.request(3);
+        subscriber.await();
+        assertEquals(5, subscriber.records.size());
+        assertEquals("line4", subscriber.records.get(4).getLine());
+
+        publisher.acknowledge(subscriber.records.get(2));
+        assertEquals(18L, publisher.getCommittedPosition());
+        assertEquals(18L, new FileCheckpointStore(storeFile).load(logFile.getAbsolutePath()));
+
+        /* acknowledging an older record does not move the committed position back */
+        publisher.acknowledge(subscriber.records.get(0));
+        assertEquals(18L, publisher.getCommittedPosition());
+
+        subscriber.subscription.cancel();
+    }
+
+    @Test
+    public void testAcknowledgeAfterRotation() throws Exception {
+        File storeFile = new File(logDir, "checkpoints");
+        TailerPublisher publisher = new TailerPublisher(new FileCheckpointStore(storeFile));
+        LRTailer tailer = new LRTailer(publisher, 50, logFile.getAbsolutePath());
+
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        publisher.subscribe(subscriber);
+        service.submit(tailer);
+
+        subscriber.expect(5);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.await();
+
+        publisher.acknowledge(subscriber.records.get(4));
+        assertEquals(30L, publisher.getCommittedPosition());
+
+        /* the new generation is shorter: its positions are below the committed one */
+        subscriber.expect(1);
+        assertTrue(logFile.renameTo(new File(logDir, "test.log.1")));
+        Files.write("new0\n", logFile, Charsets.UTF_8);
+        subscriber.await();
+
+        Record last = subscriber.records.get(5);
+        assertEquals("new0", last.getLine());
+
+        publisher.acknowledge(last);
+        assertEquals(5L, publisher.getCommittedPosition());
+
+        FileCheckpointStore store = new FileCheckpointStore(storeFile);
+        assertEquals(5L, store.load(logFile.getAbsolutePath()));
+        assertTrue(store.loadIdentity(logFile.getAbsolutePath())
+                .matches(new LocalFileSource(), logFile.getAbsolutePath()));
+
+        subscriber.subscription.cancel();
+    }
+
+    @Test
+    public void testInterruptStopsWaitingTailer() throws Exception {
+        TailerPublisher publisher = new TailerPublisher();
+        LRTailer tailer = new LRTailer(publisher, 50, logFile.getAbsolutePath());
+
+        publisher.subscribe(new CollectingSubscriber());
+        Future<?> future = service.submit(tailer);
+
+        /* no demand: the tailer waits in handle() until interrupted */
+        Thread.sleep(200);
+        future.cancel(true);
+        service.shutdown();
+
+        assertTrue(service.awaitTermination(1, TimeUnit.SECONDS));
+
+        /* the first line was not delivered, it is read again if the tailer runs again */
+        assertEquals(0, tailer.getLastFullLinePosition());
+    }
+
+    @Test
+    public void testErrorSignalledAfterOnNext() throws Exception {
+        TailerPublisher publisher = new TailerPublisher();
+        LRTailer tailer = new LRTailer(publisher, 50, logFile.getAbsolutePath());
+
+        final AtomicBoolean inOnNext = new AtomicBoolean();
+        final SettableFuture<Boolean> errorInOnNext = SettableFuture.create();
+        CollectingSubscriber subscriber = new CollectingSubscriber() {
+            @Override
+            public void onNext(Record record) {
+                inOnNext.set(true);
+                /* an illegal request while a record is delivered */
+                subscription.request(0);
+                inOnNext.set(false);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                errorInOnNext.set(inOnNext.get());
+                super.onError(t);
+            }
+        };
+        publisher.subscribe(subscriber);
+        service.submit(tailer);
+
+        subscriber.subscription.request(1);
+
+        assertTrue(subscriber.error.get(1, TimeUnit.SECONDS) instanceof IllegalArgumentException);
+        assertFalse(errorInOnNext.get());
+    }
+
+    @Test
+    public void testSecondSubscriberIsRejected() throws Exception {
+        TailerPublisher publisher = new TailerPublisher();
+
+        publisher.subscribe(new CollectingSubscriber());
+
+        CollectingSubscriber second = new CollectingSubscriber();
+        publisher.subscribe(second);
+
+        assertTrue(second.error.get(1, TimeUnit.SECONDS) instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testErrorOnMissingFile() throws Exception {
+        TailerPublisher publisher = new TailerPublisher();
+        LRTailer tailer = new LRTailer(publisher, 50, new File(logDir, "missing.log").getAbsolutePath());
+
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        publisher.subscribe(subscriber);
+        service.submit(tailer);
+
+        assertTrue(subscriber.error.get(1, TimeUnit.SECONDS) instanceof IllegalStateException);
+    }
+
+    static class CollectingSubscriber implements Subscriber<Record> {
+        final List<Record> records = new CopyOnWriteArrayList<>();
+        final SettableFuture<Throwable> error = SettableFuture.create();
+        volatile Subscription subscription;
+        volatile CountDownLatch received = new CountDownLatch(0);
+
+        /* the next records to wait for with await() */
+        void expect(int count) {
+            received = new CountDownLatch(count);
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(received.await(2, TimeUnit.SECONDS));
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            subscription = s;
+        }
+
+        @Override
+        public void onNext(Record record) {
+            records.add(record);
+            received.countDown();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error.set(t);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.keedio.tailer.scheduler;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.keedio.tailer.LRTailer;
+import com.keedio.tailer.PollResult;
+import com.keedio.tailer.io.AttributePoller;
+import com.keedio.tailer.io.LocalFileSource;
+import com.keedio.tailer.listener.impl.LogFileEventListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class FairShareSchedulerTest {
+    private File logDir;
+
+    @Before
+    public void init() throws Exception {
+        logDir = Files.createTempDir();
+    }
+
+    @After
+    public void destroy() throws Exception {
+        for (File f : logDir.listFiles()) {
+            f.delete();
+        }
+        logDir.delete();
+    }
+
+    @Test
+    public void testChattyFileDoesNotStarveOthers() throws Exception {
+        File chatty = write("chatty.log", 20000);
+        File quiet = write("quiet.log", 10);
+
+        CountingListener chattyListener = new CountingListener();
+        CountingListener quietListener = new CountingListener();
+
+        FairShareScheduler scheduler = new FairShareScheduler(10, 1024, 1000, 1024 * 1024, 1);
+        scheduler.add(new LRTailer(chattyListener, 10, chatty.getAbsolutePath()));
+        scheduler.add(new LRTailer(quietListener, 10, quiet.getAbsolutePath()));
+
+        scheduler.runRound();
+
+        assertEquals(10, quietListener.lines.size());
+        assertTrue(chattyListener.lines.size() < 100);
+
+        while (scheduler.runRound() > 0) {
+            // drains the chatty file
+        }
+        assertEquals(20000, chattyListener.lines.size());
+    }
+
+    @Test
+    public void testWeights() throws Exception {
+        File light = write("light.log", 20000);
+        File heavy = write("heavy.log", 20000);
+
+        LRTailer lightTailer = new LRTailer(new CountingListener(), 10, light.getAbsolutePath());
+        LRTailer heavyTailer = new LRTailer(new CountingListener(), 10, heavy.getAbsolutePath());
+
+        FairShareScheduler scheduler = new FairShareScheduler(10, 1024, 1000, 1024 * 1024, 1);
+        scheduler.add(lightTailer, 1, 0);
+        scheduler.add(heavyTailer, 3, 0);
+
+        for (int i = 0; i < 20; i++) {
+            scheduler.runRound();
+        }
+
+        double ratio = (double) scheduler.getBytesRead(heavyTailer) / scheduler.getBytesRead(lightTailer);
+        assertTrue("unexpected ratio: " + ratio, ratio > 2.8 && ratio < 3.2);
+    }
+
+    @Test
+    public void testRecordQuantum() throws Exception {
+        File file = write("test.log", 100);
+        CountingListener listener = new CountingListener();
+
+        FairShareScheduler scheduler = new FairShareScheduler(10, 1024 * 1024, 10, 1024 * 1024, 1);
+        scheduler.add(new LRTailer(listener, 10, file.getAbsolutePath()));
+
+        scheduler.runRound();
+        assertEquals(10, listener.lines.size());
+    }
+
+    @Test
+    public void testPriorityOrder() throws Exception {
+        File low = write("low.log", 1);
+        File high = write("high.log", 1);
+
+        final List<String> order = new CopyOnWriteArrayList<>();
+
+        FairShareScheduler scheduler = new FairShareScheduler(10);
+        scheduler.add(new LRTailer(new OrderListener(order, "low"), 10, low.getAbsolutePath()), 1, 0);
+        scheduler.add(new LRTailer(new OrderListener(order, "high"), 10, high.getAbsolutePath()), 1, 10);
+
+        scheduler.runRound();
+        assertEquals("high", order.get(0));
+        assertEquals("low", order.get(1));
+    }
+
+    @Test
+    public void testFailedTailerIsClosed() throws Exception {
+        File file = write("test.log", 10);
+
+        AttributePoller poller = new AttributePoller(new LocalFileSource(), 0);
+        LRTailer tailer = new LRTailer(new CountingListener() {
+            @Override
+            public void handle(String filename, String line) {
+                throw new IllegalStateException("failing listener");
+            }
+        }, 10, file.getAbsolutePath());
+        tailer.setAttributePoller(poller);
+
+        FairShareScheduler scheduler = new FairShareScheduler(10);
+        scheduler.add(tailer);
+
+        poller.poll();
+        assertEquals(1, poller.getStatCount());
+
+        scheduler.runRound();
+        assertEquals(-1, scheduler.getBytesRead(tailer));
+
+        /* closing the tailer unregistered its file */
+        poller.poll();
+        assertEquals(1, poller.getStatCount());
+    }
+
+    @Test
+    public void testRemoveDuringPoll() throws Exception {
+        File file = write("test.log", 10);
+
+        final FairShareScheduler scheduler = new FairShareScheduler(10);
+        final LRTailer[] tailer = new LRTailer[1];
+        CountingListener listener = new CountingListener() {
+            @Override
+            public void handle(String filename, String line) {
+                super.handle(filename, line);
+
+                /* i.e. by another thread, while the scheduler thread polls the tailer */
+                scheduler.remove(tailer[0]);
+            }
+        };
+        AttributePoller poller = new AttributePoller(new LocalFileSource(), 0);
+        tailer[0] = new LRTailer(listener, 10, file.getAbsolutePath());
+        tailer[0].setAttributePoller(poller);
+        scheduler.add(tailer[0]);
+
+        /* the poll in progress completes */
+        scheduler.runRound();
+        assertEquals(10, listener.lines.size());
+        assertEquals(-1, scheduler.getBytesRead(tailer[0]));
+
+        /* closed at the end of the round, and not polled again */
+        poller.poll();
+        assertEquals(0, poller.getStatCount());
+
+        Files.append("one more line\n", file, Charsets.UTF_8);
+        scheduler.runRound();
+        assertEquals(10, listener.lines.size());
+    }
+
+    @Test
+    public void testLagFromPoll() throws Exception {
+        File file = write("test.log", 100);
+
+        LRTailer tailer = new LRTailer(new CountingListener(), 10, file.getAbsolutePath());
+        tailer.open();
+
+        PollResult result = tailer.poll(100, Integer.MAX_VALUE);
+        assertEquals(file.length() - result.getBytes(), result.getLag());
+
+        result = tailer.poll(Long.MAX_VALUE, Integer.MAX_VALUE);
+        assertEquals(0, result.getLag());
+        tailer.close();
+    }
+
+    private File write(String name, int lines) throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            content.append(name).append(" line number ").append(i).append('\n');
+        }
+        File file = new File(logDir, name);
+        Files.write(content, file, Charsets.UTF_8);
+        return file;
+    }
+
+    static class CountingListener extends LogFileEventListener {
+        final List<String> lines = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void handle(String filename, String line) {
+            lines.add(line);
+        }
+
+        @Override
+        public boolean isValid(String partialLine) {
+            return true;
+        }
+    }
+
+    static class OrderListener extends CountingListener {
+        private final List<String> order;
+        private final String name;
+
+        OrderListener(List<String> order, String name) {
+            this.order = order;
+            this.name = name;
+        }
+
+        @Override
+        public void handle(String filename, String line) {
+            order.add(name);
+        }
+    }
+}
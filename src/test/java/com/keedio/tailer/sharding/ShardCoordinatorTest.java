@@ -0,0 +1,242 @@
+package com.keedio.tailer.sharding;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.keedio.tailer.LRTailer;
+import com.keedio.tailer.StartPosition;
+import com.keedio.tailer.listener.impl.LogFileEventListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class ShardCoordinatorTest {
+    private static final long HEARTBEAT = 20;
+    private static final long LEASE_TIMEOUT = 200;
+
+    private File logDir;
+    private File coordinationDir;
+    private List<String> filenames;
+
+    /* lines delivered by all the instances */
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @Before
+    public void init() throws Exception {
+        logDir = Files.createTempDir();
+        coordinationDir = new File(logDir, "coordination");
+
+        filenames = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            File file = new File(logDir, "test" + i + ".log");
+            Files.write("test" + i + " line0\n", file, Charsets.UTF_8);
+            filenames.add(file.getAbsolutePath());
+        }
+    }
+
+    @After
+    public void destroy() throws Exception {
+        executor.shutdownNow();
+        for (File f : coordinationDir.listFiles()) {
+            f.delete();
+        }
+        coordinationDir.delete();
+        for (File f : logDir.listFiles()) {
+            f.delete();
+        }
+        logDir.delete();
+    }
+
+    @Test
+    public void testFilesAreSharedAndHandedOff() throws Exception {
+        ShardCoordinator first = coordinator("first", new ArrayList<LRTailer>());
+        first.tick();
+        assertEquals(4, first.getOwnedFiles().size());
+        waitForLines(4);
+
+        /* a second instance joins: the first one releases half of the files once their tailers exit */
+        ShardCoordinator second = coordinator("second", new ArrayList<LRTailer>());
+        tickUntilBalanced(second, first);
+
+        assertEquals(2, first.getOwnedFiles().size());
+        assertEquals(2, second.getOwnedFiles().size());
+
+        Set<String> all = new HashSet<>(first.getOwnedFiles());
+        all.addAll(second.getOwnedFiles());
+        assertEquals(new HashSet<>(filenames), all);
+
+        appendLine(1);
+        waitForLines(8);
+        assertNoDuplicates();
+
+        /* the second instance stops: the first one takes its files back */
+        second.releaseAll();
+        first.tick();
+        assertEquals(4, first.getOwnedFiles().size());
+
+        appendLine(2);
+        waitForLines(12);
+        assertNoDuplicates();
+        first.releaseAll();
+    }
+
+    @Test
+    public void testRebalanceOnDeath() throws Exception {
+        List<LRTailer> secondTailers = new ArrayList<>();
+        ShardCoordinator first = coordinator("first", new ArrayList<LRTailer>());
+        ShardCoordinator second = coordinator("second", secondTailers);
+
+        tickUntilBalanced(second, first);
+        assertEquals(2, first.getOwnedFiles().size());
+        assertEquals(2, second.getOwnedFiles().size());
+        waitForLines(4);
+
+        /* heartbeats the positions of the lines read */
+        second.tick();
+
+        /* the second instance dies without releasing its files */
+        for (LRTailer tailer : secondTailers) {
+            tailer.stop();
+        }
+        appendLine(1);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (first.getOwnedFiles().size() < 4 && System.currentTimeMillis() < deadline) {
+            first.tick();
+            Thread.sleep(HEARTBEAT);
+        }
+
+        assertEquals(4, first.getOwnedFiles().size());
+        waitForLines(8);
+        assertNoDuplicates();
+        first.releaseAll();
+    }
+
+    @Test
+    public void testRestartReclaimsOwnLeases() throws Exception {
+        List<LRTailer> tailers = new ArrayList<>();
+        ShardCoordinator first = coordinator("first", tailers);
+        first.tick();
+        waitForLines(4);
+
+        /* heartbeats the positions of the lines read */
+        first.tick();
+
+        /* the process dies without releasing its files */
+        for (LRTailer tailer : tailers) {
+            tailer.stop();
+        }
+        appendLine(1);
+
+        /* and is restarted with the same identifier: its leases are reclaimed without waiting for them to expire */
+        ShardCoordinator restarted = coordinator("first", new ArrayList<LRTailer>());
+        restarted.tick();
+        assertEquals(4, restarted.getOwnedFiles().size());
+
+        waitForLines(8);
+        assertNoDuplicates();
+        restarted.releaseAll();
+    }
+
+    @Test
+    public void testHandOffAfterRotation() throws Exception {
+        List<LRTailer> firstTailers = new ArrayList<>();
+        ShardCoordinator first = coordinator("first", firstTailers);
+        first.tick();
+        waitForLines(4);
+        first.tick();
+
+        /* the first instance dies, then the files rotate: the new files are longer than the handed off offsets */
+        for (LRTailer tailer : firstTailers) {
+            tailer.stop();
+        }
+        for (int i = 0; i < filenames.size(); i++) {
+            File file = new File(filenames.get(i));
+            assertTrue(file.renameTo(new File(file.getPath() + ".1")));
+            Files.write("test" + i + " rotated line0\ntest" + i + " rotated line1\n", file, Charsets.UTF_8);
+        }
+
+        ShardCoordinator second = coordinator("second", new ArrayList<LRTailer>());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (second.getOwnedFiles().size() < 4 && System.currentTimeMillis() < deadline) {
+            second.tick();
+            Thread.sleep(HEARTBEAT);
+        }
+        assertEquals(4, second.getOwnedFiles().size());
+
+        /* the new generations are read from their beginning */
+        waitForLines(12);
+        assertTrue(delivered.contains("test0 rotated line0"));
+        assertNoDuplicates();
+        second.releaseAll();
+    }
+
+    private void tickUntilBalanced(ShardCoordinator... coordinators) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (System.currentTimeMillis() < deadline) {
+            boolean balanced = true;
+            for (ShardCoordinator coordinator : coordinators) {
+                coordinator.tick();
+                balanced &= coordinator.getOwnedFiles().size() == filenames.size() / coordinators.length;
+            }
+            if (balanced) {
+                return;
+            }
+            Thread.sleep(HEARTBEAT);
+        }
+    }
+
+    private ShardCoordinator coordinator(String id, final List<LRTailer> tailers) throws Exception {
+        return new ShardCoordinator(coordinationDir, id, filenames, new TailerFactory() {
+            @Override
+            public LRTailer create(String filename, StartPosition startPosition) {
+                LRTailer tailer = new LRTailer(new LogFileEventListener() {
+                    @Override
+                    public void handle(String filename, String line) {
+                        delivered.add(line);
+                    }
+
+                    @Override
+                    public boolean isValid(String partialLine) {
+                        return true;
+                    }
+                }, 10, filename, startPosition);
+                tailers.add(tailer);
+                return tailer;
+            }
+        }, executor, HEARTBEAT, LEASE_TIMEOUT);
+    }
+
+    private void appendLine(int number) throws Exception {
+        for (int i = 0; i < filenames.size(); i++) {
+            try (FileOutputStream out = new FileOutputStream(filenames.get(i), true)) {
+                out.write(("test" + i + " line" + number + "\n").getBytes(Charsets.UTF_8));
+            }
+        }
+    }
+
+    private void waitForLines(int lines) throws InterruptedException {
+        for (int i = 0; i < 250 && delivered.size() < lines; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(lines, delivered.size());
+    }
+
+    private void assertNoDuplicates() {
+        assertEquals(delivered.size(), new HashSet<>(delivered).size());
+    }
+}
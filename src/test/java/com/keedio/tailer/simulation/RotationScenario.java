@@ -0,0 +1,354 @@
+package com.keedio.tailer.simulation;
+
+import com.keedio.tailer.LRTailer;
+import com.keedio.tailer.io.AttributePoller;
+import com.keedio.tailer.listener.FileEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * <p>
+ *     A randomized rotation scenario run in virtual time: a writer appends numbered lines to a log file, in random
+ *     chunks, while the file is rotated logrotate-style, and a {@link com.keedio.tailer.LRTailer} tails it through a
+ *     {@link com.keedio.tailer.simulation.SimulatedFileSource} and a {@link com.keedio.tailer.simulation.SimulatedClock}.
+ * </p>
+ * <p>
+ *     The whole script (line contents, chunk boundaries, write times, rotations and compressions) is derived from
+ *     the seed, so a failing scenario is reproduced by running its seed again.
+ * </p>
+ * <p>
+ *     Rotated generations are named <code>app.log.1</code>, <code>app.log.2</code>..., and the listener always
+ *     reports <code>app.log.1</code> as the rotated file. Unless overlapping rotations are allowed, the scenario
+ *     leaves the tailer a poll between a write and the next rotation, and after each rotation before writing again.
+ * </p>
+ * <p>
+ *     With {@link Rotation#RENAME_CREATE_LATE_WRITE}, the writer keeps writing to the renamed file after the new one
+ *     is created, as an application does until it reopens its log: the renamed generation is modified after the
+ *     creation of the next one. The rotation happens right after a round of the attribute poller, and the late line
+ *     is written before the next round, so that the tailer cannot drain the renamed generation before it.
+ * </p>
+ */
+public class RotationScenario {
+
+    /**
+     * Rotation styles.
+     */
+    public enum Rotation {
+        /* app.log is renamed to app.log.1 and a new app.log is created */
+        RENAME_CREATE,
+        /* app.log is renamed and compressed right away */
+        RENAME_CREATE_COMPRESS,
+        /* app.log is renamed, app.log.1 is compressed at the next rotation */
+        RENAME_CREATE_DELAYCOMPRESS,
+        /* app.log is copied to app.log.1 and truncated */
+        COPY_TRUNCATE,
+        /* app.log is renamed and a new app.log created, the writer appending a last line to app.log.1 before
+           reopening app.log: polled and not overlapping scenarios only */
+        RENAME_CREATE_LATE_WRITE
+    }
+
+    static final String LOG = "/sim/app.log";
+
+    /* rotated generations kept */
+    private static final int KEEP = 4;
+
+    private final long seed;
+
+    private final Rotation[] rotations;
+
+    private final boolean overlapping;
+
+    private final SimulatedClock clock = new SimulatedClock();
+
+    private final SimulatedFileSource files = new SimulatedFileSource(clock);
+
+    private final List<String> written = new ArrayList<>();
+
+    private final List<String> delivered = new ArrayList<>();
+
+    private final List<Exception> errors = new ArrayList<>();
+
+    private int rotationCount = 0;
+
+    private boolean polled = false;
+
+    private AttributePoller attributePoller;
+
+    /**
+     * @param seed the seed of the scenario.
+     * @param overlapping true to rotate at any line boundary, even several times between two polls.
+     * @param rotations the rotation styles to pick from.
+     */
+    public RotationScenario(long seed, boolean overlapping, Rotation... rotations) {
+        this.seed = seed;
+        this.overlapping = overlapping;
+        this.rotations = rotations;
+    }
+
+    /**
+     * Makes the tailer check the snapshots of an {@link com.keedio.tailer.io.AttributePoller}, run every
+     * <code>sleepTime</code> in virtual time, instead of stating the file at every poll.
+     *
+     * @return this scenario.
+     */
+    public RotationScenario polled() {
+        this.polled = true;
+        return this;
+    }
+
+    /**
+     * Runs the scenario until the tailer has read the whole script.
+     *
+     * @return this scenario.
+     */
+    public RotationScenario run() {
+        Random random = new Random(seed);
+        long sleepTime = 10 + random.nextInt(100);
+        int lines = 10 + random.nextInt(200);
+        double rotationProbability = 0.02 + 0.3 * random.nextDouble();
+
+        final LRTailer tailer = new LRTailer(new SimulationListener(), sleepTime, LOG);
+        tailer.setFileSource(files);
+        tailer.setClock(clock);
+
+        if (polled) {
+            attributePoller = new AttributePoller(files, sleepTime);
+            attributePoller.setClock(clock);
+            tailer.setAttributePoller(attributePoller);
+            schedulePoll(sleepTime / 2, sleepTime);
+        }
+
+        if (!polled || overlapping) {
+            for (Rotation rotation : rotations) {
+                if (rotation == Rotation.RENAME_CREATE_LATE_WRITE) {
+                    throw new IllegalStateException(rotation + " needs a polled, not overlapping, scenario");
+                }
+            }
+        }
+
+        files.create(LOG);
+
+        long time = 1;
+        long generationLine = -1;
+
+        for (int i = 0; i < lines; i++) {
+            time = write(random, time, LOG, sleepTime, false);
+
+            if (generationLine < 0) {
+                generationLine = time;
+            }
+
+            boolean allowed = overlapping || time >= generationLine + sleepTime;
+
+            if (allowed && random.nextDouble() < rotationProbability) {
+                Rotation rotation = rotations[random.nextInt(rotations.length)];
+
+                if (rotation == Rotation.RENAME_CREATE_LATE_WRITE) {
+                    /* right after a round of the attribute poller, the late line written before the next one */
+                    time = sleepTime / 2 + ((time - sleepTime / 2) / sleepTime + 1) * sleepTime + 1;
+                    scheduleRotation(time, rotation, 0);
+                    time = write(random, time, LOG + ".1", sleepTime, true);
+                } else {
+                    /* generations are told apart by modification time: a rotation is not in the millisecond of a
+                       write */
+                    time += 1 + random.nextInt((int) sleepTime);
+                    scheduleRotation(time, rotation, random.nextInt((int) sleepTime));
+                }
+
+                generationLine = -1;
+                if (!overlapping) {
+                    time += sleepTime;
+                }
+            }
+        }
+
+        /* the attribute poller detects the last rotation up to two intervals later */
+        clock.schedule(time + (polled ? 5 : 3) * sleepTime, new Runnable() {
+            @Override
+            public void run() {
+                tailer.stop();
+            }
+        });
+
+        try {
+            tailer.run();
+        } catch (RuntimeException e) {
+            errors.add(e);
+        }
+
+        return this;
+    }
+
+    /**
+     * @return null if every written line has been delivered exactly once and in order, else the first difference.
+     */
+    public String check() {
+        if (!errors.isEmpty()) {
+            return "seed " + seed + ": " + errors.get(0);
+        }
+
+        for (int i = 0; i < Math.max(written.size(), delivered.size()); i++) {
+            String expected = i < written.size() ? written.get(i) : null;
+            String actual = i < delivered.size() ? delivered.get(i) : null;
+
+            if (expected == null || !expected.equals(actual)) {
+                return "seed " + seed + ", " + rotationCount + " rotations: line " + i + " expected <" + expected
+                        + "> but delivered <" + actual + ">, " + written.size() + " lines written, "
+                        + delivered.size() + " delivered";
+            }
+        }
+        return null;
+    }
+
+    public List<String> getDelivered() {
+        return delivered;
+    }
+
+    public int getRotationCount() {
+        return rotationCount;
+    }
+
+    public long getEndTime() {
+        return clock.currentTimeMillis();
+    }
+
+    /**
+     * @return the number of stats of the attribute poller, if polled.
+     */
+    public long getStatCount() {
+        return attributePoller == null ? 0 : attributePoller.getStatCount();
+    }
+
+    /* rounds of the attribute poller, until the tailer stops */
+    private void schedulePoll(final long time, final long interval) {
+        clock.schedule(time, new Runnable() {
+            @Override
+            public void run() {
+                attributePoller.poll();
+
+                if (clock.getPendingEvents() > 0) {
+                    schedulePoll(time + interval, interval);
+                }
+            }
+        });
+    }
+
+    /* schedules the writing of the next line in 1 to 3 chunks, 1ms apart if late, returns the last write time */
+    private long write(Random random, long time, String path, long sleepTime, boolean late) {
+        String line = written.size() + ":" + letters(random, random.nextInt(60)) + ".";
+        byte[] data = (line + (random.nextInt(10) == 0 ? "\r\n" : "\n")).getBytes(StandardCharsets.UTF_8);
+        written.add(line);
+
+        int offset = 0;
+        while (offset < data.length) {
+            int count = random.nextInt(3) == 0 ? data.length - offset : 1 + random.nextInt(data.length - offset);
+            time += late ? 1 : random.nextInt((int) sleepTime);
+            scheduleAppend(time, path, data, offset, count);
+            offset += count;
+        }
+        return time;
+    }
+
+    private void scheduleAppend(long time, final String path, final byte[] data, final int offset, final int count) {
+        clock.schedule(time, new Runnable() {
+            @Override
+            public void run() {
+                byte[] chunk = new byte[count];
+                System.arraycopy(data, offset, chunk, 0, count);
+                files.append(path, chunk);
+            }
+        });
+    }
+
+    private void scheduleRotation(long time, final Rotation rotation, long compressDelay) {
+        clock.schedule(time, new Runnable() {
+            @Override
+            public void run() {
+                rotationCount++;
+
+                if (rotation == Rotation.RENAME_CREATE_DELAYCOMPRESS && files.exists(LOG + ".1")) {
+                    files.compress(LOG + ".1");
+                }
+
+                shift();
+
+                if (rotation == Rotation.COPY_TRUNCATE) {
+                    files.copy(LOG, LOG + ".1");
+                    files.truncate(LOG, 0);
+                } else {
+                    files.rename(LOG, LOG + ".1");
+                    files.create(LOG);
+                }
+            }
+        });
+
+        if (rotation == Rotation.RENAME_CREATE_COMPRESS) {
+            clock.schedule(time + compressDelay, new Runnable() {
+                @Override
+                public void run() {
+                    if (files.exists(LOG + ".1")) {
+                        files.compress(LOG + ".1");
+                    }
+                }
+            });
+        }
+    }
+
+    /* app.log.n becomes app.log.n+1, the oldest generation is removed */
+    private void shift() {
+        files.delete(LOG + "." + KEEP);
+        files.delete(LOG + "." + KEEP + ".gz");
+
+        for (int i = KEEP - 1; i >= 1; i--) {
+            for (String suffix : new String[]{"", ".gz"}) {
+                if (files.exists(LOG + "." + i + suffix)) {
+                    files.rename(LOG + "." + i + suffix, LOG + "." + (i + 1) + suffix);
+                }
+            }
+        }
+    }
+
+    private static String letters(Random random, int count) {
+        char[] letters = new char[count];
+        for (int i = 0; i < count; i++) {
+            letters[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+
+    /* lines end with a dot, which is not part of the payload */
+    private class SimulationListener implements FileEventListener {
+
+        @Override
+        public void handle(String filename, String line) {
+            delivered.add(line);
+        }
+
+        @Override
+        public void init(LRTailer lrTailer) {
+        }
+
+        @Override
+        public String rotated(long lastPosition, long currPosition) {
+            return LOG + ".1";
+        }
+
+        @Override
+        public void notExists() {
+            errors.add(new IllegalStateException(LOG + " does not exist"));
+        }
+
+        @Override
+        public void handleException(Exception e) {
+            errors.add(e);
+        }
+
+        @Override
+        public boolean isValid(String partialLine) {
+            return partialLine.endsWith(".");
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.keedio.tailer.simulation;
+
+import com.keedio.tailer.LRTailer;
+import com.keedio.tailer.listener.FileEventListener;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.keedio.tailer.simulation.RotationScenario.Rotation.*;
+import static org.junit.Assert.*;
+
+public class RotationSimulationTest {
+    private final static Logger LOGGER = LogManager.getLogger(RotationSimulationTest.class);
+
+    private static final int SCENARIOS = 2000;
+
+    @Test
+    public void testRenameCreate() {
+        runScenarios(false, RENAME_CREATE, RENAME_CREATE_COMPRESS, RENAME_CREATE_DELAYCOMPRESS);
+    }
+
+    @Test
+    public void testOverlappingRotations() {
+        runScenarios(true, RENAME_CREATE, RENAME_CREATE_COMPRESS, RENAME_CREATE_DELAYCOMPRESS);
+    }
+
+    @Test
+    public void testCopyTruncate() {
+        runScenarios(false, RENAME_CREATE, RENAME_CREATE_COMPRESS, RENAME_CREATE_DELAYCOMPRESS, COPY_TRUNCATE);
+    }
+
+    @Test
+    public void testPolledAttributes() {
+        runScenarios(false, true, RENAME_CREATE, RENAME_CREATE_COMPRESS, RENAME_CREATE_DELAYCOMPRESS);
+        runScenarios(true, true, RENAME_CREATE, RENAME_CREATE_COMPRESS, RENAME_CREATE_DELAYCOMPRESS);
+    }
+
+    @Test
+    public void testLateWriteToRenamedFile() {
+        runScenarios(false, true, RENAME_CREATE, RENAME_CREATE_LATE_WRITE, RENAME_CREATE_DELAYCOMPRESS);
+    }
+
+    @Test
+    public void testDeterministic() {
+        RotationScenario first = new RotationScenario(42, false, RENAME_CREATE, RENAME_CREATE_COMPRESS).run();
+        RotationScenario second = new RotationScenario(42, false, RENAME_CREATE, RENAME_CREATE_COMPRESS).run();
+
+        assertTrue(first.getRotationCount() > 0);
+        assertEquals(first.getRotationCount(), second.getRotationCount());
+        assertEquals(first.getEndTime(), second.getEndTime());
+        assertEquals(first.getDelivered(), second.getDelivered());
+    }
+
+    @Test
+    public void testResumeReplacedFile() {
+        SimulatedClock clock = new SimulatedClock();
+        SimulatedFileSource files = new SimulatedFileSource(clock);
+        clock.advanceTo(1000);
+        files.create("/var/log/app.log");
+        files.append("/var/log/app.log", "old 1\nold 2\n".getBytes(StandardCharsets.US_ASCII));
+
+        CollectingListener listener = new CollectingListener();
+        LRTailer tailer = new LRTailer(listener, 100, "/var/log/app.log");
+        tailer.setFileSource(files);
+        tailer.setClock(clock);
+
+        tailer.open();
+        tailer.poll(Long.MAX_VALUE, Integer.MAX_VALUE);
+        tailer.close();
+
+        /* rewritten in place, the file keeps its key like a new file reusing the inode of a removed one */
+        files.truncate("/var/log/app.log", 0);
+        files.append("/var/log/app.log", "new 1\nnew 2\nnew 3\n".getBytes(StandardCharsets.US_ASCII));
+
+        tailer.open();
+        tailer.poll(Long.MAX_VALUE, Integer.MAX_VALUE);
+        tailer.close();
+
+        assertEquals(Arrays.asList("old 1", "old 2", "new 1", "new 2", "new 3"), listener.lines);
+    }
+
+    private static void runScenarios(boolean overlapping, RotationScenario.Rotation... rotations) {
+        runScenarios(overlapping, false, rotations);
+    }
+
+    private static void runScenarios(boolean overlapping, boolean polled, RotationScenario.Rotation... rotations) {
+        long start = System.nanoTime();
+        int rotationCount = 0;
+
+        for (long seed = 0; seed < SCENARIOS; seed++) {
+            RotationScenario scenario = new RotationScenario(seed, overlapping, rotations);
+            if (polled) {
+                scenario.polled();
+            }
+            scenario.run();
+
+            String failure = scenario.check();
+            if (failure != null) {
+                fail(failure);
+            }
+            rotationCount += scenario.getRotationCount();
+        }
+
+        long elapsed = Math.max(1, (System.nanoTime() - start) / 1000000);
+        LOGGER.debug(SCENARIOS + " scenarios, " + rotationCount + " rotations in " + elapsed + " ms ("
+                + SCENARIOS * 1000 / elapsed + " scenarios/s)");
+    }
+
+    private static class CollectingListener implements FileEventListener {
+        private final List<String> lines = new ArrayList<>();
+
+        @Override
+        public void handle(String filename, String line) {
+            lines.add(line);
+        }
+
+        @Override
+        public void init(LRTailer lrTailer) {
+        }
+
+        @Override
+        public String rotated(long lastPosition, long currPosition) {
+            return null;
+        }
+
+        @Override
+        public void notExists() {
+        }
+
+        @Override
+        public void handleException(Exception e) {
+        }
+
+        @Override
+        public boolean isValid(String partialLine) {
+            return true;
+        }
+    }
+}
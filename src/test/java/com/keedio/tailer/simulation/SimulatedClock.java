@@ -0,0 +1,83 @@
+package com.keedio.tailer.simulation;
+
+import com.keedio.tailer.clock.Clock;
+
+import java.util.PriorityQueue;
+
+/**
+ * <p>
+ *     A virtual clock running scheduled events while the caller sleeps.
+ * </p>
+ * <p>
+ *     {@link #sleep(long)} does not wait: it runs, in order, the events scheduled until the end of the sleep and
+ *     advances the time. Events scheduled at the same time run in the order they were scheduled. A single thread
+ *     runs both the tailer and the events, so a simulation is fully deterministic.
+ * </p>
+ */
+public class SimulatedClock implements Clock {
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+
+    private long now = 0;
+
+    private long sequence = 0;
+
+    /**
+     * @param time the virtual time to run the action at, in milliseconds.
+     * @param action the action to run.
+     */
+    public void schedule(long time, Runnable action) {
+        events.add(new Event(Math.max(time, now), sequence++, action));
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    @Override
+    public void sleep(long millis) {
+        advanceTo(now + millis);
+    }
+
+    /**
+     * Runs the events scheduled until the given time, and advances the time.
+     *
+     * @param time the virtual time to advance to.
+     */
+    public void advanceTo(long time) {
+        while (!events.isEmpty() && events.peek().time <= time) {
+            Event event = events.poll();
+            now = event.time;
+            event.action.run();
+        }
+        now = Math.max(now, time);
+    }
+
+    /**
+     * @return the number of events not run yet.
+     */
+    public int getPendingEvents() {
+        return events.size();
+    }
+
+    private static class Event implements Comparable<Event> {
+        private final long time;
+        private final long sequence;
+        private final Runnable action;
+
+        Event(long time, long sequence, Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event o) {
+            if (time != o.time) {
+                return time < o.time ? -1 : 1;
+            }
+            return sequence < o.sequence ? -1 : (sequence == o.sequence ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.keedio.tailer.simulation;
+
+import com.keedio.tailer.clock.Clock;
+import com.keedio.tailer.io.FileAttributes;
+import com.keedio.tailer.io.FileSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.io.File;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * <p>
+ *     An in-memory file system whose files are created, appended to, renamed, truncated and compressed by a
+ *     simulation script, with times read from a {@link com.keedio.tailer.clock.Clock}.
+ * </p>
+ * <p>
+ *     Like a POSIX file system, names point to inodes: open channels keep reading their inode after it has been
+ *     renamed or removed, and see the data appended to it. The inode number is the file key.
+ * </p>
+ */
+public class SimulatedFileSource implements FileSource {
+
+    private final Clock clock;
+
+    private final Map<String, Inode> files = new HashMap<>();
+
+    /* reused by compress(), initializing a deflater costs more than compressing a small file */
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+
+    private long nextInode = 1;
+
+    public SimulatedFileSource(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Creates an empty file, replacing the existing one if any.
+     */
+    public void create(String path) {
+        files.put(path, new Inode(nextInode++, clock.currentTimeMillis()));
+    }
+
+    public void append(String path, byte[] data) {
+        Inode inode = get(path);
+        inode.append(data, 0, data.length);
+        inode.modified = clock.currentTimeMillis();
+    }
+
+    /**
+     * Renames a file, replacing the target if it exists.
+     */
+    public void rename(String from, String to) {
+        files.put(to, get(from));
+        files.remove(from);
+    }
+
+    /**
+     * Copies a file to a new file, replacing the target if it exists.
+     */
+    public void copy(String from, String to) {
+        Inode source = get(from);
+        Inode copy = new Inode(nextInode++, clock.currentTimeMillis());
+        copy.append(source.data, 0, source.size);
+
+        files.put(to, copy);
+    }
+
+    public void truncate(String path, int size) {
+        Inode inode = get(path);
+        inode.size = Math.min(inode.size, size);
+        inode.modified = clock.currentTimeMillis();
+    }
+
+    /**
+     * Compresses a file to <code>path.gz</code> and removes it, like gzip: the compressed file keeps the
+     * modification time of the original one.
+     */
+    public void compress(String path) {
+        Inode source = get(path);
+        Inode inode = new Inode(nextInode++, clock.currentTimeMillis());
+        inode.modified = source.modified;
+
+        /* header: magic, deflate, no flags, no time, no extra flags, unknown OS */
+        inode.append(new byte[]{0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff}, 0, 10);
+
+        deflater.reset();
+        deflater.setInput(source.data, 0, source.size);
+        deflater.finish();
+
+        byte[] block = new byte[4096];
+        while (!deflater.finished()) {
+            int count = deflater.deflate(block);
+            inode.append(block, 0, count);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(source.data, 0, source.size);
+
+        /* trailer: CRC-32 and size, little-endian */
+        ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        trailer.putInt((int) crc.getValue()).putInt(source.size);
+        inode.append(trailer.array(), 0, 8);
+
+        files.put(path + ".gz", inode);
+        files.remove(path);
+    }
+
+    public void delete(String path) {
+        files.remove(path);
+    }
+
+    /**
+     * @return the content of the file.
+     */
+    public byte[] read(String path) {
+        Inode inode = get(path);
+        return Arrays.copyOf(inode.data, inode.size);
+    }
+
+    @Override
+    public boolean exists(String path) {
+        return files.containsKey(path);
+    }
+
+    @Override
+    public FileAttributes readAttributes(String path) throws IOException {
+        Inode inode = files.get(path);
+
+        if (inode == null) {
+            throw new NoSuchFileException(path);
+        }
+        return new FileAttributes(inode.size, inode.created, inode.modified, inode.id);
+    }
+
+    @Override
+    public SeekableByteChannel open(String path) throws IOException {
+        Inode inode = files.get(path);
+
+        if (inode == null) {
+            throw new NoSuchFileException(path);
+        }
+        return new InodeChannel(inode);
+    }
+
+    @Override
+    public List<String> list(String directory) {
+        List<String> paths = new ArrayList<>();
+
+        for (String path : files.keySet()) {
+            if (directory.equals(new File(path).getParent())) {
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+
+    private Inode get(String path) {
+        Inode inode = files.get(path);
+
+        if (inode == null) {
+            throw new IllegalStateException(path + " does not exist");
+        }
+        return inode;
+    }
+
+    private static class Inode {
+        private final long id;
+        private final long created;
+        private long modified;
+        private byte[] data = new byte[64];
+        private int size = 0;
+
+        Inode(long id, long created) {
+            this.id = id;
+            this.created = created;
+            this.modified = created;
+        }
+
+        void append(byte[] bytes, int offset, int length) {
+            if (size + length > data.length) {
+                data = Arrays.copyOf(data, Math.max(2 * data.length, size + length));
+            }
+            System.arraycopy(bytes, offset, data, size, length);
+            size += length;
+        }
+    }
+
+    private static class InodeChannel implements SeekableByteChannel {
+        private final Inode inode;
+        private long position = 0;
+        private boolean open = true;
+
+        InodeChannel(Inode inode) {
+            this.inode = inode;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            if (position >= inode.size) {
+                return -1;
+            }
+
+            int count = (int) Math.min(dst.remaining(), inode.size - position);
+            dst.put(inode.data, (int) position, count);
+            position += count;
+
+            return count;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) {
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() {
+            return inode.size;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.keedio.tailer.spill;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.keedio.tailer.Record;
+import com.keedio.tailer.checkpoint.Acknowledgement;
+import com.keedio.tailer.listener.impl.LogFileEventListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class MappedSpillQueueTest {
+    private File queueDir;
+
+    @Before
+    public void init() throws Exception {
+        queueDir = Files.createTempDir();
+    }
+
+    @After
+    public void destroy() throws Exception {
+        for (File f : queueDir.listFiles()) {
+            f.delete();
+        }
+        queueDir.delete();
+    }
+
+    @Test
+    public void testAppendAndRemoveAcrossSegments() throws Exception {
+        MappedSpillQueue queue = new MappedSpillQueue(queueDir, 128, 100);
+
+        assertTrue(queue.isEmpty());
+
+        for (int i = 0; i < 50; i++) {
+            queue.append(bytes("record number " + i));
+        }
+        assertTrue(queue.getSegmentCount() > 1);
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals("record number " + i, string(queue.peek()));
+            queue.remove();
+        }
+
+        assertNull(queue.peek());
+        assertEquals(1, queue.getSegmentCount());
+    }
+
+    @Test
+    public void testRecoverAfterRestart() throws Exception {
+        MappedSpillQueue queue = new MappedSpillQueue(queueDir, 128, 100);
+        for (int i = 0; i < 30; i++) {
+            queue.append(bytes("record number " + i));
+        }
+        for (int i = 0; i < 12; i++) {
+            queue.remove();
+        }
+        /* peeked but not removed */
+        assertEquals("record number 12", string(queue.peek()));
+        queue.close();
+
+        MappedSpillQueue reopened = new MappedSpillQueue(queueDir, 128, 100);
+        reopened.append(bytes("record number 30"));
+
+        for (int i = 12; i <= 30; i++) {
+            assertEquals("record number " + i, string(reopened.peek()));
+            reopened.remove();
+        }
+        assertTrue(reopened.isEmpty());
+    }
+
+    @Test
+    public void testSegmentsAreRecycled() throws Exception {
+        MappedSpillQueue queue = new MappedSpillQueue(queueDir, 128, 3);
+
+        for (int i = 0; i < 1000; i++) {
+            queue.append(bytes("record number " + i));
+            assertEquals("record number " + i, string(queue.peek()));
+            queue.remove();
+        }
+
+        /* segments and cursor */
+        assertTrue(queueDir.listFiles().length <= 4);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testSizeCap() throws Exception {
+        MappedSpillQueue queue = new MappedSpillQueue(queueDir, 128, 2);
+
+        int appended = 0;
+        while (queue.offer(bytes("record number " + appended), 10)) {
+            appended++;
+        }
+        assertEquals(2, queue.getSegmentCount());
+
+        /* reading the first segment frees room for a new one */
+        while (queue.getSegmentCount() == 2) {
+            queue.remove();
+            queue.peek();
+        }
+        assertTrue(queue.offer(bytes("one more"), 10));
+    }
+
+    @Test
+    public void testSpillingListener() throws Exception {
+        final List<String> delivered = new CopyOnWriteArrayList<>();
+        final boolean[] failOnce = {true};
+
+        LogFileEventListener downstream = new LogFileEventListener() {
+            @Override
+            public void handle(String filename, String line) {
+                if (line.equals("line1") && failOnce[0]) {
+                    failOnce[0] = false;
+                    throw new IllegalStateException("downstream unavailable");
+                }
+                delivered.add(line);
+            }
+        };
+
+        SpillingListener listener = new SpillingListener(downstream, new MappedSpillQueue(queueDir, 1024, 10), 50);
+
+        final int[] acked = {0};
+        for (int i = 0; i < 3; i++) {
+            listener.handle(new Record("test.log", "line" + i, i * 6), new Acknowledgement() {
+                @Override
+                public void ack() {
+                    acked[0]++;
+                }
+            });
+        }
+        assertEquals(3, acked[0]);
+        assertTrue(delivered.isEmpty());
+
+        ExecutorService service = Executors.newSingleThreadExecutor();
+        service.submit(listener);
+        Thread.sleep(500);
+        listener.stop();
+        service.shutdown();
+
+        assertEquals(3, delivered.size());
+        assertEquals("line0", delivered.get(0));
+        assertEquals("line1", delivered.get(1));
+        assertEquals("line2", delivered.get(2));
+    }
+
+    @Test
+    public void testRecoverFromMissingEndOfSegment() throws Exception {
+        MappedSpillQueue queue = new MappedSpillQueue(queueDir, 128, 10);
+        queue.append(bytes("record number 0"));
+        queue.close();
+
+        /* the process died after creating the next segment, before marking the end of the first one */
+        File next = new File(queueDir, String.format("%020d", 1) + ".segment");
+        Files.write(new byte[128], next);
+
+        MappedSpillQueue reopened = new MappedSpillQueue(queueDir, 128, 10);
+        reopened.append(bytes("record number 1"));
+
+        assertEquals("record number 0", string(reopened.peek()));
+        reopened.remove();
+        assertEquals("record number 1", string(reopened.peek()));
+        reopened.remove();
+        assertTrue(reopened.isEmpty());
+    }
+
+    @Test
+    public void testOversizedLineIsDropped() throws Exception {
+        MappedSpillQueue queue = new MappedSpillQueue(queueDir, 128, 10);
+        SpillingListener listener = new SpillingListener(new LogFileEventListener(), queue, 50);
+
+        StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < queue.getMaxRecordSize(); i++) {
+            longLine.append('x');
+        }
+
+        final int[] acked = {0};
+        Acknowledgement ack = new Acknowledgement() {
+            @Override
+            public void ack() {
+                acked[0]++;
+            }
+        };
+        listener.handle(new Record("test.log", longLine.toString(), 200), ack);
+        listener.handle(new Record("test.log", "short", 206), ack);
+
+        assertEquals(2, acked[0]);
+        assertEquals(1, listener.getOversizedCount());
+        assertEquals("short", SpillingListener.decode(queue.peek()).getLine());
+    }
+
+    @Test
+    public void testInterruptedSpillIsNotAcknowledged() throws Exception {
+        MappedSpillQueue queue = new MappedSpillQueue(queueDir, 128, 2);
+        SpillingListener listener = new SpillingListener(new LogFileEventListener(), queue, 50);
+
+        int appended = 0;
+        while (queue.offer(bytes("record number " + appended), 0)) {
+            appended++;
+        }
+
+        final int[] acked = {0};
+        Thread.currentThread().interrupt();
+        listener.handle(new Record("test.log", "not spilled", 6), new Acknowledgement() {
+            @Override
+            public void ack() {
+                acked[0]++;
+            }
+        });
+
+        assertTrue(Thread.interrupted());
+        assertEquals(0, acked[0]);
+    }
+
+    @Test
+    public void testInterruptStopsRetries() throws Exception {
+        MappedSpillQueue queue = new MappedSpillQueue(queueDir, 1024, 10);
+        queue.append(SpillingListener.encode(new Record("test.log", "line0", 6)));
+
+        SpillingListener listener = new SpillingListener(new LogFileEventListener() {
+            @Override
+            public void handle(String filename, String line) {
+                throw new IllegalStateException("downstream unavailable");
+            }
+        }, queue, 60000);
+
+        Thread thread = new Thread(listener);
+        thread.start();
+        Thread.sleep(200);
+
+        thread.interrupt();
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    public void testRecordEncoding() {
+        Record record = SpillingListener.decode(SpillingListener.encode(new Record("/var/log/\u00e9.log", "a line \u2603", 42)));
+
+        assertEquals("/var/log/\u00e9.log", record.getFilename());
+        assertEquals("a line \u2603", record.getLine());
+        assertEquals(42L, record.getPosition());
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(Charsets.UTF_8);
+    }
+
+    private static String string(byte[] b) {
+        return new String(b, Charsets.UTF_8);
+    }
+}
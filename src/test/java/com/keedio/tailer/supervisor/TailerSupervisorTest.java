@@ -0,0 +1,160 @@
+package com.keedio.tailer.supervisor;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.keedio.tailer.LRTailer;
+import com.keedio.tailer.exception.TailerException;
+import com.keedio.tailer.listener.impl.LogFileEventListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class TailerSupervisorTest {
+    private File logDir;
+    private File logFile;
+
+    private ExecutorService service = Executors.newCachedThreadPool();
+
+    @Before
+    public void init() throws Exception {
+        logDir = Files.createTempDir();
+        logFile = new File(logDir, "test.log");
+    }
+
+    @After
+    public void destroy() throws Exception {
+        service.shutdownNow();
+        logFile.delete();
+        logDir.delete();
+    }
+
+    @Test
+    public void testRestartUntilFileExists() throws Exception {
+        CollectingListener listener = new CollectingListener(null);
+        TailerSupervisor supervisor = new TailerSupervisor(
+                new LRTailer(listener, 50, logFile.getAbsolutePath()), 50, 100, -1);
+
+        Future<?> future = service.submit(supervisor);
+
+        LRTailer.sleepSilently(300);
+        assertEquals(TailerHealth.RETRYING, supervisor.getHealth());
+        assertTrue(supervisor.getLastError() instanceof FileNotFoundException);
+
+        Files.write("line0\nline1\n", logFile, Charsets.UTF_8);
+        LRTailer.sleepSilently(500);
+
+        assertEquals(TailerHealth.RUNNING, supervisor.getHealth());
+        assertTrue(supervisor.getRestartCount() > 0);
+        assertEquals(Arrays.asList("line0", "line1"), listener.lines);
+
+        supervisor.stop();
+        future.get(1, TimeUnit.SECONDS);
+        assertEquals(TailerHealth.STOPPED, supervisor.getHealth());
+    }
+
+    @Test
+    public void testResumeFromLastFullLine() throws Exception {
+        Files.write("line0\nline1\nline2\n", logFile, Charsets.UTF_8);
+
+        CollectingListener listener = new CollectingListener("line1");
+        TailerSupervisor supervisor = new TailerSupervisor(
+                new LRTailer(listener, 50, logFile.getAbsolutePath()), 50, 100, -1);
+        supervisor.setErrorClassifier(new ErrorClassifier() {
+            @Override
+            public ErrorType classify(Throwable cause) {
+                return ErrorType.TRANSIENT;
+            }
+        });
+
+        Future<?> future = service.submit(supervisor);
+        LRTailer.sleepSilently(500);
+
+        assertEquals(1, supervisor.getRestartCount());
+        assertEquals(Arrays.asList("line0", "line1", "line2"), listener.lines);
+        assertEquals(18L, supervisor.getTailer().getLastFullLinePosition());
+
+        supervisor.stop();
+        future.get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testFatalErrorIsNotRetried() throws Exception {
+        Files.write("line0\nline1\n", logFile, Charsets.UTF_8);
+
+        CollectingListener listener = new CollectingListener("line1");
+        TailerSupervisor supervisor = new TailerSupervisor(
+                new LRTailer(listener, 50, logFile.getAbsolutePath()), 50, 100, -1);
+
+        try {
+            service.submit(supervisor).get(1, TimeUnit.SECONDS);
+            fail("supervisor should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TailerException);
+        }
+
+        assertEquals(TailerHealth.FAILED, supervisor.getHealth());
+        assertEquals(0, supervisor.getRestartCount());
+    }
+
+    @Test
+    public void testMaxRestarts() throws Exception {
+        TailerSupervisor supervisor = new TailerSupervisor(
+                new LRTailer(new CollectingListener(null), 50, logFile.getAbsolutePath()), 10, 20, 2);
+
+        try {
+            service.submit(supervisor).get(1, TimeUnit.SECONDS);
+            fail("supervisor should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TailerException);
+        }
+
+        assertEquals(TailerHealth.FAILED, supervisor.getHealth());
+        assertEquals(2, supervisor.getRestartCount());
+    }
+
+    @Test
+    public void testBackoff() {
+        TailerSupervisor supervisor = new TailerSupervisor(
+                new LRTailer(new CollectingListener(null), 50, logFile.getAbsolutePath()), 100, 1000, -1);
+
+        for (int i = 0; i < 100; i++) {
+            long first = supervisor.backoff(0);
+            assertTrue(first >= 50 && first <= 100);
+
+            long third = supervisor.backoff(2);
+            assertTrue(third >= 200 && third <= 400);
+
+            long capped = supervisor.backoff(70);
+            assertTrue(capped >= 500 && capped <= 1000);
+        }
+    }
+
+    /**
+     * Collects handled lines, failing once when handling <code>failOn</code>.
+     */
+    static class CollectingListener extends LogFileEventListener {
+        final List<String> lines = new CopyOnWriteArrayList<>();
+        private String failOn;
+
+        CollectingListener(String failOn) {
+            this.failOn = failOn;
+        }
+
+        @Override
+        public void handle(String filename, String line) {
+            if (line.equals(failOn)) {
+                failOn = null;
+                throw new IllegalStateException("failing on " + line);
+            }
+            lines.add(line);
+        }
+    }
+}